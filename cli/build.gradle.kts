@@ -18,6 +18,8 @@ tasks {
 
 application {
     mainClass = "nl.bluetainer.jbeancount.cli.BeancountCli"
+    // Lets the parser scan journals a vector at a time, see ByteScanner
+    applicationDefaultJvmArgs = listOf("--add-modules", "jdk.incubator.vector")
 }
 
 graalvmNative {
@@ -26,6 +28,8 @@ graalvmNative {
             // https://www.graalvm.org/latest/reference-manual/native-image/guides/use-system-properties/
             buildArgs.add("-Djbeancount.version=$version")
             buildArgs.add("--initialize-at-build-time=nl.bluetainer.jbeancount.cli.BeancountCli")
+            // The image does not contain the Vector API, ByteScanner has to choose when it runs
+            buildArgs.add("--initialize-at-run-time=nl.bluetainer.jbeancount.parser.ByteScanner")
             // TODO Figure out why runtimeArgs doesn't just work in our case
         }
     }
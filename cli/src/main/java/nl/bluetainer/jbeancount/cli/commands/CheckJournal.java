@@ -1,10 +1,21 @@
 package nl.bluetainer.jbeancount.cli.commands;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import nl.bluetainer.jbeancount.Beancount;
+import nl.bluetainer.jbeancount.cli.commands.mixin.JournalCacheOption;
 import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.ParseMetrics;
+import nl.bluetainer.jbeancount.parser.ParseMetricsListener;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 @Command(name = "check", description = "Checks the beancount file for errors")
@@ -13,10 +24,91 @@ public class CheckJournal implements Callable<Integer> {
   @Parameters(index = "0", description = "The Beancount file")
   private Path file;
 
+  @Option(
+      names = "--metrics",
+      description = "Prints where the time went while loading every (included) file",
+      defaultValue = "false")
+  private boolean metrics;
+
+  @Option(
+      names = "--all-errors",
+      description = "Reports every syntax error instead of stopping at the first one",
+      defaultValue = "false")
+  private boolean allErrors;
+
+  @Mixin private JournalCacheOption cache;
+
   @Override
   public Integer call() {
-    Beancount beancount = Beancount.newBeancount().build();
+    final MetricsCollector collector = metrics ? new MetricsCollector() : null;
+    Beancount beancount =
+        Beancount.newBeancount()
+            .parserOptions(
+                BeancountParserOptions.newBeancountParserOptions()
+                    .syntaxErrorHandling(
+                        allErrors
+                            ? BeancountParserOptions.SyntaxErrorHandling.COLLECT_ALL
+                            : BeancountParserOptions.SyntaxErrorHandling.FAIL_FAST)
+                    .metricsListener(collector)
+                    .build())
+            .journalCache(cache.journalCache())
+            .build();
     Journal journal = beancount.createJournalSync(file);
+    if (collector != null) {
+      collector.print();
+    }
     return 0;
   }
+
+  private record IncludesResolved(Path path, int includes, long nanos) {}
+
+  private static final class MetricsCollector implements ParseMetricsListener {
+    private final Queue<ParseMetrics> parsed = new ConcurrentLinkedQueue<>();
+    private final Queue<IncludesResolved> includesResolved = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void parsed(ParseMetrics metrics) {
+      parsed.add(metrics);
+    }
+
+    @Override
+    public void includesResolved(Path path, int includes, long nanos) {
+      if (includes > 0) {
+        includesResolved.add(new IncludesResolved(path, includes, nanos));
+      }
+    }
+
+    private void print() {
+      final List<ParseMetrics> files = new ArrayList<>(parsed);
+      files.sort(Comparator.comparingLong(ParseMetrics::totalNanos).reversed());
+      System.out.printf(
+          "%-40s %12s %10s %10s %10s %10s %10s%n",
+          "file", "bytes", "tokens", "lex ms", "parse ms", "convert ms", "total ms");
+      for (ParseMetrics m : files) {
+        System.out.printf(
+            "%-40s %12d %10d %10.1f %10.1f %10.1f %10.1f%n",
+            m.sourceName(),
+            m.bytes(),
+            m.tokens(),
+            millis(m.lexingNanos()),
+            millis(m.parsingNanos()),
+            millis(m.conversionNanos()),
+            millis(m.totalNanos()));
+      }
+
+      final List<IncludesResolved> includes = new ArrayList<>(includesResolved);
+      if (!includes.isEmpty()) {
+        includes.sort(Comparator.comparingLong(IncludesResolved::nanos).reversed());
+        System.out.println();
+        System.out.printf("%-40s %10s %10s%n", "includes of", "includes", "total ms");
+        for (IncludesResolved i : includes) {
+          System.out.printf("%-40s %10d %10.1f%n", i.path(), i.includes(), millis(i.nanos()));
+        }
+      }
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000.0;
+    }
+  }
 }
@@ -1,20 +1,14 @@
 package nl.bluetainer.jbeancount.cli.commands;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.Callable;
-import nl.bluetainer.jbeancount.Beancount;
+import nl.bluetainer.jbeancount.IncludeGraph;
 import nl.bluetainer.jbeancount.cli.internal.include.IncludePair;
-import nl.bluetainer.jbeancount.language.IncludePragma;
-import nl.bluetainer.jbeancount.language.Journal;
-import nl.bluetainer.jbeancount.parser.BeancountUtil;
-import nl.bluetainer.jbeancount.util.Assert;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
@@ -39,10 +33,9 @@ public class IncludeTreeCommand implements Callable<Integer> {
 
   @Override
   public Integer call() throws Exception {
-    Beancount beancount = Beancount.newBeancount().build();
-    Journal journal = beancount.createJournalSync(file);
     Set<IncludePair> includes = new LinkedHashSet<>();
-    recurseThroughIncludes(file, journal, includes);
+    // Only the include pragmas are needed, so the files are scanned rather than parsed
+    recurseThroughIncludes(IncludeGraph.scan(file).root(), new HashSet<>(), includes);
     StringBuilder sb = new StringBuilder();
     Set<String> dotDirs = new HashSet<>();
     for (IncludePair includeMapping : includes) {
@@ -109,23 +102,15 @@ public class IncludeTreeCommand implements Callable<Integer> {
   }
 
   private void recurseThroughIncludes(
-      Path currentPath, Journal currentJournal, Set<IncludePair> accumulator) {
-    Path journalFolder = currentPath.getParent();
-    if (!Files.isDirectory(journalFolder)) {
-      Assert.shouldNeverHappen();
+      IncludeGraph.Node node, Set<IncludeGraph.Node> visited, Set<IncludePair> accumulator) {
+    if (!visited.add(node)) {
       return;
     }
-    List<IncludePragma> includePragmas =
-        BeancountUtil.findDeclarationsOfType(currentJournal, IncludePragma.class);
-    for (IncludePragma includePragma : includePragmas) {
-      if (includePragma.journal() == null) {
-        // TODO Figure out what to do
-        Assert.shouldNeverHappen();
-        return;
+    for (IncludeGraph.Include include : node.includes()) {
+      for (int i = 0; i < include.paths().size(); i++) {
+        accumulator.add(new IncludePair(node.path(), include.paths().get(i)));
+        recurseThroughIncludes(include.files().get(i), visited, accumulator);
       }
-      Path includedFilePath = journalFolder.resolve(includePragma.filename());
-      accumulator.add(new IncludePair(currentPath, includedFilePath));
-      recurseThroughIncludes(includedFilePath, includePragma.journal(), accumulator);
     }
   }
 }
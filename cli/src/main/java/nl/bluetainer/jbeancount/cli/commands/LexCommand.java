@@ -1,9 +1,12 @@
 package nl.bluetainer.jbeancount.cli.commands;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import nl.bluetainer.jbeancount.parser.BeancountLexer;
 import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
@@ -24,8 +27,19 @@ public class LexCommand implements Callable<Integer> {
       defaultValue = "false")
   private boolean noHeader;
 
+  @Option(
+      names = "--differential",
+      description =
+          "Check that the hand-written lexer produces the same tokens as the ANTLR lexer, instead"
+              + " of dumping the tokens",
+      defaultValue = "false")
+  private boolean differential;
+
   @Override
   public Integer call() throws Exception {
+    if (differential) {
+      return differential();
+    }
     final CharStream charStream = CharStreams.fromPath(file, StandardCharsets.UTF_8);
     final BeancountAntlrLexer lexer = new BeancountAntlrLexer(charStream);
     final List<? extends Token> tokens = lexer.getAllTokens();
@@ -69,12 +83,51 @@ public class LexCommand implements Callable<Integer> {
               symbolicName(token),
               token.getLine(),
               token.getCharPositionInLine(),
-              token.getText().replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r")));
+              escape(token.getText())));
     }
     System.out.println(sb);
     return 0;
   }
 
+  private int differential() throws IOException {
+    final List<? extends Token> expected =
+        new BeancountAntlrLexer(CharStreams.fromPath(file, StandardCharsets.UTF_8)).getAllTokens();
+    final BeancountLexer lexer =
+        new BeancountLexer(CharStreams.fromPath(file, StandardCharsets.UTF_8));
+    final List<Token> actual = new ArrayList<>();
+    for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+      actual.add(token);
+    }
+    for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+      final String expectedToken = i < expected.size() ? describe(expected.get(i)) : "<none>";
+      final String actualToken = i < actual.size() ? describe(actual.get(i)) : "<none>";
+      if (!expectedToken.equals(actualToken)) {
+        System.out.printf(
+            "Token %d differs%n  ANTLR:        %s%n  hand-written: %s%n",
+            i, expectedToken, actualToken);
+        return 1;
+      }
+    }
+    System.out.printf(
+        "The hand-written lexer produced the same %d tokens as the ANTLR lexer%n", actual.size());
+    return 0;
+  }
+
+  private static String describe(Token token) {
+    return String.format(
+        "%s %d:%d [%d..%d] \"%s\"",
+        symbolicName(token),
+        token.getLine(),
+        token.getCharPositionInLine(),
+        token.getStartIndex(),
+        token.getStopIndex(),
+        escape(token.getText()));
+  }
+
+  private static String escape(String text) {
+    return text.replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+  }
+
   private static String symbolicName(Token token) {
     final String symbolicName = BeancountAntlrLexer.VOCABULARY.getSymbolicName(token.getType());
     return symbolicName == null ? String.valueOf(token.getType()) : symbolicName;
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import nl.bluetainer.jbeancount.Beancount;
 import nl.bluetainer.jbeancount.BeancountInvalidStateException;
+import nl.bluetainer.jbeancount.cli.commands.mixin.JournalCacheOption;
 import nl.bluetainer.jbeancount.cli.commands.mixin.SingleOutput;
 import nl.bluetainer.jbeancount.cli.internal.transformations.FlattenJournal;
 import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
@@ -49,9 +50,11 @@ public class MergeJournal implements Callable<Integer> {
 
   @Mixin private SingleOutput output;
 
+  @Mixin private JournalCacheOption cache;
+
   @Override
   public Integer call() throws IOException {
-    Beancount beancount = Beancount.newBeancount().build();
+    Beancount beancount = Beancount.newBeancount().journalCache(cache.journalCache()).build();
     if (files.isEmpty()) {
       throw new BeancountInvalidStateException();
     }
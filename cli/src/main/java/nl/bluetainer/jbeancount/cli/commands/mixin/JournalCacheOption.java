@@ -0,0 +1,19 @@
+package nl.bluetainer.jbeancount.cli.commands.mixin;
+
+import java.nio.file.Path;
+import nl.bluetainer.jbeancount.io.JournalCache;
+import picocli.CommandLine.Option;
+
+public class JournalCacheOption {
+
+  @Option(
+      names = "--cache-dir",
+      description =
+          "Keeps the parsed files in this directory, so unchanged files are not parsed again")
+  private Path cacheDirectory;
+
+  /** The cache to load journals with, or {@code null} when no directory was specified. */
+  public JournalCache journalCache() {
+    return cacheDirectory != null ? JournalCache.newJournalCache(cacheDirectory) : null;
+  }
+}
@@ -3,7 +3,9 @@ package nl.bluetainer.jbeancount.cli.picocli;
 import java.io.UncheckedIOException;
 import java.nio.file.NoSuchFileException;
 import java.util.concurrent.CompletionException;
+import nl.bluetainer.jbeancount.IncludeCycleException;
 import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.parser.InvalidSyntaxErrorsException;
 import nl.bluetainer.jbeancount.parser.InvalidSyntaxException;
 import picocli.CommandLine;
 import picocli.CommandLine.IExecutionExceptionHandler;
@@ -23,21 +25,15 @@ public class BeancountExecutionExceptionHandler implements IExecutionExceptionHa
     }
     if (toHandle instanceof NoSuchFileException noSuchFileException) {
       commandLine.getErr().println("File " + noSuchFileException.getFile() + " does not exist");
+    } else if (toHandle instanceof InvalidSyntaxErrorsException invalidSyntaxErrorsException) {
+      for (InvalidSyntaxException error : invalidSyntaxErrorsException.getErrors()) {
+        printInvalidSyntax(commandLine, error);
+      }
+      commandLine.getErr().println(invalidSyntaxErrorsException.getErrors().size() + " errors");
     } else if (toHandle instanceof InvalidSyntaxException invalidSyntaxException) {
-      final SourceLocation sourceLocation = invalidSyntaxException.getSourceLocation();
-      commandLine
-          .getErr()
-          .println(
-              "Invalid syntax on line "
-                  + sourceLocation.line()
-                  + ", column "
-                  + sourceLocation.column()
-                  + " in source "
-                  + sourceLocation.sourceName()
-                  + ": "
-                  + invalidSyntaxException.getMessage()
-                  + "\n\n"
-                  + invalidSyntaxException.getPreview());
+      printInvalidSyntax(commandLine, invalidSyntaxException);
+    } else if (toHandle instanceof IncludeCycleException includeCycleException) {
+      commandLine.getErr().println(includeCycleException.getMessage());
     } else {
       e.printStackTrace();
     }
@@ -45,4 +41,22 @@ public class BeancountExecutionExceptionHandler implements IExecutionExceptionHa
         ? commandLine.getExitCodeExceptionMapper().getExitCode(e)
         : commandLine.getCommandSpec().exitCodeOnExecutionException();
   }
+
+  private static void printInvalidSyntax(
+      CommandLine commandLine, InvalidSyntaxException invalidSyntaxException) {
+    final SourceLocation sourceLocation = invalidSyntaxException.getSourceLocation();
+    commandLine
+        .getErr()
+        .println(
+            "Invalid syntax on line "
+                + sourceLocation.line()
+                + ", column "
+                + sourceLocation.column()
+                + " in source "
+                + sourceLocation.sourceName()
+                + ": "
+                + invalidSyntaxException.getMessage()
+                + "\n\n"
+                + invalidSyntaxException.getPreview());
+  }
 }
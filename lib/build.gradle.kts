@@ -4,6 +4,7 @@ plugins {
     id("antlr")
     id("com.diffplug.spotless")
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 dependencies {
@@ -60,10 +61,45 @@ tasks {
     }
 }
 
+// VectorByteScanner is compiled against the incubating Vector API in a source set of its own, so
+// only that compilation needs (and warns about) the incubator module. At runtime ByteScanner loads
+// it when the module is added, and otherwise falls back to scalar scanning.
+val vectorModule = listOf("--add-modules", "jdk.incubator.vector")
+
+val vector: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+}
+
+dependencies {
+    testRuntimeOnly(vector.output)
+    "jmhRuntimeOnly"(vector.output)
+}
+
 tasks {
+    named<JavaCompile>(vector.compileJavaTaskName) {
+        options.compilerArgs.addAll(vectorModule)
+    }
+    jar {
+        from(vector.output)
+    }
+    shadowJar {
+        from(vector.output)
+    }
     test {
         useJUnitPlatform()
+        jvmArgs(vectorModule)
+    }
+}
+
+jmh {
+    // ./gradlew :lib:jmh -PjmhIncludes=PredictionStrategyBenchmark
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes") as String)
     }
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+    jvmArgsAppend.addAll(vectorModule)
 }
 
 spotless {
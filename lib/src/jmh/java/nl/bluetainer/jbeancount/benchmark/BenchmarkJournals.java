@@ -0,0 +1,84 @@
+package nl.bluetainer.jbeancount.benchmark;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+final class BenchmarkJournals {
+
+  private static final String[] ACCOUNTS = {
+    "Assets:Current:Checking",
+    "Assets:Current:Savings",
+    "Assets:Brokerage:Stocks",
+    "Expenses:Food:Groceries",
+    "Expenses:Food:Restaurants",
+    "Expenses:Housing:Rent",
+    "Income:Salary:CoolCompany",
+    "Liabilities:CreditCard"
+  };
+
+  private BenchmarkJournals() {}
+
+  /** Generates a deterministic, well-formed journal resembling a real-world ledger. */
+  static String generate(int transactions) {
+    final Random random = new Random(42);
+    final StringBuilder sb = new StringBuilder(transactions * 160);
+    final LocalDate start = LocalDate.of(2015, 1, 1);
+    sb.append("option \"title\" \"Benchmark\"\n");
+    sb.append("option \"operating_currency\" \"EUR\"\n\n");
+    for (String account : ACCOUNTS) {
+      sb.append(start).append(" open ").append(account).append(" EUR,USD\n");
+    }
+    sb.append('\n');
+    for (int i = 0; i < transactions; i++) {
+      final LocalDate date = start.plusDays(i / 8);
+      final String from = ACCOUNTS[random.nextInt(ACCOUNTS.length)];
+      final String to = ACCOUNTS[random.nextInt(ACCOUNTS.length)];
+      final String amount = random.nextInt(10_000) + "." + (10 + random.nextInt(90));
+      switch (i % 16) {
+        case 0 -> sb.append("; Statement ").append(i / 16).append('\n');
+        case 5 ->
+            sb.append(date)
+                .append(" price USD ")
+                .append(random.nextInt(2))
+                .append('.')
+                .append(random.nextInt(10_000))
+                .append(" EUR\n");
+        case 11 ->
+            sb.append(date)
+                .append(" * \"Broker\" \"Buy stock\" #investing\n")
+                .append("  ")
+                .append("Assets:Brokerage:Stocks 1.5 GG {")
+                .append(amount)
+                .append(" EUR, \"lot-")
+                .append(i)
+                .append("\"} @ ")
+                .append(amount)
+                .append(" EUR\n  Assets:Current:Checking\n");
+        default -> {}
+      }
+      sb.append(date)
+          .append(" * \"Payee ")
+          .append(i % 97)
+          .append("\" \"Narration ")
+          .append(i)
+          .append("\" ^link-")
+          .append(i % 13)
+          .append('\n')
+          .append("  receipt: \"")
+          .append(i)
+          .append(".pdf\"\n  ")
+          .append(from)
+          .append("  -")
+          .append(amount)
+          .append(" EUR ; paid\n  ")
+          .append(to)
+          .append("  ")
+          .append(amount)
+          .append(" EUR\n");
+      if (i % 4 == 0) {
+        sb.append('\n');
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,51 @@
+package nl.bluetainer.jbeancount.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import nl.bluetainer.jbeancount.parser.BeancountLexer;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions.LexerImplementation;
+import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LexerBenchmark {
+
+  @Param({"ANTLR", "HAND_WRITTEN"})
+  private LexerImplementation lexerImplementation;
+
+  @Param({"10000"})
+  private int transactions;
+
+  private String journal;
+
+  @Setup
+  public void setup() {
+    journal = BenchmarkJournals.generate(transactions);
+  }
+
+  @Benchmark
+  public int lex() {
+    final CharStream charStream = CharStreams.fromString(journal);
+    final TokenSource lexer =
+        lexerImplementation == LexerImplementation.HAND_WRITTEN
+            ? new BeancountLexer(charStream)
+            : new BeancountAntlrLexer(charStream);
+    int tokens = 0;
+    while (lexer.nextToken().getType() != Token.EOF) {
+      tokens++;
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,46 @@
+package nl.bluetainer.jbeancount.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParser;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions.PredictionStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PredictionStrategyBenchmark {
+
+  @Param({"LL", "SLL_THEN_LL"})
+  private PredictionStrategy predictionStrategy;
+
+  @Param({"10000"})
+  private int transactions;
+
+  private String journal;
+  private BeancountParser parser;
+
+  @Setup
+  public void setup() {
+    journal = BenchmarkJournals.generate(transactions);
+    parser =
+        BeancountParser.newParser(
+            BeancountParserOptions.newBeancountParserOptions()
+                .predictionStrategy(predictionStrategy)
+                .build());
+  }
+
+  @Benchmark
+  public Journal parse() {
+    return parser.parseJournal(new StringReader(journal));
+  }
+}
@@ -0,0 +1,107 @@
+package nl.bluetainer.jbeancount.benchmark;
+
+import static java.time.temporal.ChronoField.DAY_OF_MONTH;
+import static java.time.temporal.ChronoField.MONTH_OF_YEAR;
+import static java.time.temporal.ChronoField.YEAR;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nl.bluetainer.jbeancount.parser.BeancountAntlrToLanguage;
+import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the conversion of {@code DATE} and {@code NUMBER} tokens with the formatter and string
+ * based conversion it replaced. The dates are sorted with 20 entries per day, like a journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenConversionBenchmark {
+
+  private static final int TOKENS = 10_000;
+
+  private static final DateTimeFormatter ISO_LOCAL_DATE_WITH_SLASHES =
+      new DateTimeFormatterBuilder()
+          .appendValue(YEAR, 4, 10, SignStyle.EXCEEDS_PAD)
+          .appendLiteral('/')
+          .appendValue(MONTH_OF_YEAR, 2)
+          .appendLiteral('/')
+          .appendValue(DAY_OF_MONTH, 2)
+          .toFormatter(Locale.ROOT);
+
+  private final Token[] dates = new Token[TOKENS];
+  private final Token[] numbers = new Token[TOKENS];
+  private BeancountAntlrToLanguage toLanguage;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(42);
+    final LocalDate start = LocalDate.of(2020, 1, 1);
+    for (int i = 0; i < TOKENS; i++) {
+      dates[i] = new CommonToken(BeancountAntlrLexer.DATE, start.plusDays(i / 20).toString());
+      numbers[i] =
+          new CommonToken(
+              BeancountAntlrLexer.NUMBER,
+              String.format(
+                  Locale.ROOT,
+                  "%d,%03d.%02d",
+                  random.nextInt(100),
+                  random.nextInt(1000),
+                  random.nextInt(100)));
+    }
+    toLanguage = new BeancountAntlrToLanguage(null, "benchmark");
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public void datesWithFormatter(Blackhole blackhole) {
+    for (Token token : dates) {
+      final String text = token.getText();
+      blackhole.consume(
+          text.charAt(4) == '/'
+              ? LocalDate.parse(text, ISO_LOCAL_DATE_WITH_SLASHES)
+              : LocalDate.parse(text, DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public void dates(Blackhole blackhole) {
+    for (Token token : dates) {
+      blackhole.consume(toLanguage.parseDateToken(token));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public void numbersFromString(Blackhole blackhole) {
+    for (Token token : numbers) {
+      blackhole.consume(new BigDecimal(token.getText().replace(",", "")));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public void numbers(Blackhole blackhole) {
+    for (Token token : numbers) {
+      blackhole.consume(toLanguage.parseNumberToken(token));
+    }
+  }
+}
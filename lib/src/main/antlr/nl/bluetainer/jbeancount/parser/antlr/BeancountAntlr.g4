@@ -8,15 +8,26 @@ import com.yuvalshavit.antlr4.DenterHelper;
 }
 @ lexer :: members
 {
-private final DenterHelper denter = new DenterHelper(BeancountAntlrParser.EOL,
-    BeancountAntlrParser.INDENT,
-    BeancountAntlrParser.DEDENT,
-    BeancountAntlrParser.COMMENT) {
-  @Override
-  protected Token pullToken() {
-    return BeancountAntlrLexer.super.nextToken();
-  }
-};
+private DenterHelper denter = createDenter();
+
+private DenterHelper createDenter() {
+  return new DenterHelper(BeancountAntlrParser.EOL,
+      BeancountAntlrParser.INDENT,
+      BeancountAntlrParser.DEDENT,
+      BeancountAntlrParser.COMMENT) {
+    @Override
+    protected Token pullToken() {
+      return BeancountAntlrLexer.super.nextToken();
+    }
+  };
+}
+
+// Also called by setInputStream, the denter has to start over for a lexer that is reused
+@Override
+public void reset() {
+  super.reset();
+  denter = createDenter();
+}
 
 @Override
 public Token nextToken() {
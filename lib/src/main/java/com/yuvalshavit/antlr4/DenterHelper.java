@@ -45,34 +45,13 @@ public abstract class DenterHelper {
     final Token r;
     if (t.getType() == commentToken) {
       String text = t.getText();
-      String withoutTrailingSpaces = text.replaceAll(" +(\r\n|\r|\n)?$", "$1");
-      int l = withoutTrailingSpaces.length();
-      String eolPlusMaybeNextIndentWs = null;
-      if (l > 0) {
-        if (withoutTrailingSpaces.charAt(l - 1) == '\n') {
-          eolPlusMaybeNextIndentWs = "\n";
-        }
-        if (withoutTrailingSpaces.charAt(l - 2) == '\r') {
-          if (eolPlusMaybeNextIndentWs != null) {
-            eolPlusMaybeNextIndentWs = "\r\n";
-          } else {
-            eolPlusMaybeNextIndentWs = "\r";
-          }
-        }
-      }
-      if (eolPlusMaybeNextIndentWs == null) {
-        throw new IllegalStateException("Comments should have trailing newline characters");
-      }
-      if (text.length() != l) {
-        eolPlusMaybeNextIndentWs =
-            text.substring(withoutTrailingSpaces.length() - eolPlusMaybeNextIndentWs.length());
-      }
+      String eolPlusMaybeNextIndentWs = text.substring(eolStart(text)); // MODIFIED
       r = new FakeCommentBeforeEolToken(t, eolPlusMaybeNextIndentWs);
       queuedNewlineAfterComment = new FakeEolAfterCommentToken(t, eolPlusMaybeNextIndentWs);
     } else if (t.getType() == nlToken) {
       r = handleNewlineToken(t);
     } else if (t.getType() == Token.EOF) {
-      r = eofHandler.apply(t);
+      r = eofHandler.apply(t, t);
 
     } else {
       r = t;
@@ -89,7 +68,7 @@ public abstract class DenterHelper {
 
       // When the original token is "; test\r\n" we want to start at the position after where ";
       // test" ends.
-      start = super.stop - nl.length();
+      start = super.stop - nl.length() + 1; // MODIFIED
 
       // ab ; test\r\n
       // 0123456789 10    <- oldToken.getCharPositionInLine() would return 3
@@ -116,6 +95,32 @@ public abstract class DenterHelper {
 
   protected abstract Token pullToken();
 
+  // MODIFIED: hand-written equivalent of the former text.replaceAll(" +(\r\n|\r|\n)?$", "$1")
+  // based split. The EOL part is the newline plus the next line's indentation, or when there is no
+  // indentation the newline plus any trailing spaces of the comment.
+  private static int eolStart(String text) {
+    int indentStart = text.length();
+    while (indentStart > 0 && text.charAt(indentStart - 1) == ' ') {
+      --indentStart;
+    }
+    int eolStart = indentStart;
+    if (eolStart > 0 && text.charAt(eolStart - 1) == '\n') {
+      --eolStart;
+    }
+    if (eolStart > 0 && text.charAt(eolStart - 1) == '\r') {
+      --eolStart;
+    }
+    if (eolStart == indentStart) {
+      throw new IllegalStateException("Comments should have trailing newline characters");
+    }
+    if (indentStart == text.length()) {
+      while (eolStart > 0 && text.charAt(eolStart - 1) == ' ') {
+        --eolStart;
+      }
+    }
+    return eolStart;
+  }
+
   private void initIfFirstRun() {
     if (indentations.isEmpty()) {
       indentations.push(0);
@@ -143,7 +148,9 @@ public abstract class DenterHelper {
       nextNext = pullToken();
     }
     if (nextNext.getType() == Token.EOF) {
-      return eofHandler.apply(nextNext);
+      // MODIFIED: anchor the synthesized tokens to the newline rather than to the EOF token, so a
+      // journal parsed in chunks yields the same source locations as one parsed in a single pass.
+      return eofHandler.apply(nextNext, t);
     }
     // nextNext is now a non-NL token; we'll queue it up after any possible dents
 
@@ -171,16 +178,16 @@ public abstract class DenterHelper {
 
   private final class StandardEofHandler implements EofHandler {
     @Override
-    public Token apply(Token t) {
+    public Token apply(Token t, Token copyFrom) {
       Token r;
       // when we reach EOF, unwind all indentations. If there aren't any, insert a NL. This lets the
       // grammar treat
       // un-indented expressions as just being NL-terminated, rather than NL|EOF.
       if (indentations.isEmpty()) {
-        r = createToken(nlToken, t);
+        r = createToken(nlToken, copyFrom);
         dentsBuffer.add(t);
       } else {
-        r = unwindTo(0, t);
+        r = unwindTo(0, copyFrom);
         dentsBuffer.add(t);
       }
       reachedEof = true;
@@ -241,7 +248,7 @@ public abstract class DenterHelper {
   }
 
   private interface EofHandler {
-    Token apply(Token t);
+    Token apply(Token t, Token copyFrom);
   }
 
   private static class InjectedToken extends CommonToken {
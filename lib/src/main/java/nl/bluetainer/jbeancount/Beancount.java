@@ -1,26 +1,49 @@
 package nl.bluetainer.jbeancount;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import nl.bluetainer.jbeancount.annotation.Beta;
+import nl.bluetainer.jbeancount.construe.AsyncConstrueStrategy;
 import nl.bluetainer.jbeancount.construe.BeancountConstrueStrategy;
+import nl.bluetainer.jbeancount.construe.BoundedConstrueStrategy;
 import nl.bluetainer.jbeancount.construe.SyncConstrueStrategy;
+import nl.bluetainer.jbeancount.construe.VirtualThreadConstrueStrategy;
+import nl.bluetainer.jbeancount.io.IncludeGlob;
+import nl.bluetainer.jbeancount.io.JournalCache;
 import nl.bluetainer.jbeancount.language.IncludePragma;
 import nl.bluetainer.jbeancount.language.Journal;
 import nl.bluetainer.jbeancount.language.JournalDeclaration;
 import nl.bluetainer.jbeancount.language.tools.NestJournalNodeInIncludePragmaTransformer;
 import nl.bluetainer.jbeancount.parser.BeancountParser;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.ParseMetricsListener;
 
 public final class Beancount {
 
   private final BeancountConstrueStrategy construeStrategy;
+  private final BeancountParserOptions parserOptions;
+  private final JournalCache journalCache;
 
-  private Beancount() {
-    this.construeStrategy = new SyncConstrueStrategy();
+  private Beancount(
+      BeancountConstrueStrategy construeStrategy,
+      BeancountParserOptions parserOptions,
+      JournalCache journalCache) {
+    this.construeStrategy = Objects.requireNonNull(construeStrategy, "construeStrategy");
+    this.parserOptions = Objects.requireNonNull(parserOptions, "parserOptions");
+    this.journalCache = journalCache;
   }
 
   public Journal createJournalSync(Path path) {
@@ -28,7 +51,7 @@ public final class Beancount {
   }
 
   public CompletableFuture<Journal> createJournal(Path path) {
-    return createJournal(path, BeancountParser.newParser(), true);
+    return createJournal(path, BeancountParser.newParser(parserOptions), true);
   }
 
   @Beta
@@ -38,28 +61,190 @@ public final class Beancount {
 
   @Beta
   public CompletableFuture<Journal> createJournalWithoutIncludes(Path path) {
-    return createJournal(path, BeancountParser.newParser(), false);
+    return createJournal(path, BeancountParser.newParser(parserOptions), false);
+  }
+
+  @Beta
+  public Journal createJournalSync(IncludeGraph includeGraph) {
+    return createJournal(includeGraph).join();
+  }
+
+  /**
+   * Creates the journal of the root of the graph with all of its includes. Every file is parsed as
+   * a separate task of the {@link Builder#construeStrategy(BeancountConstrueStrategy) construe
+   * strategy}, and as none of them waits for the file that includes it, they are all handed to the
+   * strategy at once in the {@link IncludeGraph#parseOrder() parse order}. With a {@link
+   * BoundedConstrueStrategy} the largest files are therefore parsed first. The time every file took
+   * is recorded in its {@link IncludeGraph.Node#parseNanos() node}.
+   *
+   * <p>Fails with a {@link BeancountException} if an include pragma of a file is not in the graph,
+   * because the file changed after it was scanned.
+   */
+  @Beta
+  public CompletableFuture<Journal> createJournal(IncludeGraph includeGraph) {
+    final BeancountParser beancountParser = BeancountParser.newParser(parserOptions);
+    final Construal construal = new Construal();
+    final CompletableFuture<Journal> result = new CompletableFuture<>();
+    final Map<IncludeGraph.Node, CompletableFuture<Journal>> parsed = new HashMap<>();
+    for (IncludeGraph.Node node : includeGraph.parseOrder()) {
+      final CompletableFuture<Journal> journal =
+          construeStrategy.construe(
+              () -> {
+                construal.throwIfAborted();
+                final long start = System.nanoTime();
+                final Journal j = parse(node.path(), beancountParser);
+                node.parsed(System.nanoTime() - start);
+                return j;
+              });
+      parsed.put(node, journal);
+      failFast(journal, construal, result);
+    }
+    CompletableFuture.allOf(parsed.values().toArray(CompletableFuture[]::new))
+        .whenComplete(
+            (nil, t) -> {
+              if (t != null) {
+                result.completeExceptionally(t);
+                return;
+              }
+              try {
+                result.complete(nest(includeGraph.root(), parsed, new HashMap<>()));
+              } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+              }
+            });
+    result.whenComplete(
+        (j, t) -> {
+          if (t != null) {
+            construal.abort(t);
+          }
+        });
+    return result;
+  }
+
+  /** Nests the journals of the includes of the node, which have all been parsed. */
+  private static Journal nest(
+      IncludeGraph.Node node,
+      Map<IncludeGraph.Node, CompletableFuture<Journal>> parsed,
+      Map<IncludeGraph.Node, Journal> nested) {
+    final Journal existing = nested.get(node);
+    if (existing != null) {
+      return existing;
+    }
+    final Journal journal = parsed.get(node).join();
+    final Path directory = node.path().getParent();
+    final List<JournalDeclaration<?, ?>> declarations = journal.declarations();
+    final List<Integer> indices = new ArrayList<>();
+    final List<Journal> includes = new ArrayList<>();
+    for (int index = 0; index < declarations.size(); index++) {
+      if (declarations.get(index) instanceof IncludePragma includePragma) {
+        final IncludeGraph.Include include = node.include(includePragma.filename());
+        if (include == null) {
+          throw new BeancountException(
+              node.path()
+                  + " includes "
+                  + includePragma.filename()
+                  + ", which is not in the include graph");
+        }
+        final List<Journal> journals = new ArrayList<>(include.files().size());
+        for (IncludeGraph.Node file : include.files()) {
+          journals.add(nest(file, parsed, nested));
+        }
+        indices.add(index);
+        includes.add(
+            include.glob()
+                ? globJournal(includePragma, directory, include.paths(), journals)
+                : journals.get(0));
+      }
+    }
+    final Journal result =
+        NestJournalNodeInIncludePragmaTransformer.splice(
+            journal, indices.stream().mapToInt(Integer::intValue).toArray(), includes);
+    nested.put(node, result);
+    return result;
   }
 
   private CompletableFuture<Journal> createJournal(
       Path path, BeancountParser beancountParser, boolean resolveIncludePragmas) {
+    final Construal construal = new Construal();
+    final CompletableFuture<Journal> journal = new CompletableFuture<>();
+    construal
+        .journal(
+            fileKey(path),
+            () -> createJournal(path, beancountParser, resolveIncludePragmas, construal))
+        .whenComplete(
+            (j, t) -> {
+              if (t == null) {
+                journal.complete(j);
+              } else {
+                construal.abort(t);
+                // Report the include that failed, not the siblings that were aborted because of it
+                journal.completeExceptionally(construal.failure());
+              }
+            });
+    // Cancelling the journal aborts the parses of its includes
+    journal.whenComplete(
+        (j, t) -> {
+          if (t != null) {
+            construal.abort(t);
+          }
+        });
+    return journal;
+  }
+
+  private CompletableFuture<Journal> createJournal(
+      Path path,
+      BeancountParser beancountParser,
+      boolean resolveIncludePragmas,
+      Construal construal) {
     final CompletableFuture<Journal> rootJournal =
-        construeStrategy.construe(() -> beancountParser.parseJournal(path));
+        construeStrategy.construe(
+            () -> {
+              construal.throwIfAborted();
+              return parse(path, beancountParser);
+            });
     if (!resolveIncludePragmas) {
       return rootJournal;
     }
     return rootJournal.thenCompose(
-        journal ->
-            resolveIncludePragmas(path, journal, beancountParser)
-                .thenApply(
-                    map -> NestJournalNodeInIncludePragmaTransformer.transform(journal, map)));
+        journal -> {
+          final long start = System.nanoTime();
+          return resolveIncludePragmas(path, journal, beancountParser, construal)
+              .thenApply(
+                  includes -> {
+                    reportIncludesResolved(path, includes.journals().size(), start);
+                    return NestJournalNodeInIncludePragmaTransformer.splice(
+                        journal, includes.indices(), includes.journals());
+                  });
+        });
+  }
+
+  private Journal parse(Path path, BeancountParser beancountParser) {
+    return journalCache != null
+        ? journalCache.load(path, beancountParser)
+        : beancountParser.parseJournal(path);
+  }
+
+  private void reportIncludesResolved(Path path, int includes, long start) {
+    final ParseMetricsListener metricsListener = parserOptions.metricsListener();
+    if (metricsListener != null) {
+      metricsListener.includesResolved(path, includes, System.nanoTime() - start);
+    }
   }
 
-  private CompletableFuture<Map<IncludePragma, Journal>> resolveIncludePragmas(
-      Path theJournalPath, Journal theJournal, BeancountParser beancountParser) {
+  /** The journals of the include pragmas at the indices of the declarations of a journal. */
+  private record ResolvedIncludes(int[] indices, List<Journal> journals) {}
+
+  private CompletableFuture<ResolvedIncludes> resolveIncludePragmas(
+      Path theJournalPath,
+      Journal theJournal,
+      BeancountParser beancountParser,
+      Construal construal) {
     List<IncludePragma> includePragmas = new ArrayList<>();
-    for (JournalDeclaration<?, ?> declaration : theJournal.declarations()) {
-      if (declaration instanceof IncludePragma includePragma) {
+    List<JournalDeclaration<?, ?>> declarations = theJournal.declarations();
+    List<Integer> indices = new ArrayList<>();
+    for (int i = 0; i < declarations.size(); i++) {
+      if (declarations.get(i) instanceof IncludePragma includePragma) {
+        indices.add(i);
         includePragmas.add(includePragma);
       }
     }
@@ -68,14 +253,19 @@ public final class Beancount {
     @SuppressWarnings("unchecked")
     CompletableFuture<Journal>[] includes =
         (CompletableFuture<Journal>[]) new CompletableFuture[includePragmas.size()];
+    CompletableFuture<ResolvedIncludes> result = new CompletableFuture<>();
+    final Path from = fileKey(theJournalPath);
+    final Path directory = theJournalPath.getParent();
     for (int i = 0; i < includePragmas.size(); i++) {
       IncludePragma includePragma = includePragmas.get(i);
-      Path includePath = theJournalPath.getParent().resolve(includePragma.filename());
-      includes[i] = createJournal(includePath, beancountParser, true);
+      includes[i] =
+          IncludeGlob.isGlob(includePragma.filename())
+              ? includeGlob(from, directory, includePragma, beancountParser, construal, result)
+              : include(
+                  from, directory.resolve(includePragma.filename()), beancountParser, construal);
+      failFast(includes[i], construal, result);
     }
 
-    CompletableFuture<Map<IncludePragma, Journal>> result = new CompletableFuture<>();
-
     CompletableFuture.allOf(includes)
         .whenComplete(
             (nil, t) -> {
@@ -83,25 +273,247 @@ public final class Beancount {
                 result.completeExceptionally(t);
                 return;
               }
-              Map<IncludePragma, Journal> resolved = new HashMap<>();
-              for (int i = 0; i < includePragmas.size(); i++) {
-                resolved.put(includePragmas.get(i), includes[i].join());
+              List<Journal> resolved = new ArrayList<>(includes.length);
+              for (CompletableFuture<Journal> include : includes) {
+                resolved.add(include.join());
               }
-              result.complete(resolved);
+              result.complete(
+                  new ResolvedIncludes(
+                      indices.stream().mapToInt(Integer::intValue).toArray(), resolved));
             });
 
     return result;
   }
 
+  private CompletableFuture<Journal> include(
+      Path from, Path includePath, BeancountParser beancountParser, Construal construal) {
+    Path to = fileKey(includePath);
+    List<Path> cycle = construal.include(from, to);
+    if (cycle != null) {
+      return CompletableFuture.failedFuture(new IncludeCycleException(cycle));
+    }
+    return construal.journal(
+        to, () -> createJournal(includePath, beancountParser, true, construal));
+  }
+
+  /**
+   * Includes all files that match the pattern of the pragma in parallel. Their journals are nested
+   * in a journal of their own include pragmas, one per file in the order of {@link
+   * IncludeGlob#expand}, so the pragma still holds a single journal.
+   */
+  private CompletableFuture<Journal> includeGlob(
+      Path from,
+      Path directory,
+      IncludePragma includePragma,
+      BeancountParser beancountParser,
+      Construal construal,
+      CompletableFuture<?> result) {
+    final List<Path> includePaths;
+    try {
+      includePaths = IncludeGlob.expand(directory, includePragma.filename());
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Journal>[] matches =
+        (CompletableFuture<Journal>[]) new CompletableFuture[includePaths.size()];
+    for (int i = 0; i < includePaths.size(); i++) {
+      matches[i] = include(from, includePaths.get(i), beancountParser, construal);
+      failFast(matches[i], construal, result);
+    }
+    return CompletableFuture.allOf(matches)
+        .thenApply(
+            nil -> {
+              List<Journal> journals = new ArrayList<>(matches.length);
+              for (CompletableFuture<Journal> match : matches) {
+                journals.add(match.join());
+              }
+              return globJournal(includePragma, directory, includePaths, journals);
+            });
+  }
+
+  /** The journal of a glob include pragma, holding an include pragma per matched file. */
+  static Journal globJournal(
+      IncludePragma includePragma,
+      Path directory,
+      List<Path> includePaths,
+      List<Journal> journals) {
+    List<JournalDeclaration<?, ?>> declarations = new ArrayList<>(includePaths.size());
+    for (int i = 0; i < includePaths.size(); i++) {
+      String filename = IncludeGlob.relativeFilename(directory, includePaths.get(i));
+      Journal journal = journals.get(i);
+      declarations.add(
+          includePragma.transform(
+              builder -> builder.filename(filename).journal(journal).comment(null)));
+    }
+    return Journal.newJournal()
+        .sourceLocation(includePragma.sourceLocation())
+        .declarations(declarations)
+        .build();
+  }
+
+  /** Fails the includes of a journal as soon as one of them fails, not once all are done. */
+  private static void failFast(
+      CompletableFuture<Journal> include, Construal construal, CompletableFuture<?> result) {
+    include.whenComplete(
+        (journal, t) -> {
+          if (t != null) {
+            construal.abort(t);
+            result.completeExceptionally(t);
+          }
+        });
+  }
+
+  /** The file a path refers to, so a file included through different paths is parsed once. */
+  static Path fileKey(Path path) {
+    try {
+      return path.toRealPath();
+    } catch (IOException e) {
+      // A file that does not exist fails when it is parsed
+      return path.toAbsolutePath().normalize();
+    }
+  }
+
+  /**
+   * The state shared by the parses of a journal and all of its includes. Every file is parsed once,
+   * no matter how often it is included. Once any of them fails, or the journal is cancelled, the
+   * parses that have not started yet are skipped.
+   */
+  private static final class Construal {
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Map<Path, CompletableFuture<Journal>> journals = new ConcurrentHashMap<>();
+    // Guarded by itself
+    private final Map<Path, List<Path>> includes = new HashMap<>();
+
+    /** Returns the journal of the file, which is created by the given supplier only once. */
+    private CompletableFuture<Journal> journal(
+        Path key, Supplier<CompletableFuture<Journal>> journalSupplier) {
+      final CompletableFuture<Journal> journal = new CompletableFuture<>();
+      final CompletableFuture<Journal> existing = journals.putIfAbsent(key, journal);
+      if (existing != null) {
+        return existing;
+      }
+      // Not created in putIfAbsent, as that would also create the includes while holding a lock
+      journalSupplier
+          .get()
+          .whenComplete(
+              (j, t) -> {
+                if (t == null) {
+                  journal.complete(j);
+                } else {
+                  journal.completeExceptionally(t);
+                }
+              });
+      return journal;
+    }
+
+    /**
+     * Records that {@code from} includes {@code to}, and returns the include chain if that closes a
+     * cycle, starting and ending with {@code from}. Checking this for every include, rather than
+     * only against the chain of includes that led to {@code from}, also finds cycles through files
+     * that are already being parsed for another include, which would never complete.
+     */
+    private List<Path> include(Path from, Path to) {
+      synchronized (includes) {
+        final List<Path> chain = chain(to, from, new HashSet<>());
+        if (chain != null) {
+          chain.add(0, from);
+          return chain;
+        }
+        includes.computeIfAbsent(from, k -> new ArrayList<>()).add(to);
+        return null;
+      }
+    }
+
+    private List<Path> chain(Path start, Path end, Set<Path> visited) {
+      if (start.equals(end)) {
+        final List<Path> chain = new ArrayList<>();
+        chain.add(end);
+        return chain;
+      }
+      if (!visited.add(start)) {
+        return null;
+      }
+      for (Path next : includes.getOrDefault(start, List.of())) {
+        final List<Path> chain = chain(next, end, visited);
+        if (chain != null) {
+          chain.add(0, start);
+          return chain;
+        }
+      }
+      return null;
+    }
+
+    private void abort(Throwable t) {
+      failure.compareAndSet(null, t);
+    }
+
+    private Throwable failure() {
+      return failure.get();
+    }
+
+    private void throwIfAborted() {
+      if (failure.get() != null) {
+        throw new CancellationException("Another journal failed or the journal was cancelled");
+      }
+    }
+  }
+
   public static Builder newBeancount() {
     return new Builder();
   }
 
   public static class Builder {
+    private BeancountConstrueStrategy construeStrategy = new SyncConstrueStrategy();
+    private BeancountParserOptions parserOptions = BeancountParserOptions.defaultOptions();
+    private JournalCache journalCache;
+
     private Builder() {}
 
     public Beancount build() {
-      return new Beancount();
+      return new Beancount(construeStrategy, parserOptions, journalCache);
+    }
+
+    public BeancountConstrueStrategy construeStrategy() {
+      return construeStrategy;
+    }
+
+    /**
+     * How the journal and its includes are parsed, which is one after the other on the calling
+     * thread by default. The includes of a journal are parsed concurrently by an asynchronous
+     * strategy, such as {@link VirtualThreadConstrueStrategy} or {@link BoundedConstrueStrategy}.
+     */
+    public Builder construeStrategy(BeancountConstrueStrategy construeStrategy) {
+      this.construeStrategy = construeStrategy;
+      return this;
+    }
+
+    /** Parses the journal and its includes as separate tasks of the given executor. */
+    public Builder executor(Executor executor) {
+      this.construeStrategy = new AsyncConstrueStrategy(executor);
+      return this;
+    }
+
+    public BeancountParserOptions parserOptions() {
+      return parserOptions;
+    }
+
+    public Builder parserOptions(BeancountParserOptions parserOptions) {
+      this.parserOptions = parserOptions;
+      return this;
+    }
+
+    public JournalCache journalCache() {
+      return journalCache;
+    }
+
+    /**
+     * Where the parsed journals of the files are kept between loads, so only the files that changed
+     * are parsed again, or {@code null} (the default) to parse every file on every load.
+     */
+    public Builder journalCache(JournalCache journalCache) {
+      this.journalCache = journalCache;
+      return this;
     }
   }
 }
@@ -0,0 +1,23 @@
+package nl.bluetainer.jbeancount;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/** Thrown when a journal (indirectly) includes itself. */
+public class IncludeCycleException extends BeancountException {
+
+  private final List<Path> includeChain;
+
+  public IncludeCycleException(List<Path> includeChain) {
+    super(
+        "Include cycle: "
+            + includeChain.stream().map(Path::toString).collect(Collectors.joining(" -> ")));
+    this.includeChain = List.copyOf(includeChain);
+  }
+
+  /** The files that include each other, starting and ending with the same file. */
+  public List<Path> includeChain() {
+    return includeChain;
+  }
+}
@@ -0,0 +1,221 @@
+package nl.bluetainer.jbeancount;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import nl.bluetainer.jbeancount.annotation.Beta;
+import nl.bluetainer.jbeancount.io.IncludeGlob;
+import nl.bluetainer.jbeancount.parser.JournalIndex;
+
+/**
+ * The files of a journal and the files they include, found by {@link JournalIndex scanning} the
+ * include pragmas of every file instead of parsing it. Every file is in the graph once, no matter
+ * how often or through which paths it is included. Because all files are known before any of them
+ * is parsed, {@link Beancount#createJournal(IncludeGraph)} can parse them in any order rather than
+ * a file only after the file that includes it.
+ */
+@Beta
+public final class IncludeGraph {
+
+  private final Node root;
+  private final Map<Path, Node> nodes;
+
+  private IncludeGraph(Node root, Map<Path, Node> nodes) {
+    this.root = root;
+    this.nodes = Collections.unmodifiableMap(nodes);
+  }
+
+  /**
+   * Scans the journal and everything it includes, expanding glob includes.
+   *
+   * @throws IncludeCycleException if a file (indirectly) includes itself
+   * @throws UncheckedIOException if a file cannot be read or a glob does not match any file
+   */
+  public static IncludeGraph scan(Path path) {
+    final Map<Path, Node> nodes = new LinkedHashMap<>();
+    final Node root = node(path, nodes);
+    final Deque<Node> unscanned = new ArrayDeque<>();
+    unscanned.add(root);
+    while (!unscanned.isEmpty()) {
+      final Node node = unscanned.poll();
+      final Path directory = node.path().getParent();
+      for (String filename : JournalIndex.scan(node.path()).includeFilenames()) {
+        final boolean glob = IncludeGlob.isGlob(filename);
+        final List<Path> paths =
+            glob ? IncludeGlob.expand(directory, filename) : List.of(directory.resolve(filename));
+        final List<Node> files = new ArrayList<>(paths.size());
+        for (Path includePath : paths) {
+          final int known = nodes.size();
+          final Node file = node(includePath, nodes);
+          if (nodes.size() > known) {
+            unscanned.add(file);
+          }
+          files.add(file);
+        }
+        node.add(new Include(filename, glob, paths, files));
+      }
+    }
+    checkForCycles(root, new ArrayList<>(), new HashSet<>());
+    return new IncludeGraph(root, nodes);
+  }
+
+  private static Node node(Path path, Map<Path, Node> nodes) {
+    final Path key = Beancount.fileKey(path);
+    final Node existing = nodes.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    final long bytes;
+    try {
+      bytes = Files.size(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    final Node node = new Node(path, key, bytes);
+    nodes.put(key, node);
+    return node;
+  }
+
+  private static void checkForCycles(Node node, List<Path> chain, Set<Node> done) {
+    if (done.contains(node)) {
+      return;
+    }
+    final int index = chain.indexOf(node.key());
+    if (index >= 0) {
+      final List<Path> cycle = new ArrayList<>(chain.subList(index, chain.size()));
+      cycle.add(node.key());
+      throw new IncludeCycleException(cycle);
+    }
+    chain.add(node.key());
+    for (Include include : node.includes()) {
+      for (Node file : include.files()) {
+        checkForCycles(file, chain, done);
+      }
+    }
+    chain.remove(chain.size() - 1);
+    done.add(node);
+  }
+
+  /** The file the graph was scanned from. */
+  public Node root() {
+    return root;
+  }
+
+  /** Every file in the graph, in the order they were found. */
+  public Collection<Node> nodes() {
+    return nodes.values();
+  }
+
+  /** The node of the file, whichever path it is included by, or {@code null} if there is none. */
+  public Node node(Path path) {
+    return nodes.get(Beancount.fileKey(path));
+  }
+
+  /**
+   * The files in the order they should be parsed to finish soonest when several are parsed at a
+   * time: the largest first, so none of them is started last. Once every file has been parsed, the
+   * files are ordered by their {@link Node#parseNanos() parse time} instead.
+   */
+  public List<Node> parseOrder() {
+    final boolean timed = nodes.values().stream().allMatch(node -> node.parseNanos >= 0);
+    final ToLongFunction<Node> weight = timed ? node -> node.parseNanos : Node::bytes;
+    final List<Node> order = new ArrayList<>(nodes.values());
+    order.sort(Comparator.comparingLong(weight).reversed());
+    return order;
+  }
+
+  /** A file of the graph. */
+  public static final class Node {
+    private final Path path;
+    private final Path key;
+    private final long bytes;
+    private final List<Include> includes = new ArrayList<>();
+    private final Map<String, Include> includesByFilename = new HashMap<>();
+    private volatile long parseNanos = -1;
+
+    private Node(Path path, Path key, long bytes) {
+      this.path = path;
+      this.key = key;
+      this.bytes = bytes;
+    }
+
+    /** The path the file was first found by. */
+    public Path path() {
+      return path;
+    }
+
+    /** The real path of the file, which is the same for every path it is included by. */
+    public Path key() {
+      return key;
+    }
+
+    /** The size of the file when it was scanned. */
+    public long bytes() {
+      return bytes;
+    }
+
+    /** The include pragmas of the file, in the order they appear in it. */
+    public List<Include> includes() {
+      return Collections.unmodifiableList(includes);
+    }
+
+    /** The first include pragma of the file with the filename, or {@code null} if there is none. */
+    public Include include(String filename) {
+      return includesByFilename.get(filename);
+    }
+
+    private void add(Include include) {
+      includes.add(include);
+      includesByFilename.putIfAbsent(include.filename(), include);
+    }
+
+    /**
+     * How long the file took to parse (or to load from the {@link Beancount.Builder#journalCache()
+     * cache}) the last time it was created with {@link Beancount#createJournal(IncludeGraph)}, or
+     * empty if it was not yet.
+     */
+    public OptionalLong parseNanos() {
+      final long nanos = parseNanos;
+      return nanos >= 0 ? OptionalLong.of(nanos) : OptionalLong.empty();
+    }
+
+    void parsed(long nanos) {
+      this.parseNanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+      return path.toString();
+    }
+  }
+
+  /**
+   * An include pragma of a file, with the files it includes. That is a single file, unless the
+   * filename is a glob.
+   *
+   * @param paths the included files, as resolved from the filename
+   * @param files the nodes of the {@code paths}
+   */
+  public record Include(String filename, boolean glob, List<Path> paths, List<Node> files) {
+
+    public Include {
+      paths = List.copyOf(paths);
+      files = List.copyOf(files);
+    }
+  }
+}
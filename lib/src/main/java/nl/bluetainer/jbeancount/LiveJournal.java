@@ -0,0 +1,462 @@
+package nl.bluetainer.jbeancount;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import nl.bluetainer.jbeancount.annotation.Beta;
+import nl.bluetainer.jbeancount.io.IncludeGlob;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.tools.NestJournalNodeInIncludePragmaTransformer;
+
+/**
+ * A journal and its includes that are kept up to date with the files they are parsed from. Every
+ * directory with a file of the include tree is watched, and when files change only those files are
+ * parsed again. The new root journal shares everything with the previous one except the journals
+ * that (indirectly) include a changed file, so only the {@link IncludePragma#journal()} path from
+ * the root to the change is replaced.
+ *
+ * <p>Files are parsed with {@link Beancount#createJournalWithoutIncludes(Path)}, so by its construe
+ * strategy, parser options and journal cache. When a reload fails, for example because a file is
+ * saved halfway through an edit, the previous journal is kept and the listeners are told why. A
+ * file that is created in a watched directory is picked up by the glob include pragmas it matches;
+ * files in new directories are found once a watched file changes.
+ */
+@Beta
+public final class LiveJournal implements AutoCloseable {
+
+  // Editors often write a file in several steps, so events are collected until none came for this
+  private static final long QUIET_MILLIS = 50;
+
+  /**
+   * Receives every new journal, on the thread that watches the files. What a listener throws is
+   * passed to the {@link Thread.UncaughtExceptionHandler} of that thread, and the files are still
+   * watched.
+   */
+  public interface Listener {
+    void journalChanged(Journal journal);
+
+    /** Called when files changed, but could not be loaded. The journal stays as it was. */
+    default void reloadFailed(Throwable t) {}
+  }
+
+  /** A parsed file, without its includes. */
+  private record FileNode(Path path, Journal journal, List<Include> includes) {}
+
+  /**
+   * An include pragma at an index of the declarations of its journal, and the files it includes,
+   * which are many for a glob.
+   */
+  private record Include(
+      IncludePragma pragma, int index, boolean glob, List<Path> paths, List<Path> keys) {}
+
+  private final Beancount beancount;
+  private final Path rootKey;
+  private final WatchService watchService;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+  private final Thread watcher;
+
+  // Only changed by the watcher thread, after the initial load
+  private Map<Path, FileNode> files = new HashMap<>();
+  private Map<Path, Journal> resolved = new HashMap<>();
+  private final Map<Path, WatchKey> watchedDirectories = new HashMap<>();
+  private volatile Journal journal;
+
+  private LiveJournal(Beancount beancount, Path path, WatchService watchService) {
+    this.beancount = beancount;
+    this.rootKey = Beancount.fileKey(path);
+    this.watchService = watchService;
+    this.watcher =
+        Thread.ofPlatform()
+            .name("live-journal-" + path.getFileName())
+            .daemon()
+            .unstarted(this::watch);
+  }
+
+  /**
+   * Loads the journal and its includes, and starts watching their files until the live journal is
+   * closed.
+   *
+   * @throws CompletionException when the journal cannot be loaded, like {@link
+   *     Beancount#createJournalSync(Path)}
+   */
+  public static LiveJournal open(Beancount beancount, Path path) throws IOException {
+    Objects.requireNonNull(beancount, "beancount");
+    final LiveJournal liveJournal =
+        new LiveJournal(beancount, path, path.getFileSystem().newWatchService());
+    try {
+      liveJournal.files.put(liveJournal.rootKey, liveJournal.parse(path));
+      liveJournal.reload(Set.of(), Set.of(liveJournal.rootKey), false);
+    } catch (RuntimeException | IOException e) {
+      liveJournal.watchService.close();
+      throw e;
+    }
+    liveJournal.watcher.start();
+    return liveJournal;
+  }
+
+  /** The journal as it was last loaded. */
+  public Journal journal() {
+    return journal;
+  }
+
+  public void addListener(Listener listener) {
+    listeners.add(Objects.requireNonNull(listener, "listener"));
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /** Stops watching the files, and waits for a reload that is in progress to finish. */
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+    watcher.interrupt();
+    if (Thread.currentThread() != watcher) {
+      try {
+        watcher.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        final Set<Path> changed = new HashSet<>();
+        boolean createdOrDeleted = false;
+        boolean overflow = false;
+        while (key != null) {
+          final Path directory = (Path) key.watchable();
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+              overflow = true;
+            } else {
+              final Path file = directory.resolve((Path) event.context());
+              changed.add(file);
+              createdOrDeleted |= event.kind() != ENTRY_MODIFY;
+            }
+          }
+          key.reset();
+          key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        if (overflow) {
+          changed.addAll(files.keySet());
+        }
+        changed.retainAll(files.keySet());
+        if (!changed.isEmpty() || createdOrDeleted) {
+          reloadAndNotify(changed, createdOrDeleted);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Closed
+    }
+  }
+
+  private void reloadAndNotify(Set<Path> changed, boolean rescanGlobs) {
+    final Journal previous = journal;
+    try {
+      reload(changed, Set.of(), rescanGlobs);
+    } catch (RuntimeException | IOException e) {
+      Throwable cause = e;
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      final Throwable failure = cause;
+      notifyListeners(listener -> listener.reloadFailed(failure));
+      return;
+    }
+    if (journal != previous) {
+      final Journal current = journal;
+      notifyListeners(listener -> listener.journalChanged(current));
+    }
+  }
+
+  private void notifyListeners(Consumer<Listener> notification) {
+    for (Listener listener : listeners) {
+      try {
+        notification.accept(listener);
+      } catch (RuntimeException e) {
+        watcher.getUncaughtExceptionHandler().uncaughtException(watcher, e);
+      }
+    }
+  }
+
+  /**
+   * Parses the changed files again, expands the glob includes again when files were created or
+   * deleted, loads the files that are included now, and rebuilds the journals that include a file
+   * that changed. Nothing is changed when this fails.
+   */
+  private void reload(Set<Path> changed, Set<Path> unresolved, boolean rescanGlobs)
+      throws IOException {
+    final Map<Path, FileNode> files = new HashMap<>(this.files);
+    final Set<Path> invalid = new HashSet<>(unresolved);
+    final Set<Path> existing = new HashSet<>(changed);
+    if (rescanGlobs) {
+      // A deleted file is dropped when the globs are expanded again, or fails to load again when
+      // it is still included by name
+      for (Path key : changed) {
+        if (!key.equals(rootKey) && !Files.exists(key)) {
+          existing.remove(key);
+          files.remove(key);
+        }
+      }
+    }
+    final Map<Path, Journal> parsed = parseAll(existing, files);
+    for (Map.Entry<Path, Journal> entry : parsed.entrySet()) {
+      final FileNode file = files.get(entry.getKey());
+      files.put(entry.getKey(), node(file.path(), entry.getValue()));
+      invalid.add(entry.getKey());
+    }
+    if (rescanGlobs) {
+      for (Map.Entry<Path, FileNode> entry : List.copyOf(files.entrySet())) {
+        final Path key = entry.getKey();
+        final FileNode file = entry.getValue();
+        if (!invalid.contains(key) && file.includes().stream().anyMatch(Include::glob)) {
+          final FileNode rescanned = node(file.path(), file.journal());
+          if (!rescanned.includes().equals(file.includes())) {
+            files.put(key, rescanned);
+            invalid.add(key);
+          }
+        }
+      }
+    }
+
+    // Load what is included now, a level of the include tree at a time
+    Set<Path> missing = missingIncludes(files);
+    while (!missing.isEmpty()) {
+      final Map<Path, Path> paths = new LinkedHashMap<>();
+      for (Path key : missing) {
+        paths.put(key, includePath(files, key));
+      }
+      final Map<Path, CompletableFuture<Journal>> loading = new LinkedHashMap<>();
+      paths.forEach((key, path) -> loading.put(key, beancount.createJournalWithoutIncludes(path)));
+      for (Map.Entry<Path, CompletableFuture<Journal>> entry : loading.entrySet()) {
+        final Path path = paths.get(entry.getKey());
+        files.put(entry.getKey(), node(path, entry.getValue().join()));
+        invalid.add(entry.getKey());
+      }
+      missing = missingIncludes(files);
+    }
+
+    final List<Path> cycle = findCycle(files);
+    if (cycle != null) {
+      throw new IncludeCycleException(cycle);
+    }
+    files.keySet().retainAll(reachable(files));
+
+    // Everything that includes an invalid file is rebuilt, everything else is shared
+    final Map<Path, Journal> resolved = new HashMap<>(this.resolved);
+    resolved.keySet().retainAll(files.keySet());
+    final Map<Path, List<Path>> includedBy = new HashMap<>();
+    files.forEach(
+        (key, file) -> {
+          for (Include include : file.includes()) {
+            for (Path included : include.keys()) {
+              includedBy.computeIfAbsent(included, k -> new ArrayList<>()).add(key);
+            }
+          }
+        });
+    final Deque<Path> stale = new ArrayDeque<>(invalid);
+    while (!stale.isEmpty()) {
+      final Path key = stale.pop();
+      if (resolved.remove(key) != null || invalid.contains(key)) {
+        stale.addAll(includedBy.getOrDefault(key, List.of()));
+      }
+    }
+    final Journal journal = resolve(rootKey, files, resolved);
+
+    watchDirectories(files.keySet());
+    this.files = files;
+    this.resolved = resolved;
+    this.journal = journal;
+  }
+
+  private Map<Path, Journal> parseAll(Collection<Path> keys, Map<Path, FileNode> files) {
+    final Map<Path, CompletableFuture<Journal>> parsing = new LinkedHashMap<>();
+    for (Path key : keys) {
+      parsing.put(key, beancount.createJournalWithoutIncludes(files.get(key).path()));
+    }
+    final Map<Path, Journal> parsed = new LinkedHashMap<>();
+    parsing.forEach((key, journal) -> parsed.put(key, journal.join()));
+    return parsed;
+  }
+
+  private FileNode parse(Path path) {
+    return node(path, beancount.createJournalSyncWithoutIncludes(path));
+  }
+
+  private static FileNode node(Path path, Journal journal) {
+    final Path directory = path.getParent();
+    final List<Include> includes = new ArrayList<>();
+    final List<JournalDeclaration<?, ?>> declarations = journal.declarations();
+    for (int index = 0; index < declarations.size(); index++) {
+      if (declarations.get(index) instanceof IncludePragma includePragma) {
+        final boolean glob = IncludeGlob.isGlob(includePragma.filename());
+        final List<Path> paths =
+            glob
+                ? IncludeGlob.expand(directory, includePragma.filename())
+                : List.of(directory.resolve(includePragma.filename()));
+        includes.add(
+            new Include(
+                includePragma,
+                index,
+                glob,
+                paths,
+                paths.stream().map(Beancount::fileKey).toList()));
+      }
+    }
+    return new FileNode(path, journal, List.copyOf(includes));
+  }
+
+  private static Set<Path> missingIncludes(Map<Path, FileNode> files) {
+    final Set<Path> missing = new HashSet<>();
+    for (FileNode file : files.values()) {
+      for (Include include : file.includes()) {
+        for (Path key : include.keys()) {
+          if (!files.containsKey(key)) {
+            missing.add(key);
+          }
+        }
+      }
+    }
+    return missing;
+  }
+
+  /** The path a missing file is included by, so it is parsed under the name it is included as. */
+  private static Path includePath(Map<Path, FileNode> files, Path key) {
+    for (FileNode file : files.values()) {
+      for (Include include : file.includes()) {
+        final int index = include.keys().indexOf(key);
+        if (index >= 0) {
+          return include.paths().get(index);
+        }
+      }
+    }
+    throw new IllegalStateException("Not included: " + key);
+  }
+
+  private List<Path> findCycle(Map<Path, FileNode> files) {
+    return findCycle(rootKey, files, new ArrayList<>(), new HashSet<>());
+  }
+
+  private static List<Path> findCycle(
+      Path key, Map<Path, FileNode> files, List<Path> chain, Set<Path> done) {
+    final int index = chain.indexOf(key);
+    if (index >= 0) {
+      final List<Path> cycle = new ArrayList<>(chain.subList(index, chain.size()));
+      cycle.add(key);
+      return cycle;
+    }
+    if (!done.add(key)) {
+      return null;
+    }
+    chain.add(key);
+    for (Include include : files.get(key).includes()) {
+      for (Path included : include.keys()) {
+        final List<Path> cycle = findCycle(included, files, chain, done);
+        if (cycle != null) {
+          return cycle;
+        }
+      }
+    }
+    chain.remove(chain.size() - 1);
+    return null;
+  }
+
+  private Set<Path> reachable(Map<Path, FileNode> files) {
+    final Set<Path> reachable = new HashSet<>();
+    final Deque<Path> queue = new ArrayDeque<>(List.of(rootKey));
+    while (!queue.isEmpty()) {
+      final Path key = queue.pop();
+      if (reachable.add(key)) {
+        for (Include include : files.get(key).includes()) {
+          queue.addAll(include.keys());
+        }
+      }
+    }
+    return reachable;
+  }
+
+  /** The journal of the file with its includes nested, reusing the journals that are resolved. */
+  private static Journal resolve(
+      Path key, Map<Path, FileNode> files, Map<Path, Journal> resolved) {
+    final Journal existing = resolved.get(key);
+    if (existing != null) {
+      return existing;
+    }
+    final FileNode file = files.get(key);
+    final int[] indices = new int[file.includes().size()];
+    final List<Journal> includes = new ArrayList<>(file.includes().size());
+    for (Include include : file.includes()) {
+      final List<Journal> journals = new ArrayList<>(include.keys().size());
+      for (Path included : include.keys()) {
+        journals.add(resolve(included, files, resolved));
+      }
+      indices[includes.size()] = include.index();
+      includes.add(
+          include.glob()
+              ? Beancount.globJournal(
+                  include.pragma(), file.path().getParent(), include.paths(), journals)
+              : journals.get(0));
+    }
+    final Journal journal =
+        NestJournalNodeInIncludePragmaTransformer.splice(file.journal(), indices, includes);
+    resolved.put(key, journal);
+    return journal;
+  }
+
+  /** Watches the directories of the files, and stops watching the others. */
+  private void watchDirectories(Set<Path> keys) throws IOException {
+    final Set<Path> directories = new HashSet<>();
+    for (Path key : keys) {
+      directories.add(key.getParent());
+    }
+    watchedDirectories
+        .entrySet()
+        .removeIf(
+            entry -> {
+              if (directories.contains(entry.getKey())) {
+                return false;
+              }
+              entry.getValue().cancel();
+              return true;
+            });
+    for (Path directory : directories) {
+      if (!watchedDirectories.containsKey(directory)) {
+        watchedDirectories.put(
+            directory,
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+      }
+    }
+  }
+}
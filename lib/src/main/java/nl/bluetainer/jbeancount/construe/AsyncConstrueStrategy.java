@@ -1,12 +1,29 @@
 package nl.bluetainer.jbeancount.construe;
 
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 import nl.bluetainer.jbeancount.language.Journal;
 
+/** Parses every journal as a separate task of an {@link Executor}. */
 public class AsyncConstrueStrategy implements BeancountConstrueStrategy {
+
+  private final Executor executor;
+
+  /** Parses on the common {@link ForkJoinPool}. */
+  public AsyncConstrueStrategy() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public AsyncConstrueStrategy(Executor executor) {
+    this.executor = Objects.requireNonNull(executor, "executor");
+  }
+
   @Override
   public CompletableFuture<Journal> construe(Supplier<Journal> journalSupplier) {
-    return CompletableFuture.supplyAsync(journalSupplier);
+    // A journal that is cancelled before its task runs is not parsed
+    return CompletableFuture.supplyAsync(journalSupplier, executor);
   }
 }
@@ -0,0 +1,85 @@
+package nl.bluetainer.jbeancount.construe;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import nl.bluetainer.jbeancount.language.Journal;
+
+/**
+ * Parses journals on an {@link Executor}, but at most {@code maxParallelism} at a time. The other
+ * journals wait in a queue rather than on a thread, so the executor may be shared with other work
+ * without parses crowding it out. Journals that are cancelled while waiting are not parsed.
+ */
+public class BoundedConstrueStrategy implements BeancountConstrueStrategy {
+
+  private final int maxParallelism;
+  private final Executor executor;
+  private final Queue<Construal> waiting = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger running = new AtomicInteger();
+
+  /** Parses on the common {@link ForkJoinPool}. */
+  public BoundedConstrueStrategy(int maxParallelism) {
+    this(maxParallelism, ForkJoinPool.commonPool());
+  }
+
+  public BoundedConstrueStrategy(int maxParallelism, Executor executor) {
+    if (maxParallelism < 1) {
+      throw new IllegalArgumentException("maxParallelism must be at least 1: " + maxParallelism);
+    }
+    this.maxParallelism = maxParallelism;
+    this.executor = Objects.requireNonNull(executor, "executor");
+  }
+
+  @Override
+  public CompletableFuture<Journal> construe(Supplier<Journal> journalSupplier) {
+    final Construal construal = new Construal(journalSupplier, new CompletableFuture<>());
+    waiting.add(construal);
+    schedule();
+    return construal.journal();
+  }
+
+  private void schedule() {
+    while (true) {
+      final int current = running.get();
+      if (current >= maxParallelism || waiting.isEmpty()) {
+        return;
+      }
+      if (!running.compareAndSet(current, current + 1)) {
+        continue;
+      }
+      final Construal construal = waiting.poll();
+      if (construal == null) {
+        // Taken by another thread, check again whether anything was added meanwhile
+        running.decrementAndGet();
+        continue;
+      }
+      try {
+        executor.execute(() -> run(construal));
+      } catch (RejectedExecutionException e) {
+        running.decrementAndGet();
+        construal.journal().completeExceptionally(e);
+      }
+    }
+  }
+
+  private void run(Construal construal) {
+    try {
+      if (!construal.journal().isDone()) {
+        construal.journal().complete(construal.journalSupplier().get());
+      }
+    } catch (Throwable t) {
+      construal.journal().completeExceptionally(t);
+    } finally {
+      running.decrementAndGet();
+      schedule();
+    }
+  }
+
+  private record Construal(Supplier<Journal> journalSupplier, CompletableFuture<Journal> journal) {}
+}
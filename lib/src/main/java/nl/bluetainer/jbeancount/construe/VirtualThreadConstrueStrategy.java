@@ -0,0 +1,18 @@
+package nl.bluetainer.jbeancount.construe;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Parses every journal on a virtual thread of its own, so a journal that includes hundreds of
+ * files parses all of them concurrently, limited only by the carrier threads of the virtual
+ * threads.
+ */
+public class VirtualThreadConstrueStrategy extends AsyncConstrueStrategy {
+
+  private static final Executor VIRTUAL_THREAD_PER_TASK =
+      task -> Thread.ofVirtual().name("jbeancount-construe").start(task);
+
+  public VirtualThreadConstrueStrategy() {
+    super(VIRTUAL_THREAD_PER_TASK);
+  }
+}
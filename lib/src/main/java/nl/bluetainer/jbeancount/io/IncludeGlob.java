@@ -0,0 +1,91 @@
+package nl.bluetainer.jbeancount.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Expands the glob patterns that Beancount allows in include pragmas, such as {@code include
+ * "statements/*&#47;*.beancount"}. The pattern uses the {@link
+ * java.nio.file.FileSystem#getPathMatcher(String) glob syntax} with {@code /} as the separator, and
+ * {@code **} matches across directories.
+ */
+public final class IncludeGlob {
+
+  private IncludeGlob() {}
+
+  /** Whether the filename of an include pragma is a pattern rather than a single file. */
+  public static boolean isGlob(String filename) {
+    for (int i = 0; i < filename.length(); i++) {
+      switch (filename.charAt(i)) {
+        case '*', '?', '[', '{' -> {
+          return true;
+        }
+        default -> {}
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the regular files in (or below) {@code directory} that match the pattern, ordered by
+   * their path relative to {@code directory} so every load includes them in the same order.
+   *
+   * @throws UncheckedIOException with a {@link NoSuchFileException} if no file matches
+   */
+  public static List<Path> expand(Path directory, String pattern) {
+    // Only walk the directories below the part of the pattern that has no wildcards
+    final List<String> segments = List.of(pattern.split("/", -1));
+    int fixed = 0;
+    while (fixed < segments.size() - 1 && !isGlob(segments.get(fixed))) {
+      fixed++;
+    }
+    // Resolved as a whole, so an absolute pattern does not end up below the directory
+    final Path base = directory.resolve(String.join("/", segments.subList(0, fixed)));
+    final String remainder = String.join("/", segments.subList(fixed, segments.size()));
+    final int maxDepth = remainder.contains("**") ? Integer.MAX_VALUE : segments.size() - fixed;
+    final PathMatcher matcher = base.getFileSystem().getPathMatcher("glob:" + remainder);
+
+    final List<Path> matches = new ArrayList<>();
+    if (Files.isDirectory(base)) {
+      final Path root = base;
+      try (Stream<Path> paths = Files.walk(root, maxDepth)) {
+        paths
+            .filter(path -> matcher.matches(root.relativize(path)) && Files.isRegularFile(path))
+            .sorted(Comparator.comparing(path -> separatedBySlashes(root.relativize(path))))
+            .forEach(matches::add);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (matches.isEmpty()) {
+      throw new UncheckedIOException(
+          new NoSuchFileException(
+              directory.resolve(pattern).toString(), null, "No files match the include pattern"));
+    }
+    return matches;
+  }
+
+  /** The path of an included file relative to {@code directory}, as written in a pragma. */
+  public static String relativeFilename(Path directory, Path file) {
+    return separatedBySlashes(directory.relativize(file));
+  }
+
+  private static String separatedBySlashes(Path path) {
+    final StringBuilder sb = new StringBuilder();
+    for (Path name : path) {
+      if (!sb.isEmpty()) {
+        sb.append('/');
+      }
+      sb.append(name);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,215 @@
+package nl.bluetainer.jbeancount.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParser;
+
+/**
+ * Keeps the parsed journal of every file in a directory, so files that did not change since the
+ * last load are not parsed again. A file is looked up by its real path, and by the {@link
+ * nl.bluetainer.jbeancount.parser.BeancountParserOptions#profile() profile} and {@link
+ * nl.bluetainer.jbeancount.parser.BeancountParserOptions#treeRetention() tree retention} of the
+ * parser, the options that change the journal it creates. Its cached journal is used when the size
+ * and modification time of the file are the same as when it was cached, or otherwise when the
+ * SHA-256 hash of its contents is. The journals are stored in the binary form of {@link
+ * JournalCodec}.
+ *
+ * <p>The cache never fails a load: an entry that cannot be read is parsed again, and an entry that
+ * cannot be written is skipped. Entries are replaced atomically, so loads in several processes may
+ * share a directory. Journals parsed with a {@link
+ * nl.bluetainer.jbeancount.parser.BeancountParserOptions#declarationFilter() declaration filter}
+ * are not cached.
+ */
+public final class JournalCache {
+
+  private static final int MAGIC = 0x4A424331; // "JBC1"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+  private static final String SUFFIX = ".journal";
+
+  private final Path directory;
+
+  private JournalCache(Path directory) {
+    this.directory = Objects.requireNonNull(directory, "directory");
+  }
+
+  public static JournalCache newJournalCache(Path directory) {
+    return new JournalCache(directory);
+  }
+
+  public Path directory() {
+    return directory;
+  }
+
+  /**
+   * Returns the cached journal of the file, or parses it with the parser and caches the result. The
+   * accounts, commodities, tags, links and metadata keys of a cached journal are interned in the
+   * {@link BeancountParser#symbolTable() symbol table of the parser}.
+   */
+  public Journal load(Path path, BeancountParser parser) {
+    if (parser.options().declarationFilter() != null) {
+      return parser.parseJournal(path);
+    }
+    final Path file;
+    final BasicFileAttributes attributes;
+    try {
+      file = path.toRealPath();
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      // Let the parser report the missing file
+      return parser.parseJournal(path);
+    }
+    // The name it is loaded by is the source name of the journal, which may differ for a link
+    final String key =
+        file
+            + "\0"
+            + path.getFileName()
+            + "\0"
+            + parser.options().profile().name()
+            + "\0"
+            + parser.options().treeRetention().name();
+    final Path entry = directory.resolve(HexFormat.of().formatHex(sha256(key), 0, 16) + SUFFIX);
+    final long size = attributes.size();
+    final long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+    final Entry cached = read(entry, key);
+    if (cached != null && cached.size() == size && cached.modified() == modified) {
+      final Journal journal = cached.decode(parser);
+      if (journal != null) {
+        return journal;
+      }
+    }
+    // The size and time were read before the contents, so a file that changes while it is parsed
+    // is hashed again on the next load
+    final byte[] hash;
+    try {
+      hash = sha256(Files.readAllBytes(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (cached != null && Arrays.equals(cached.hash(), hash)) {
+      final Journal journal = cached.decode(parser);
+      if (journal != null) {
+        // Touched without changing, so record the new time to skip the hash next time
+        write(entry, key, size, modified, hash, cached.journal(), cached.offset());
+        return journal;
+      }
+    }
+    final Journal journal = parser.parseJournal(path);
+    try {
+      write(entry, key, size, modified, hash, JournalCodec.encode(journal), 0);
+    } catch (RuntimeException e) {
+      // A journal that cannot be encoded is simply not cached
+    }
+    return journal;
+  }
+
+  /**
+   * An entry as read. The encoded journal starts at {@code offset} of the bytes of the entry,
+   * after the header.
+   */
+  private record Entry(long size, long modified, byte[] hash, byte[] journal, int offset) {
+
+    private Journal decode(BeancountParser parser) {
+      try {
+        return JournalCodec.decode(journal, offset, journal.length - offset, parser.symbolTable());
+      } catch (RuntimeException e) {
+        return null;
+      }
+    }
+  }
+
+  private static Entry read(Path entry, String key) {
+    try {
+      final byte[] bytes = Files.readAllBytes(entry);
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return null;
+      }
+      final byte[] storedKey = new byte[buffer.getInt()];
+      buffer.get(storedKey);
+      if (!key.equals(new String(storedKey, StandardCharsets.UTF_8))) {
+        return null;
+      }
+      final long size = buffer.getLong();
+      final long modified = buffer.getLong();
+      final byte[] hash = new byte[HASH_LENGTH];
+      buffer.get(hash);
+      return new Entry(size, modified, hash, bytes, buffer.position());
+    } catch (IOException | RuntimeException e) {
+      // Missing, or written by something else
+      return null;
+    }
+  }
+
+  /** Writes the entry, of which the encoded journal starts at {@code offset} of the bytes. */
+  private void write(
+      Path entry,
+      String key,
+      long size,
+      long modified,
+      byte[] hash,
+      byte[] journal,
+      int offset) {
+    final byte[] encodedKey = key.getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer header = ByteBuffer.allocate(4 + 4 + 4 + encodedKey.length + 8 + 8);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(encodedKey.length).put(encodedKey);
+    header.putLong(size).putLong(modified);
+    Path temporary = null;
+    try {
+      Files.createDirectories(directory);
+      temporary = Files.createTempFile(directory, "entry", ".tmp");
+      try (OutputStream out = Files.newOutputStream(temporary)) {
+        out.write(header.array());
+        out.write(hash);
+        out.write(journal, offset, journal.length - offset);
+      }
+      try {
+        Files.move(
+            temporary,
+            entry,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      // The journal is parsed again next time
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException ignored) {
+          // Nothing else to do
+        }
+      }
+    }
+  }
+
+  private static byte[] sha256(String string) {
+    return sha256(string.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] sha256(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,1016 @@
+package nl.bluetainer.jbeancount.io;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import nl.bluetainer.jbeancount.language.Account;
+import nl.bluetainer.jbeancount.language.AdditionExpression;
+import nl.bluetainer.jbeancount.language.Amount;
+import nl.bluetainer.jbeancount.language.ArithmeticExpression;
+import nl.bluetainer.jbeancount.language.BalanceDirective;
+import nl.bluetainer.jbeancount.language.BinaryCompoundExpression;
+import nl.bluetainer.jbeancount.language.BooleanValue;
+import nl.bluetainer.jbeancount.language.CloseDirective;
+import nl.bluetainer.jbeancount.language.Comment;
+import nl.bluetainer.jbeancount.language.Commodity;
+import nl.bluetainer.jbeancount.language.CommodityDirective;
+import nl.bluetainer.jbeancount.language.CompoundAmount;
+import nl.bluetainer.jbeancount.language.CompoundExpression;
+import nl.bluetainer.jbeancount.language.ConstantExpression;
+import nl.bluetainer.jbeancount.language.CostCompValue;
+import nl.bluetainer.jbeancount.language.CostSpec;
+import nl.bluetainer.jbeancount.language.CustomDirective;
+import nl.bluetainer.jbeancount.language.DateValue;
+import nl.bluetainer.jbeancount.language.DirectiveNode;
+import nl.bluetainer.jbeancount.language.DivisionExpression;
+import nl.bluetainer.jbeancount.language.DocumentDirective;
+import nl.bluetainer.jbeancount.language.Eol;
+import nl.bluetainer.jbeancount.language.EventDirective;
+import nl.bluetainer.jbeancount.language.Flag;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.LinkValue;
+import nl.bluetainer.jbeancount.language.Metadata;
+import nl.bluetainer.jbeancount.language.MetadataItem;
+import nl.bluetainer.jbeancount.language.MetadataLine;
+import nl.bluetainer.jbeancount.language.MetadataValue;
+import nl.bluetainer.jbeancount.language.MultiplicationExpression;
+import nl.bluetainer.jbeancount.language.NegationExpression;
+import nl.bluetainer.jbeancount.language.NilValue;
+import nl.bluetainer.jbeancount.language.NoteDirective;
+import nl.bluetainer.jbeancount.language.OpenDirective;
+import nl.bluetainer.jbeancount.language.OptionPragma;
+import nl.bluetainer.jbeancount.language.PadDirective;
+import nl.bluetainer.jbeancount.language.ParenthesisedExpression;
+import nl.bluetainer.jbeancount.language.PluginPragma;
+import nl.bluetainer.jbeancount.language.PlusExpression;
+import nl.bluetainer.jbeancount.language.Posting;
+import nl.bluetainer.jbeancount.language.PriceAnnotation;
+import nl.bluetainer.jbeancount.language.PriceDirective;
+import nl.bluetainer.jbeancount.language.QueryDirective;
+import nl.bluetainer.jbeancount.language.ScalarValue;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.StringValue;
+import nl.bluetainer.jbeancount.language.SubtractionExpression;
+import nl.bluetainer.jbeancount.language.SymbolFlag;
+import nl.bluetainer.jbeancount.language.SymbolTable;
+import nl.bluetainer.jbeancount.language.TagOrLink;
+import nl.bluetainer.jbeancount.language.TagValue;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+import nl.bluetainer.jbeancount.language.TxnFlag;
+import nl.bluetainer.jbeancount.language.UnaryCompoundExpression;
+
+/**
+ * A compact binary form of a {@link Journal}, used by {@link JournalCache}. Numbers are written as
+ * variable length integers, and every distinct string is written once and referred to by index
+ * after that, so accounts and commodities cost a byte or two per use. Which subtype follows is
+ * given by a tag byte, {@code 0} meaning {@code null}.
+ *
+ * <p>Reading interns the accounts, commodities, tags, links and metadata keys in the given {@link
+ * SymbolTable}, like parsing does.
+ */
+final class JournalCodec {
+
+  private static final int NULL = 0;
+
+  // Declarations
+  private static final int TRANSACTION = 1;
+  private static final int BALANCE = 2;
+  private static final int CLOSE = 3;
+  private static final int COMMODITY = 4;
+  private static final int CUSTOM = 5;
+  private static final int DOCUMENT = 6;
+  private static final int EVENT = 7;
+  private static final int NOTE = 8;
+  private static final int OPEN = 9;
+  private static final int PAD = 10;
+  private static final int PRICE = 11;
+  private static final int QUERY = 12;
+  private static final int INCLUDE = 13;
+  private static final int OPTION = 14;
+  private static final int PLUGIN = 15;
+  private static final int COMMENT = 16;
+  private static final int EOL = 17;
+
+  // Values, tags and links, metadata lines and cost components
+  private static final int ACCOUNT = 1;
+  private static final int BOOLEAN = 2;
+  private static final int COMMODITY_VALUE = 3;
+  private static final int DATE = 4;
+  private static final int LINK = 5;
+  private static final int NIL = 6;
+  private static final int STRING = 7;
+  private static final int TAG = 8;
+  private static final int AMOUNT = 9;
+  private static final int METADATA_ITEM = 10;
+  private static final int METADATA_COMMENT = 11;
+  private static final int COMPOUND_AMOUNT = 12;
+  private static final int CONSTANT = 13;
+  private static final int ADDITION = 14;
+  private static final int SUBTRACTION = 15;
+  private static final int MULTIPLICATION = 16;
+  private static final int DIVISION = 17;
+  private static final int NEGATION = 18;
+  private static final int PARENTHESISED = 19;
+  private static final int PLUS = 20;
+
+  // Flags and compound expressions
+  private static final int TXN_FLAG = 1;
+  private static final int SYMBOL_FLAG = 2;
+  private static final int BINARY_COMPOUND = 1;
+  private static final int UNARY_COMPOUND = 2;
+
+  private JournalCodec() {}
+
+  static byte[] encode(Journal journal) {
+    final Encoder encoder = new Encoder();
+    encoder.journal(journal);
+    return encoder.out.toByteArray();
+  }
+
+  /**
+   * Decodes {@code length} bytes of {@code bytes} from {@code offset}.
+   *
+   * @throws IllegalArgumentException when the bytes are not an encoded journal
+   */
+  static Journal decode(byte[] bytes, int offset, int length, SymbolTable symbolTable) {
+    final Decoder decoder = new Decoder(bytes, offset, offset + length, symbolTable);
+    final Journal journal = decoder.journal();
+    if (decoder.position != decoder.end) {
+      throw new IllegalArgumentException("Trailing bytes after the journal");
+    }
+    return journal;
+  }
+
+  private static final class Encoder {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private void journal(Journal journal) {
+      location(journal.sourceLocation());
+      final List<JournalDeclaration<?, ?>> declarations = journal.declarations();
+      unsigned(declarations.size());
+      for (JournalDeclaration<?, ?> declaration : declarations) {
+        declaration(declaration);
+      }
+    }
+
+    private void declaration(JournalDeclaration<?, ?> declaration) {
+      if (declaration == null) {
+        // What pushtag and poptag are parsed into
+        unsigned(NULL);
+      } else if (declaration instanceof TransactionDirective td) {
+        directive(TRANSACTION, td);
+        string(td.payee());
+        string(td.narration());
+        flag(td.flag());
+        unsigned(td.postings().size());
+        for (Posting posting : td.postings()) {
+          posting(posting);
+        }
+      } else if (declaration instanceof BalanceDirective bd) {
+        directive(BALANCE, bd);
+        string(bd.account().account());
+        value(bd.amount());
+      } else if (declaration instanceof CloseDirective cd) {
+        directive(CLOSE, cd);
+        string(cd.account().account());
+      } else if (declaration instanceof CommodityDirective cd) {
+        directive(COMMODITY, cd);
+        string(cd.commodity().commodity());
+      } else if (declaration instanceof CustomDirective cd) {
+        // Custom directives have no tags and links
+        directiveWithoutTagsAndLinks(CUSTOM, cd);
+        string(cd.name());
+        unsigned(cd.values().size());
+        for (ScalarValue value : cd.values()) {
+          value(value);
+        }
+      } else if (declaration instanceof DocumentDirective dd) {
+        directive(DOCUMENT, dd);
+        string(dd.filename());
+        string(dd.account().account());
+      } else if (declaration instanceof EventDirective ed) {
+        directive(EVENT, ed);
+        string(ed.type());
+        string(ed.description());
+      } else if (declaration instanceof NoteDirective nd) {
+        directive(NOTE, nd);
+        string(nd.account().account());
+        string(nd.note());
+      } else if (declaration instanceof OpenDirective od) {
+        directive(OPEN, od);
+        string(od.account().account());
+        commodities(od.commodities());
+        string(od.bookingMethod());
+      } else if (declaration instanceof PadDirective pd) {
+        directive(PAD, pd);
+        string(pd.sourceAccount().account());
+        string(pd.targetAccount().account());
+      } else if (declaration instanceof PriceDirective pd) {
+        directive(PRICE, pd);
+        string(pd.commodity().commodity());
+        value(pd.price());
+      } else if (declaration instanceof QueryDirective qd) {
+        directive(QUERY, qd);
+        string(qd.name());
+        string(qd.sql());
+      } else if (declaration instanceof IncludePragma ip) {
+        pragma(INCLUDE, ip.sourceLocation(), ip.comment());
+        string(ip.filename());
+        if (ip.journal() == null) {
+          unsigned(NULL);
+        } else {
+          unsigned(1);
+          journal(ip.journal());
+        }
+      } else if (declaration instanceof OptionPragma op) {
+        pragma(OPTION, op.sourceLocation(), op.comment());
+        string(op.name());
+        string(op.value());
+      } else if (declaration instanceof PluginPragma pp) {
+        pragma(PLUGIN, pp.sourceLocation(), pp.comment());
+        string(pp.name());
+        string(pp.config());
+      } else if (declaration instanceof Comment c) {
+        unsigned(COMMENT);
+        comment(c);
+      } else if (declaration instanceof Eol eol) {
+        unsigned(EOL);
+        location(eol.sourceLocation());
+      } else {
+        throw new BeancountIOException("Cannot encode " + declaration.getClass().getName());
+      }
+    }
+
+    private void directive(int tag, DirectiveNode<?, ?> directive) {
+      directiveWithoutTagsAndLinks(tag, directive);
+      unsigned(directive.tagsAndLinks().size());
+      for (TagOrLink tagOrLink : directive.tagsAndLinks()) {
+        value((ScalarValue) tagOrLink);
+      }
+    }
+
+    private void directiveWithoutTagsAndLinks(int tag, DirectiveNode<?, ?> directive) {
+      unsigned(tag);
+      location(directive.sourceLocation());
+      signed(directive.date().toEpochDay());
+      metadata(directive.metadata());
+      nullableComment(directive.comment());
+    }
+
+    private void pragma(int tag, SourceLocation location, Comment comment) {
+      unsigned(tag);
+      location(location);
+      nullableComment(comment);
+    }
+
+    private void posting(Posting posting) {
+      location(posting.sourceLocation());
+      flag(posting.flag());
+      string(posting.account() == null ? null : posting.account().account());
+      value(posting.amountExpression());
+      string(posting.commodity() == null ? null : posting.commodity().commodity());
+      final CostSpec costSpec = posting.costSpec();
+      if (costSpec == null) {
+        unsigned(NULL);
+      } else {
+        unsigned(costSpec.doubleBraces() ? 2 : 1);
+        unsigned(costSpec.components().size());
+        for (CostCompValue component : costSpec.components()) {
+          costComponent(component);
+        }
+      }
+      final PriceAnnotation price = posting.priceAnnotation();
+      if (price == null) {
+        unsigned(NULL);
+      } else {
+        unsigned(price.totalCost() ? 2 : 1);
+        value(price.priceExpression());
+        string(price.commodity() == null ? null : price.commodity().commodity());
+      }
+      metadata(posting.metadata());
+      nullableComment(posting.comment());
+    }
+
+    private void costComponent(CostCompValue component) {
+      if (component instanceof CompoundAmount ca) {
+        unsigned(COMPOUND_AMOUNT);
+        string(ca.commodity() == null ? null : ca.commodity().commodity());
+        final CompoundExpression expression = ca.compoundExpression();
+        if (expression instanceof BinaryCompoundExpression bce) {
+          unsigned(BINARY_COMPOUND);
+          value(bce.leftExpression());
+          value(bce.rightExpression());
+        } else if (expression instanceof UnaryCompoundExpression uce) {
+          unsigned(UNARY_COMPOUND);
+          value(uce.expression());
+        } else {
+          unsigned(NULL);
+        }
+      } else {
+        value((ScalarValue) component);
+      }
+    }
+
+    private void flag(Flag flag) {
+      if (flag == null) {
+        unsigned(NULL);
+      } else if (flag instanceof TxnFlag) {
+        unsigned(TXN_FLAG);
+      } else {
+        unsigned(SYMBOL_FLAG);
+        string(flag.flag());
+      }
+    }
+
+    private void commodities(List<Commodity> commodities) {
+      if (commodities == null) {
+        unsigned(NULL);
+        return;
+      }
+      unsigned(commodities.size() + 1);
+      for (Commodity commodity : commodities) {
+        string(commodity.commodity());
+      }
+    }
+
+    private void metadata(Metadata metadata) {
+      if (metadata == null) {
+        unsigned(NULL);
+        return;
+      }
+      unsigned(metadata.metadata().size() + 1);
+      for (MetadataLine line : metadata.metadata()) {
+        if (line instanceof MetadataItem item) {
+          unsigned(METADATA_ITEM);
+          string(item.key().key());
+          value(item.value());
+        } else if (line instanceof Comment c) {
+          unsigned(METADATA_COMMENT);
+          comment(c);
+        } else {
+          value((ScalarValue) line);
+        }
+      }
+    }
+
+    private void value(MetadataValue value) {
+      if (value == null) {
+        unsigned(NULL);
+      } else if (value instanceof Amount amount) {
+        unsigned(AMOUNT);
+        value(amount.expression());
+        string(amount.commodity() == null ? null : amount.commodity().commodity());
+        nullableDecimal(amount.tolerance());
+      } else if (value instanceof ConstantExpression ce) {
+        unsigned(CONSTANT);
+        nullableDecimal(ce.value());
+      } else if (value instanceof AdditionExpression e) {
+        binary(ADDITION, e.leftExpression(), e.rightExpression());
+      } else if (value instanceof SubtractionExpression e) {
+        binary(SUBTRACTION, e.leftExpression(), e.rightExpression());
+      } else if (value instanceof MultiplicationExpression e) {
+        binary(MULTIPLICATION, e.leftExpression(), e.rightExpression());
+      } else if (value instanceof DivisionExpression e) {
+        binary(DIVISION, e.leftExpression(), e.rightExpression());
+      } else if (value instanceof NegationExpression e) {
+        unsigned(NEGATION);
+        value(e.expression());
+      } else if (value instanceof ParenthesisedExpression e) {
+        unsigned(PARENTHESISED);
+        value(e.expression());
+      } else if (value instanceof PlusExpression e) {
+        unsigned(PLUS);
+        value(e.expression());
+      } else if (value instanceof Account a) {
+        unsigned(ACCOUNT);
+        string(a.account());
+      } else if (value instanceof BooleanValue bv) {
+        unsigned(BOOLEAN);
+        unsigned(bv.value() ? 1 : 0);
+      } else if (value instanceof Commodity c) {
+        unsigned(COMMODITY_VALUE);
+        string(c.commodity());
+      } else if (value instanceof DateValue dv) {
+        unsigned(DATE);
+        signed(dv.date().toEpochDay());
+      } else if (value instanceof LinkValue lv) {
+        unsigned(LINK);
+        string(lv.link());
+      } else if (value instanceof NilValue) {
+        unsigned(NIL);
+      } else if (value instanceof StringValue sv) {
+        unsigned(STRING);
+        string(sv.value());
+      } else if (value instanceof TagValue tv) {
+        unsigned(TAG);
+        string(tv.tag());
+      } else {
+        throw new BeancountIOException("Cannot encode " + value.getClass().getName());
+      }
+    }
+
+    private void binary(int tag, ArithmeticExpression left, ArithmeticExpression right) {
+      unsigned(tag);
+      value(left);
+      value(right);
+    }
+
+    private void nullableComment(Comment comment) {
+      if (comment == null) {
+        unsigned(NULL);
+      } else {
+        unsigned(1);
+        comment(comment);
+      }
+    }
+
+    private void comment(Comment comment) {
+      location(comment.sourceLocation());
+      string(comment.comment());
+    }
+
+    private void location(SourceLocation location) {
+      signed(location.line());
+      signed(location.column());
+      string(location.sourceName());
+      signed(location.startOffset());
+      signed(location.endOffset());
+    }
+
+    private void nullableDecimal(BigDecimal decimal) {
+      if (decimal == null) {
+        unsigned(NULL);
+        return;
+      }
+      final BigInteger unscaled = decimal.unscaledValue();
+      if (unscaled.bitLength() < 63) {
+        unsigned(1);
+        signed(decimal.scale());
+        signed(unscaled.longValue());
+      } else {
+        unsigned(2);
+        signed(decimal.scale());
+        final byte[] bytes = unscaled.toByteArray();
+        unsigned(bytes.length);
+        out.write(bytes, 0, bytes.length);
+      }
+    }
+
+    /** Writes {@code 0} for {@code null}, an index plus two for a known string, or {@code 1}. */
+    private void string(String string) {
+      if (string == null) {
+        unsigned(0);
+        return;
+      }
+      final Integer index = strings.putIfAbsent(string, strings.size());
+      if (index != null) {
+        unsigned(index + 2L);
+        return;
+      }
+      unsigned(1);
+      final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      unsigned(bytes.length);
+      out.write(bytes, 0, bytes.length);
+    }
+
+    private void signed(long value) {
+      unsigned(value << 1 ^ value >> 63);
+    }
+
+    private void unsigned(long value) {
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+  }
+
+  private static final class Decoder {
+    private final byte[] bytes;
+    private final int end;
+    private final SymbolTable symbolTable;
+    private String[] strings = new String[256];
+    private int stringCount;
+    private int position;
+
+    private Decoder(byte[] bytes, int position, int end, SymbolTable symbolTable) {
+      this.bytes = bytes;
+      this.position = position;
+      this.end = end;
+      this.symbolTable = symbolTable;
+    }
+
+    private Journal journal() {
+      final SourceLocation location = location();
+      final int size = size();
+      final List<JournalDeclaration<?, ?>> declarations = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        declarations.add(declaration());
+      }
+      return Journal.newJournal().sourceLocation(location).declarations(declarations).build();
+    }
+
+    private JournalDeclaration<?, ?> declaration() {
+      final int tag = tag();
+      return switch (tag) {
+        case NULL -> null;
+        case TRANSACTION -> {
+          final Header h = header(true);
+          final TransactionDirective.Builder b =
+              TransactionDirective.newTransactionDirective()
+                  .sourceLocation(h.location())
+                  .date(h.date())
+                  .metadata(h.metadata())
+                  .comment(h.comment())
+                  .tagsAndLinks(h.tagsAndLinks())
+                  .payee(string())
+                  .narration(string())
+                  .flag(flag());
+          final int size = size();
+          final List<Posting> postings = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            postings.add(posting());
+          }
+          yield b.postings(postings).build();
+        }
+        case BALANCE -> {
+          final Header h = header(true);
+          yield BalanceDirective.newBalanceDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .account(account())
+              .amount((Amount) value())
+              .build();
+        }
+        case CLOSE -> {
+          final Header h = header(true);
+          yield CloseDirective.newCloseDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .account(account())
+              .build();
+        }
+        case COMMODITY -> {
+          final Header h = header(true);
+          yield CommodityDirective.newCommodityDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .commodity(commodity())
+              .build();
+        }
+        case CUSTOM -> {
+          final Header h = header(false);
+          final CustomDirective.Builder b =
+              CustomDirective.newCustomDirective()
+                  .sourceLocation(h.location())
+                  .date(h.date())
+                  .metadata(h.metadata())
+                  .comment(h.comment())
+                  .name(string());
+          final int size = size();
+          final List<ScalarValue> values = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            values.add((ScalarValue) value());
+          }
+          yield b.values(values).build();
+        }
+        case DOCUMENT -> {
+          final Header h = header(true);
+          yield DocumentDirective.newDocumentDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .filename(string())
+              .account(account())
+              .build();
+        }
+        case EVENT -> {
+          final Header h = header(true);
+          yield EventDirective.newEventDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .type(string())
+              .description(string())
+              .build();
+        }
+        case NOTE -> {
+          final Header h = header(true);
+          yield NoteDirective.newNoteDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .account(account())
+              .note(string())
+              .build();
+        }
+        case OPEN -> {
+          final Header h = header(true);
+          yield OpenDirective.newOpenDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .account(account())
+              .commodities(commodities())
+              .bookingMethod(string())
+              .build();
+        }
+        case PAD -> {
+          final Header h = header(true);
+          yield PadDirective.newPadDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .sourceAccount(account())
+              .targetAccount(account())
+              .build();
+        }
+        case PRICE -> {
+          final Header h = header(true);
+          yield PriceDirective.newPriceDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .commodity(commodity())
+              .price((Amount) value())
+              .build();
+        }
+        case QUERY -> {
+          final Header h = header(true);
+          yield QueryDirective.newQueryDirective()
+              .sourceLocation(h.location())
+              .date(h.date())
+              .metadata(h.metadata())
+              .comment(h.comment())
+              .tagsAndLinks(h.tagsAndLinks())
+              .name(string())
+              .sql(string())
+              .build();
+        }
+        case INCLUDE ->
+            IncludePragma.newIncludePragma()
+                .sourceLocation(location())
+                .comment(nullableComment())
+                .filename(string())
+                .journal(tag() == NULL ? null : journal())
+                .build();
+        case OPTION ->
+            OptionPragma.newOptionPragma()
+                .sourceLocation(location())
+                .comment(nullableComment())
+                .name(string())
+                .value(string())
+                .build();
+        case PLUGIN ->
+            PluginPragma.newPluginPragma()
+                .sourceLocation(location())
+                .comment(nullableComment())
+                .name(string())
+                .config(string())
+                .build();
+        case COMMENT -> comment();
+        case EOL -> Eol.newEol().sourceLocation(location()).build();
+        default -> throw new IllegalArgumentException("Unknown declaration " + tag);
+      };
+    }
+
+    /** What all directives have, in the order {@link Encoder#directive} writes it. */
+    private record Header(
+        SourceLocation location,
+        LocalDate date,
+        Metadata metadata,
+        Comment comment,
+        List<TagOrLink> tagsAndLinks) {}
+
+    private Header header(boolean withTagsAndLinks) {
+      final SourceLocation location = location();
+      final LocalDate date = LocalDate.ofEpochDay(signed());
+      final Metadata metadata = metadata();
+      final Comment comment = nullableComment();
+      if (!withTagsAndLinks) {
+        return new Header(location, date, metadata, comment, null);
+      }
+      final int size = size();
+      final List<TagOrLink> tagsAndLinks = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        tagsAndLinks.add((TagOrLink) value());
+      }
+      return new Header(location, date, metadata, comment, tagsAndLinks);
+    }
+
+    private Posting posting() {
+      final Posting.Builder b =
+          Posting.newPosting()
+              .sourceLocation(location())
+              .flag(flag())
+              .account(nullableAccount())
+              .amountExpression((ArithmeticExpression) value())
+              .commodity(nullableCommodity());
+      final int costSpec = tag();
+      if (costSpec != NULL) {
+        final int size = size();
+        final List<CostCompValue> components = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          components.add(costComponent());
+        }
+        b.costSpec(
+            CostSpec.newCostSpec().components(components).doubleBraces(costSpec == 2).build());
+      }
+      final int price = tag();
+      if (price != NULL) {
+        b.priceAnnotation(
+            PriceAnnotation.newPriceAnnotation()
+                .totalCost(price == 2)
+                .priceExpression((ArithmeticExpression) value())
+                .commodity(nullableCommodity())
+                .build());
+      }
+      return b.metadata(metadata()).comment(nullableComment()).build();
+    }
+
+    private CostCompValue costComponent() {
+      final int tag = tag();
+      if (tag != COMPOUND_AMOUNT) {
+        return (CostCompValue) value(tag);
+      }
+      final Commodity commodity = nullableCommodity();
+      final int expressionTag = tag();
+      final CompoundExpression expression =
+          switch (expressionTag) {
+            case NULL -> null;
+            case BINARY_COMPOUND ->
+                BinaryCompoundExpression.newBinaryCompoundExpression()
+                    .leftExpression((ArithmeticExpression) value())
+                    .rightExpression((ArithmeticExpression) value())
+                    .build();
+            case UNARY_COMPOUND ->
+                UnaryCompoundExpression.newUnaryCompoundExpression()
+                    .expression((ArithmeticExpression) value())
+                    .build();
+            default -> throw new IllegalArgumentException("Unknown expression " + expressionTag);
+          };
+      return CompoundAmount.newCompoundAmount()
+          .commodity(commodity)
+          .compoundExpression(expression)
+          .build();
+    }
+
+    private Flag flag() {
+      final int tag = tag();
+      return switch (tag) {
+        case NULL -> null;
+        case TXN_FLAG -> TxnFlag.newTxnFlag().build();
+        case SYMBOL_FLAG ->
+            SymbolFlag.newSymbolFlag().type(SymbolFlag.Type.ofSymbol(string())).build();
+        default -> throw new IllegalArgumentException("Unknown flag " + tag);
+      };
+    }
+
+    private List<Commodity> commodities() {
+      final int size = nullableSize();
+      if (size < 0) {
+        return null;
+      }
+      final List<Commodity> commodities = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        commodities.add(commodity());
+      }
+      return commodities;
+    }
+
+    private Metadata metadata() {
+      final int size = nullableSize();
+      if (size < 0) {
+        return null;
+      }
+      final List<MetadataLine> lines = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        final int tag = tag();
+        lines.add(
+            switch (tag) {
+              case METADATA_ITEM ->
+                  MetadataItem.newMetadataItem()
+                      .key(symbolTable.metadataKey(string()))
+                      .value(value())
+                      .build();
+              case METADATA_COMMENT -> comment();
+              default -> (MetadataLine) value(tag);
+            });
+      }
+      return Metadata.newMetadata().metadata(lines).build();
+    }
+
+    private MetadataValue value() {
+      return value(tag());
+    }
+
+    private MetadataValue value(int tag) {
+      return switch (tag) {
+        case NULL -> null;
+        case AMOUNT ->
+            Amount.newAmount()
+                .expression((ArithmeticExpression) value())
+                .commodity(nullableCommodity())
+                .tolerance(nullableDecimal())
+                .build();
+        case CONSTANT ->
+            ConstantExpression.newConstantExpression().value(nullableDecimal()).build();
+        case ADDITION ->
+            AdditionExpression.newAdditionExpression()
+                .leftExpression((ArithmeticExpression) value())
+                .rightExpression((ArithmeticExpression) value())
+                .build();
+        case SUBTRACTION ->
+            SubtractionExpression.newSubtractionExpression()
+                .leftExpression((ArithmeticExpression) value())
+                .rightExpression((ArithmeticExpression) value())
+                .build();
+        case MULTIPLICATION ->
+            MultiplicationExpression.newMultiplicationExpression()
+                .leftExpression((ArithmeticExpression) value())
+                .rightExpression((ArithmeticExpression) value())
+                .build();
+        case DIVISION ->
+            DivisionExpression.newDivisionExpression()
+                .leftExpression((ArithmeticExpression) value())
+                .rightExpression((ArithmeticExpression) value())
+                .build();
+        case NEGATION ->
+            NegationExpression.newNegationExpression()
+                .expression((ArithmeticExpression) value())
+                .build();
+        case PARENTHESISED ->
+            ParenthesisedExpression.newParenthesisedExpression()
+                .expression((ArithmeticExpression) value())
+                .build();
+        case PLUS ->
+            PlusExpression.newPlusExpression().expression((ArithmeticExpression) value()).build();
+        case ACCOUNT -> account();
+        case BOOLEAN -> BooleanValue.newBooleanValue().value(tag() != 0).build();
+        case COMMODITY_VALUE -> commodity();
+        case DATE -> DateValue.newDateValue().date(LocalDate.ofEpochDay(signed())).build();
+        case LINK -> symbolTable.link(string());
+        case NIL -> NilValue.newNilValue().build();
+        case STRING -> StringValue.newStringValue().value(string()).build();
+        case TAG -> symbolTable.tag(string());
+        default -> throw new IllegalArgumentException("Unknown value " + tag);
+      };
+    }
+
+    private Comment nullableComment() {
+      return tag() == NULL ? null : comment();
+    }
+
+    private Comment comment() {
+      return Comment.newComment().sourceLocation(location()).comment(string()).build();
+    }
+
+    private Account account() {
+      return symbolTable.account(string());
+    }
+
+    private Account nullableAccount() {
+      final String account = string();
+      return account == null ? null : symbolTable.account(account);
+    }
+
+    private Commodity commodity() {
+      return symbolTable.commodity(string());
+    }
+
+    private Commodity nullableCommodity() {
+      final String commodity = string();
+      return commodity == null ? null : symbolTable.commodity(commodity);
+    }
+
+    private SourceLocation location() {
+      final int line = (int) signed();
+      final int column = (int) signed();
+      final String sourceName = string();
+      final int startOffset = (int) signed();
+      final int endOffset = (int) signed();
+      if (line == -1 && column == -1 && sourceName == null && startOffset == -1) {
+        return SourceLocation.EMPTY;
+      }
+      return SourceLocation.of(line, column, sourceName, startOffset, endOffset);
+    }
+
+    private BigDecimal nullableDecimal() {
+      final int kind = tag();
+      if (kind == NULL) {
+        return null;
+      }
+      final int scale = (int) signed();
+      if (kind == 1) {
+        return BigDecimal.valueOf(signed(), scale);
+      }
+      final int length = size();
+      final BigInteger unscaled = new BigInteger(bytes, take(length), length);
+      return new BigDecimal(unscaled, scale);
+    }
+
+    private String string() {
+      final long reference = unsigned();
+      if (reference == 0) {
+        return null;
+      }
+      if (reference > 1) {
+        if (reference - 2 >= stringCount) {
+          throw new IllegalArgumentException("Unknown string " + (reference - 2));
+        }
+        return strings[(int) (reference - 2)];
+      }
+      final int length = size();
+      final String string = new String(bytes, take(length), length, StandardCharsets.UTF_8);
+      if (stringCount == strings.length) {
+        strings = Arrays.copyOf(strings, stringCount * 2);
+      }
+      strings[stringCount++] = string;
+      return string;
+    }
+
+    /** Skips {@code length} bytes and returns where they start. */
+    private int take(int length) {
+      if (length > end - position) {
+        throw new IllegalArgumentException("Truncated journal");
+      }
+      final int start = position;
+      position += length;
+      return start;
+    }
+
+    private int tag() {
+      return (int) unsigned();
+    }
+
+    /** Reads the size of a list or string, which cannot be more than the number of bytes left. */
+    private int size() {
+      final long size = unsigned();
+      if (size > end - position) {
+        throw new IllegalArgumentException("Truncated journal");
+      }
+      return (int) size;
+    }
+
+    /** Reads the size of a list that may be {@code null}, which is returned as {@code -1}. */
+    private int nullableSize() {
+      final long size = unsigned() - 1;
+      if (size > end - position) {
+        throw new IllegalArgumentException("Truncated journal");
+      }
+      return (int) size;
+    }
+
+    private long signed() {
+      final long value = unsigned();
+      return value >>> 1 ^ -(value & 1);
+    }
+
+    private long unsigned() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        if (position == end) {
+          throw new IllegalArgumentException("Truncated journal");
+        }
+        final byte b = bytes[position++];
+        value |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed number");
+    }
+  }
+}
@@ -8,15 +8,43 @@ abstract sealed class AbstractNode<T extends Node<T, B>, B extends AbstractNode.
     implements Node<T, B>
     permits AbstractDirectiveNode, AbstractPragmaNode, Comment, Eol, Journal, Posting {
 
-  private final SourceLocation sourceLocation;
+  private static final long EMPTY_POSITION =
+      pack(SourceLocation.EMPTY.line(), SourceLocation.EMPTY.column());
+  private static final long EMPTY_SPAN =
+      pack(SourceLocation.EMPTY.startOffset(), SourceLocation.EMPTY.endOffset());
+
+  // Journals have more nodes than anything else, so rather than referencing a SourceLocation the
+  // line and column, and the start and end offset, are packed into a long each
+  private final long position;
+  private final long span;
+  private final String sourceName;
 
   protected AbstractNode(SourceLocation sourceLocation) {
-    this.sourceLocation = Objects.requireNonNull(sourceLocation, "sourceLocation");
+    Objects.requireNonNull(sourceLocation, "sourceLocation");
+    this.position = pack(sourceLocation.line(), sourceLocation.column());
+    this.span = pack(sourceLocation.startOffset(), sourceLocation.endOffset());
+    this.sourceName = sourceLocation.sourceName();
   }
 
+  /** Creates a {@link SourceLocation} for this node, every time it is called. */
   @Override
   public SourceLocation sourceLocation() {
-    return sourceLocation;
+    if (position == EMPTY_POSITION && span == EMPTY_SPAN && sourceName == null) {
+      return SourceLocation.EMPTY;
+    }
+    return SourceLocation.of(high(position), low(position), sourceName, high(span), low(span));
+  }
+
+  private static long pack(int high, int low) {
+    return (long) high << 32 | (low & 0xFFFFFFFFL);
+  }
+
+  private static int high(long packed) {
+    return (int) (packed >> 32);
+  }
+
+  private static int low(long packed) {
+    return (int) packed;
   }
 
   @Override
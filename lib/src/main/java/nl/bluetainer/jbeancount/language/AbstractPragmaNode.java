@@ -34,6 +34,7 @@ abstract sealed class AbstractPragmaNode<
 
     Builder(SourceLocation sourceLocation, Comment comment) {
       super(sourceLocation);
+      this.comment = comment;
     }
 
     public Comment comment() {
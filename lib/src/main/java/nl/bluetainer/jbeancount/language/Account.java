@@ -5,15 +5,29 @@ import java.util.Objects;
 public final class Account implements ScalarValue {
 
   private final String account;
+  private final int symbolId;
 
-  private Account(String account) {
+  private Account(String account, int symbolId) {
     this.account = Objects.requireNonNull(account, "account");
+    this.symbolId = symbolId;
+  }
+
+  static Account interned(String account, int symbolId) {
+    return new Account(account, symbolId);
   }
 
   public String account() {
     return account;
   }
 
+  /**
+   * The dense id of this account in the {@link SymbolTable} it was interned in, or {@code -1} when
+   * it was built directly.
+   */
+  public int symbolId() {
+    return symbolId;
+  }
+
   public static Builder newAccount() {
     return new Builder();
   }
@@ -24,7 +38,7 @@ public final class Account implements ScalarValue {
     private Builder() {}
 
     public Account build() {
-      return new Account(account);
+      return new Account(account, -1);
     }
 
     public String account() {
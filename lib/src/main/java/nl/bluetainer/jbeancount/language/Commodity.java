@@ -5,15 +5,29 @@ import java.util.Objects;
 public final class Commodity implements ScalarValue {
 
   private final String commodity;
+  private final int symbolId;
 
-  private Commodity(String commodity) {
+  private Commodity(String commodity, int symbolId) {
     this.commodity = Objects.requireNonNull(commodity, "commodity");
+    this.symbolId = symbolId;
+  }
+
+  static Commodity interned(String commodity, int symbolId) {
+    return new Commodity(commodity, symbolId);
   }
 
   public String commodity() {
     return commodity;
   }
 
+  /**
+   * The dense id of this commodity in the {@link SymbolTable} it was interned in, or {@code -1}
+   * when it was built directly.
+   */
+  public int symbolId() {
+    return symbolId;
+  }
+
   public static Builder newCommodity() {
     return new Builder();
   }
@@ -24,7 +38,7 @@ public final class Commodity implements ScalarValue {
     private Builder() {}
 
     public Commodity build() {
-      return new Commodity(commodity);
+      return new Commodity(commodity, -1);
     }
 
     public String commodity() {
@@ -5,9 +5,15 @@ import java.util.Objects;
 public final class LinkValue implements Link, ScalarValue {
 
   private final String link;
+  private final int symbolId;
 
-  private LinkValue(String link) {
+  private LinkValue(String link, int symbolId) {
     this.link = Objects.requireNonNull(link, "link");
+    this.symbolId = symbolId;
+  }
+
+  static LinkValue interned(String link, int symbolId) {
+    return new LinkValue(link, symbolId);
   }
 
   @Override
@@ -15,6 +21,14 @@ public final class LinkValue implements Link, ScalarValue {
     return link;
   }
 
+  /**
+   * The dense id of this link in the {@link SymbolTable} it was interned in, or {@code -1} when
+   * it was built directly.
+   */
+  public int symbolId() {
+    return symbolId;
+  }
+
   public static Builder newLinkValue() {
     return new Builder();
   }
@@ -25,7 +39,7 @@ public final class LinkValue implements Link, ScalarValue {
     private Builder() {}
 
     public LinkValue build() {
-      return new LinkValue(link);
+      return new LinkValue(link, -1);
     }
 
     public String link() {
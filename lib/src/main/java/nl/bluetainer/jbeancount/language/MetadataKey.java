@@ -5,15 +5,29 @@ import java.util.Objects;
 public final class MetadataKey {
 
   private final String key;
+  private final int symbolId;
 
-  private MetadataKey(String key) {
+  private MetadataKey(String key, int symbolId) {
     this.key = Objects.requireNonNull(key, "key");
+    this.symbolId = symbolId;
+  }
+
+  static MetadataKey interned(String key, int symbolId) {
+    return new MetadataKey(key, symbolId);
   }
 
   public String key() {
     return key;
   }
 
+  /**
+   * The dense id of this key in the {@link SymbolTable} it was interned in, or {@code -1} when
+   * it was built directly.
+   */
+  public int symbolId() {
+    return symbolId;
+  }
+
   public static Builder newMetadataKey() {
     return new Builder();
   }
@@ -24,7 +38,7 @@ public final class MetadataKey {
     private Builder() {}
 
     public MetadataKey build() {
-      return new MetadataKey(key);
+      return new MetadataKey(key, -1);
     }
 
     public String key() {
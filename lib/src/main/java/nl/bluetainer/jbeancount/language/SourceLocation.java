@@ -1,17 +1,32 @@
 package nl.bluetainer.jbeancount.language;
 
+import java.util.Objects;
+
+/**
+ * Where a node was parsed from. The offsets delimit the text of the node in its source, counted in
+ * code points like the indexes of an ANTLR {@code CharStream}, so for ASCII sources they are also
+ * byte offsets. The end offset is exclusive; both are {@code -1} when unknown.
+ *
+ * <p>Nodes do not keep instances of this class, see {@link AbstractNode}. Two locations are equal
+ * when their line, column and source name are, as the offsets follow from those.
+ */
 public final class SourceLocation {
 
-  public static final SourceLocation EMPTY = new SourceLocation(-1, -1, null);
+  public static final SourceLocation EMPTY = new SourceLocation(-1, -1, null, -1, -1);
 
   private final int line;
   private final int column;
   private final String sourceName;
+  private final int startOffset;
+  private final int endOffset;
 
-  private SourceLocation(int line, int column, String sourceName) {
+  private SourceLocation(
+      int line, int column, String sourceName, int startOffset, int endOffset) {
     this.line = line;
     this.column = column;
     this.sourceName = sourceName;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
   }
 
   public int line() {
@@ -26,8 +41,21 @@ public final class SourceLocation {
     return sourceName;
   }
 
+  public int startOffset() {
+    return startOffset;
+  }
+
+  public int endOffset() {
+    return endOffset;
+  }
+
   public static SourceLocation of(int line, int column, String sourceName) {
-    return new SourceLocation(line, column, sourceName);
+    return new SourceLocation(line, column, sourceName, -1, -1);
+  }
+
+  public static SourceLocation of(
+      int line, int column, String sourceName, int startOffset, int endOffset) {
+    return new SourceLocation(line, column, sourceName, startOffset, endOffset);
   }
 
   @Override
@@ -39,14 +67,14 @@ public final class SourceLocation {
 
     if (line != that.line) return false;
     if (column != that.column) return false;
-    return sourceName.equals(that.sourceName);
+    return Objects.equals(sourceName, that.sourceName);
   }
 
   @Override
   public int hashCode() {
     int result = line;
     result = 31 * result + column;
-    result = 31 * result + sourceName.hashCode();
+    result = 31 * result + Objects.hashCode(sourceName);
     return result;
   }
 
@@ -60,6 +88,10 @@ public final class SourceLocation {
         + ", sourceName='"
         + sourceName
         + '\''
+        + ", startOffset="
+        + startOffset
+        + ", endOffset="
+        + endOffset
         + '}';
   }
 }
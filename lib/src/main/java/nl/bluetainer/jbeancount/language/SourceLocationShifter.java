@@ -0,0 +1,61 @@
+package nl.bluetainer.jbeancount.language;
+
+import nl.bluetainer.jbeancount.util.ImmutableKit;
+
+/**
+ * Moves the source locations of a declaration, and of its postings and comments, by a number of
+ * lines and code points. This is what text inserted or removed above a declaration amounts to.
+ */
+public final class SourceLocationShifter {
+
+  private SourceLocationShifter() {}
+
+  public static JournalDeclaration<?, ?> shiftLines(
+      JournalDeclaration<?, ?> declaration, int lines) {
+    return shift(declaration, lines, 0);
+  }
+
+  public static JournalDeclaration<?, ?> shift(
+      JournalDeclaration<?, ?> declaration, int lines, int offset) {
+    if (declaration == null || (lines == 0 && offset == 0)) {
+      return declaration;
+    }
+    return (JournalDeclaration<?, ?>) shiftNode(declaration, lines, offset);
+  }
+
+  private static <T extends Node<T, B>, B extends Node.Builder<T, B>> T shiftNode(
+      Node<T, B> node, int lines, int offset) {
+    return node.transform(builder -> shiftBuilder(builder, lines, offset));
+  }
+
+  private static void shiftBuilder(Node.Builder<?, ?> builder, int lines, int offset) {
+    if (builder instanceof AbstractNode.Builder<?, ?> b) {
+      b.sourceLocation(shift(b.sourceLocation(), lines, offset));
+    }
+    if (builder instanceof AbstractDirectiveNode.Builder<?, ?> b && b.comment() != null) {
+      b.comment(shiftNode(b.comment(), lines, offset));
+    }
+    if (builder instanceof AbstractPragmaNode.Builder<?, ?> b && b.comment() != null) {
+      b.comment(shiftNode(b.comment(), lines, offset));
+    }
+    if (builder instanceof Posting.Builder b && b.comment() != null) {
+      b.comment(shiftNode(b.comment(), lines, offset));
+    }
+    if (builder instanceof TransactionDirective.Builder b) {
+      b.postings(ImmutableKit.map(b.postings(), posting -> shiftNode(posting, lines, offset)));
+    }
+  }
+
+  private static SourceLocation shift(SourceLocation sourceLocation, int lines, int offset) {
+    if (sourceLocation == null || sourceLocation.line() < 0) {
+      return sourceLocation;
+    }
+    final boolean hasOffsets = sourceLocation.startOffset() >= 0;
+    return SourceLocation.of(
+        sourceLocation.line() + lines,
+        sourceLocation.column(),
+        sourceLocation.sourceName(),
+        hasOffsets ? sourceLocation.startOffset() + offset : -1,
+        hasOffsets ? sourceLocation.endOffset() + offset : -1);
+  }
+}
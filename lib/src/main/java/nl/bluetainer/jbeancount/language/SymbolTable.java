@@ -0,0 +1,107 @@
+package nl.bluetainer.jbeancount.language;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes the accounts, commodities, tags, links and metadata keys of parsed journals, so
+ * every distinct name is represented by a single instance. Interned instances can therefore be
+ * compared by identity, and carry a {@code symbolId} that is dense per kind of symbol: the ids of
+ * the accounts in a table are {@code 0} up to {@code accounts().size()}, which makes them usable
+ * as array indexes when grouping.
+ *
+ * <p>A symbol table is safe to share between threads, and therefore between parsers.
+ */
+public final class SymbolTable {
+
+  private final Symbols<Account> accounts = new Symbols<>(Account::interned);
+  private final Symbols<Commodity> commodities = new Symbols<>(Commodity::interned);
+  private final Symbols<TagValue> tags = new Symbols<>(TagValue::interned);
+  private final Symbols<LinkValue> links = new Symbols<>(LinkValue::interned);
+  private final Symbols<MetadataKey> metadataKeys = new Symbols<>(MetadataKey::interned);
+
+  private SymbolTable() {}
+
+  public static SymbolTable newSymbolTable() {
+    return new SymbolTable();
+  }
+
+  public Account account(String account) {
+    return accounts.intern(account);
+  }
+
+  public Commodity commodity(String commodity) {
+    return commodities.intern(commodity);
+  }
+
+  public TagValue tag(String tag) {
+    return tags.intern(tag);
+  }
+
+  public LinkValue link(String link) {
+    return links.intern(link);
+  }
+
+  public MetadataKey metadataKey(String key) {
+    return metadataKeys.intern(key);
+  }
+
+  /** The interned accounts, indexed by their {@link Account#symbolId()}. */
+  public List<Account> accounts() {
+    return accounts.snapshot();
+  }
+
+  /** The interned commodities, indexed by their {@link Commodity#symbolId()}. */
+  public List<Commodity> commodities() {
+    return commodities.snapshot();
+  }
+
+  /** The interned tags, indexed by their {@link TagValue#symbolId()}. */
+  public List<TagValue> tags() {
+    return tags.snapshot();
+  }
+
+  /** The interned links, indexed by their {@link LinkValue#symbolId()}. */
+  public List<LinkValue> links() {
+    return links.snapshot();
+  }
+
+  /** The interned metadata keys, indexed by their {@link MetadataKey#symbolId()}. */
+  public List<MetadataKey> metadataKeys() {
+    return metadataKeys.snapshot();
+  }
+
+  private interface SymbolFactory<T> {
+    T create(String name, int symbolId);
+  }
+
+  private static final class Symbols<T> {
+    private final ConcurrentHashMap<String, T> byName = new ConcurrentHashMap<>();
+    private final List<T> byId = new ArrayList<>();
+    private final SymbolFactory<T> factory;
+
+    private Symbols(SymbolFactory<T> factory) {
+      this.factory = factory;
+    }
+
+    private T intern(String name) {
+      final T symbol = byName.get(name);
+      return symbol != null ? symbol : byName.computeIfAbsent(name, this::create);
+    }
+
+    private T create(String name) {
+      synchronized (byId) {
+        final T symbol = factory.create(name, byId.size());
+        byId.add(symbol);
+        return symbol;
+      }
+    }
+
+    private List<T> snapshot() {
+      synchronized (byId) {
+        return List.copyOf(byId);
+      }
+    }
+  }
+}
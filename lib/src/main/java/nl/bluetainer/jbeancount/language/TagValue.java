@@ -5,9 +5,15 @@ import java.util.Objects;
 public final class TagValue implements Tag, ScalarValue {
 
   private final String tag;
+  private final int symbolId;
 
-  private TagValue(String tag) {
+  private TagValue(String tag, int symbolId) {
     this.tag = Objects.requireNonNull(tag, "tag");
+    this.symbolId = symbolId;
+  }
+
+  static TagValue interned(String tag, int symbolId) {
+    return new TagValue(tag, symbolId);
   }
 
   @Override
@@ -15,6 +21,14 @@ public final class TagValue implements Tag, ScalarValue {
     return tag;
   }
 
+  /**
+   * The dense id of this tag in the {@link SymbolTable} it was interned in, or {@code -1} when
+   * it was built directly.
+   */
+  public int symbolId() {
+    return symbolId;
+  }
+
   public static Builder newTagValue() {
     return new Builder();
   }
@@ -25,7 +39,7 @@ public final class TagValue implements Tag, ScalarValue {
     private Builder() {}
 
     public TagValue build() {
-      return new TagValue(tag);
+      return new TagValue(tag, -1);
     }
 
     public String tag() {
@@ -1,13 +1,11 @@
 package nl.bluetainer.jbeancount.language.tools;
 
-import graphql.util.TraversalControl;
-import graphql.util.TraverserContext;
-import graphql.util.TreeTransformerUtil;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import nl.bluetainer.jbeancount.language.IncludePragma;
 import nl.bluetainer.jbeancount.language.Journal;
-import nl.bluetainer.jbeancount.language.Node;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
 
 public final class NestJournalNodeInIncludePragmaTransformer {
 
@@ -18,28 +16,52 @@ public final class NestJournalNodeInIncludePragmaTransformer {
     if (includePragmaJournalMap.isEmpty()) {
       return journal;
     }
-    return (Journal)
-        AstTransformer.transform(journal, new IncludeJournalTransformer(includePragmaJournalMap));
+    // Include pragmas are only found at the top level, so the rest of the tree is not traversed
+    final List<JournalDeclaration<?, ?>> declarations = journal.declarations();
+    final int[] indices = new int[includePragmaJournalMap.size()];
+    final Journal[] journals = new Journal[includePragmaJournalMap.size()];
+    int count = 0;
+    for (int i = 0; i < declarations.size() && count < indices.length; i++) {
+      if (declarations.get(i) instanceof IncludePragma includePragma) {
+        final Journal included = includePragmaJournalMap.get(includePragma);
+        if (included != null) {
+          indices[count] = i;
+          journals[count] = included;
+          count++;
+        }
+      }
+    }
+    return splice(
+        journal, Arrays.copyOf(indices, count), Arrays.asList(journals).subList(0, count));
   }
 
-  private static final class IncludeJournalTransformer extends NodeVisitorStub {
-
-    private final Map<IncludePragma, Journal> pragmaToJournalMapping;
-
-    public IncludeJournalTransformer(Map<IncludePragma, Journal> pragmaToJournalMapping) {
-      this.pragmaToJournalMapping =
-          Objects.requireNonNull(pragmaToJournalMapping, "pragmaToJournalMapping");
+  /**
+   * Nests the journals in the include pragmas at the given indices of the declarations of the
+   * journal, as recorded when the pragmas were collected. Nothing else is visited, so this costs a
+   * copy of the declaration list and constant work per include.
+   *
+   * @throws IllegalArgumentException if a declaration at one of the indices is not an include
+   *     pragma
+   */
+  public static Journal splice(Journal journal, int[] indices, List<Journal> journals) {
+    if (indices.length != journals.size()) {
+      throw new IllegalArgumentException(
+          indices.length + " indices for " + journals.size() + " journals");
     }
-
-    @Override
-    public TraversalControl visitIncludePragma(
-        IncludePragma ip, TraverserContext<Node<?, ?>> data) {
-      final Journal journal = pragmaToJournalMapping.get(ip);
-      if (journal == null) {
-        return TraversalControl.CONTINUE;
+    if (indices.length == 0) {
+      return journal;
+    }
+    final JournalDeclaration<?, ?>[] declarations =
+        journal.declarations().toArray(new JournalDeclaration<?, ?>[0]);
+    for (int i = 0; i < indices.length; i++) {
+      if (!(declarations[indices[i]] instanceof IncludePragma includePragma)) {
+        throw new IllegalArgumentException("Not an include pragma at index " + indices[i]);
       }
-      final IncludePragma pragmaWithJournal = ip.transform(builder -> builder.journal(journal));
-      return TreeTransformerUtil.changeNode(data, pragmaWithJournal);
+      final Journal included = journals.get(i);
+      declarations[indices[i]] = includePragma.transform(builder -> builder.journal(included));
     }
+    // Pushtag and poptag pragmas are null declarations, so the list must allow nulls
+    final List<JournalDeclaration<?, ?>> spliced = Arrays.asList(declarations);
+    return journal.transform(builder -> builder.declarations(spliced));
   }
 }
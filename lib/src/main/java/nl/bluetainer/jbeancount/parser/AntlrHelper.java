@@ -1,6 +1,5 @@
 package nl.bluetainer.jbeancount.parser;
 
-import java.util.List;
 import nl.bluetainer.jbeancount.language.SourceLocation;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.Token;
@@ -14,30 +13,48 @@ public final class AntlrHelper {
     return SourceLocation.of(line, column, sourceName);
   }
 
+  public static SourceLocation createSourceLocation(
+      int line, int column, String sourceName, int startOffset, int endOffset) {
+    return SourceLocation.of(line, column, sourceName, startOffset, endOffset);
+  }
+
   public static SourceLocation createSourceLocation(Token token, String sourceName) {
     return createSourceLocation(token.getLine(), token.getCharPositionInLine(), sourceName);
   }
 
   public static String createPreview(
       CharStream charStream, int line, int offendingStart, int offendingEnd) {
+    return createPreview(charStream, line, offendingStart, offendingEnd, 0);
+  }
+
+  public static String createPreview(
+      CharStream charStream, int line, int offendingStart, int offendingEnd, int lineOffset) {
+    return createPreview(
+        new LineIndex(charStream), line, offendingStart, offendingEnd, lineOffset);
+  }
+
+  static String createPreview(
+      LineIndex lineIndex, int line, int offendingStart, int offendingEnd, int lineOffset) {
     StringBuilder sb = new StringBuilder();
     int startLine = line - 3;
     int endLine = line + 3;
     // TODO Overflow handling
-    int lineMaxSize = String.valueOf(Math.max(startLine + 1, endLine + 1)).length();
+    int lineMaxSize =
+        String.valueOf(Math.max(startLine + 1, endLine + 1) + lineOffset).length();
     final String indent = " ".repeat(lineMaxSize + 3 + offendingStart);
-    List<String> lines = charStream.getText(Interval.of(0, charStream.size())).lines().toList();
-    for (int i = 0; i < lines.size(); i++) {
-      if (i >= startLine && i <= endLine) {
-        sb.append(String.format("%" + lineMaxSize + "s | ", i + 1))
-            .append(lines.get(i))
+    for (int i = Math.max(0, startLine); i <= endLine; i++) {
+      final String text = lineIndex.lineText(i + 1);
+      if (text == null) {
+        break;
+      }
+      sb.append(String.format("%" + lineMaxSize + "s | ", i + 1 + lineOffset))
+          .append(text)
+          .append('\n');
+      if (i == line - 1) {
+        sb.append(indent)
+            .append("^".repeat(offendingEnd - offendingStart))
+            .append(" error location")
             .append('\n');
-        if (i == line - 1) {
-          sb.append(indent)
-              .append("^".repeat(offendingEnd - offendingStart))
-              .append(" error location")
-              .append('\n');
-        }
       }
     }
     return sb.toString();
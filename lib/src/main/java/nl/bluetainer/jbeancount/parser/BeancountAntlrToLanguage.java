@@ -1,20 +1,13 @@
 package nl.bluetainer.jbeancount.parser;
 
-import static java.time.temporal.ChronoField.DAY_OF_MONTH;
-import static java.time.temporal.ChronoField.MONTH_OF_YEAR;
-import static java.time.temporal.ChronoField.YEAR;
 import static nl.bluetainer.jbeancount.util.ImmutableKit.emptyList;
 import static nl.bluetainer.jbeancount.util.ImmutableKit.map;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.format.SignStyle;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import nl.bluetainer.jbeancount.BeancountInvalidStateException;
 import nl.bluetainer.jbeancount.language.Account;
 import nl.bluetainer.jbeancount.language.AdditionExpression;
@@ -71,6 +64,7 @@ import nl.bluetainer.jbeancount.language.SourceLocation;
 import nl.bluetainer.jbeancount.language.StringValue;
 import nl.bluetainer.jbeancount.language.SubtractionExpression;
 import nl.bluetainer.jbeancount.language.SymbolFlag;
+import nl.bluetainer.jbeancount.language.SymbolTable;
 import nl.bluetainer.jbeancount.language.TagOrLink;
 import nl.bluetainer.jbeancount.language.TagValue;
 import nl.bluetainer.jbeancount.language.TransactionDirective;
@@ -80,6 +74,7 @@ import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrParser;
 import nl.bluetainer.jbeancount.util.Assert;
 import nl.bluetainer.jbeancount.util.ImmutableKit;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
@@ -87,27 +82,143 @@ import org.antlr.v4.runtime.tree.TerminalNode;
 @SuppressWarnings({"unused", "SpellCheckingInspection"})
 public final class BeancountAntlrToLanguage {
 
-  private final String sourceName;
+  private String sourceName;
+  private int lineOffset;
+  private int sourceOffset;
+  private final SymbolTable symbolTable;
+  private final boolean keepTrivia;
+  private final TokenValueParser tokenValueParser = new TokenValueParser();
 
   public BeancountAntlrToLanguage(CommonTokenStream tokenStream, String sourceName) {
+    this(tokenStream, sourceName, 0);
+  }
+
+  public BeancountAntlrToLanguage(
+      CommonTokenStream tokenStream, String sourceName, int lineOffset) {
+    this(tokenStream, sourceName, lineOffset, 0, SymbolTable.newSymbolTable());
+  }
+
+  /**
+   * @param lineOffset added to the line numbers of the tokens
+   * @param sourceOffset added to the start and end index of the tokens, or -1 when the offset is
+   *     unknown, which leaves the offsets of the nodes unknown as well
+   */
+  public BeancountAntlrToLanguage(
+      CommonTokenStream tokenStream,
+      String sourceName,
+      int lineOffset,
+      int sourceOffset,
+      SymbolTable symbolTable) {
+    this(tokenStream, sourceName, lineOffset, sourceOffset, symbolTable, true);
+  }
+
+  /**
+   * @param keepTrivia whether to create comments, blank lines and source locations, see {@link
+   *     BeancountParserOptions.Profile}
+   */
+  public BeancountAntlrToLanguage(
+      CommonTokenStream tokenStream,
+      String sourceName,
+      int lineOffset,
+      int sourceOffset,
+      SymbolTable symbolTable,
+      boolean keepTrivia) {
     this.sourceName = sourceName;
+    this.lineOffset = lineOffset;
+    this.sourceOffset = sourceOffset;
+    this.symbolTable = symbolTable;
+    this.keepTrivia = keepTrivia;
+  }
+
+  /** Prepares this instance to convert the parse tree of another source. */
+  void reset(String sourceName, int lineOffset, int sourceOffset) {
+    this.sourceName = sourceName;
+    this.lineOffset = lineOffset;
+    this.sourceOffset = sourceOffset;
+  }
+
+  private SourceLocation getSourceLocation(ParserRuleContext ctx) {
+    return getSourceLocation(ctx.start, lastSourceToken(ctx));
+  }
+
+  /**
+   * The last token of the rule, not counting DEDENT tokens, which are copies of the line break or
+   * end of file that caused them and so depend on what follows the rule.
+   */
+  private static Token lastSourceToken(ParserRuleContext ctx) {
+    ParserRuleContext context = ctx;
+    while (context.stop != null && context.stop.getType() == BeancountAntlrParser.DEDENT) {
+      final int count = context.getChildCount();
+      final ParseTree last = context.getChild(count - 1);
+      final ParseTree child =
+          last instanceof TerminalNode && count > 1 ? context.getChild(count - 2) : last;
+      if (child instanceof ParserRuleContext rule) {
+        context = rule;
+      } else if (child instanceof TerminalNode terminal) {
+        return terminal.getSymbol();
+      } else {
+        break;
+      }
+    }
+    return context.stop;
   }
 
   private SourceLocation getSourceLocation(Token token) {
-    return AntlrHelper.createSourceLocation(token, sourceName);
+    return getSourceLocation(token, token);
+  }
+
+  private SourceLocation getSourceLocation(Token start, Token stop) {
+    if (!keepTrivia) {
+      return SourceLocation.EMPTY;
+    }
+    int startOffset = -1;
+    int endOffset = -1;
+    if (start.getStartIndex() >= 0 && sourceOffset >= 0) {
+      startOffset = start.getStartIndex() + sourceOffset;
+      // The stop token of a rule that matched nothing precedes its start token
+      endOffset =
+          Math.max(startOffset, stop != null ? stop.getStopIndex() + 1 + sourceOffset : 0);
+    }
+    return AntlrHelper.createSourceLocation(
+        start.getLine() + lineOffset,
+        start.getCharPositionInLine(),
+        sourceName,
+        startOffset,
+        endOffset);
   }
 
   public Journal createJournal(BeancountAntlrParser.JournalContext ctx) {
     Journal.Builder journal = Journal.newJournal();
-    journal.sourceLocation(getSourceLocation(ctx.start));
+    journal.sourceLocation(getSourceLocation(ctx));
     journal.declarations(createDeclarations(ctx.declarations()));
     return journal.build();
   }
 
+  /**
+   * Creates a journal of declarations that have already been converted, for example one at a time
+   * as they were parsed. The tokens are the first and the last (EOF) token of the journal.
+   */
+  public Journal createJournal(
+      Token start, Token stop, List<JournalDeclaration<?, ?>> declarations) {
+    return Journal.newJournal()
+        .sourceLocation(getSourceLocation(start, stop))
+        .declarations(declarations)
+        .build();
+  }
+
   public List<JournalDeclaration<?, ?>> createDeclarations(
       BeancountAntlrParser.DeclarationsContext ctx) {
     if (ctx.decs != null && !ctx.decs.isEmpty()) {
-      return map(ctx.decs, this::createDeclaration);
+      if (keepTrivia) {
+        return map(ctx.decs, this::createDeclaration);
+      }
+      final List<JournalDeclaration<?, ?>> declarations = new ArrayList<>(ctx.decs.size());
+      for (BeancountAntlrParser.DeclarationContext dec : ctx.decs) {
+        if (dec.c == null && dec.e == null) {
+          declarations.add(createDeclaration(dec));
+        }
+      }
+      return Collections.unmodifiableList(declarations);
     }
     return ImmutableKit.emptyList();
   }
@@ -118,9 +229,9 @@ public final class BeancountAntlrToLanguage {
     } else if (ctx.p != null) {
       return createPragma(ctx.p);
     } else if (ctx.c != null) {
-      return createComment(ctx.c);
+      return keepTrivia ? createComment(ctx.c) : null;
     } else if (ctx.e != null) {
-      return createEol(ctx.e);
+      return keepTrivia ? createEol(ctx.e) : null;
     }
     Assert.shouldNeverHappen();
     return null;
@@ -195,10 +306,10 @@ public final class BeancountAntlrToLanguage {
     txn.flag(createFlag(tl.flag));
     txn.date(parseDateToken(tl.date));
     txn.tagsAndLinks(createTagsAndLinks(tl.tagsAndLinks()));
-    txn.sourceLocation(getSourceLocation(ctx.start));
+    txn.sourceLocation(getSourceLocation(ctx));
     txn.metadata(createMetadata(ctx.m));
     if (tl.c != null) {
-      txn.comment(createComment(tl.c));
+      txn.comment(createTrailingComment(tl.c));
     }
     return txn.build();
   }
@@ -207,13 +318,23 @@ public final class BeancountAntlrToLanguage {
     if (ctx == null || ctx.pm == null) {
       return ImmutableKit.emptyList();
     }
-    return map(ctx.pm, this::createPosting);
+    if (keepTrivia) {
+      return map(ctx.pm, this::createPosting);
+    }
+    final List<Posting> postings = new ArrayList<>(ctx.pm.size());
+    for (BeancountAntlrParser.PostingWithMetadataContext pm : ctx.pm) {
+      // Skip lines with only a comment
+      if (pm.p.a != null) {
+        postings.add(createPosting(pm));
+      }
+    }
+    return Collections.unmodifiableList(postings);
   }
 
   public Posting createPosting(BeancountAntlrParser.PostingWithMetadataContext ctx) {
     BeancountAntlrParser.PostingContext pctx = ctx.p;
     Posting.Builder posting = Posting.newPosting();
-    posting.sourceLocation(getSourceLocation(ctx.start));
+    posting.sourceLocation(getSourceLocation(ctx));
     posting.metadata(createMetadata(ctx.m));
     // This if-statement is only neccesairy because of the individual comment case.
     //  Maybe it should be revised later...
@@ -231,7 +352,7 @@ public final class BeancountAntlrToLanguage {
       posting.costSpec(createCostSpec(pctx.cs));
     }
     if (pctx.comment != null) {
-      posting.comment(createComment(pctx.comment));
+      posting.comment(createTrailingComment(pctx.comment));
     }
     if (pctx.pa != null) {
       boolean totalCost = pctx.atat != null;
@@ -262,10 +383,10 @@ public final class BeancountAntlrToLanguage {
     price.commodity(createCommodity(ctx.c));
     price.date(parseDateToken(ctx.date));
     price.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    price.sourceLocation(getSourceLocation(ctx.start));
+    price.sourceLocation(getSourceLocation(ctx));
     price.metadata(createMetadata(ctx.m));
     if (ctx.comment != null) {
-      price.comment(createComment(ctx.comment));
+      price.comment(createTrailingComment(ctx.comment));
     }
     return price.build();
   }
@@ -276,10 +397,10 @@ public final class BeancountAntlrToLanguage {
     balance.account(createAccount(ctx.account()));
     balance.date(parseDateToken(ctx.date));
     balance.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    balance.sourceLocation(getSourceLocation(ctx.start));
+    balance.sourceLocation(getSourceLocation(ctx));
     balance.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      balance.comment(createComment(ctx.c));
+      balance.comment(createTrailingComment(ctx.c));
     }
     return balance.build();
   }
@@ -293,10 +414,10 @@ public final class BeancountAntlrToLanguage {
     }
     open.date(parseDateToken(ctx.date));
     open.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    open.sourceLocation(getSourceLocation(ctx.start));
+    open.sourceLocation(getSourceLocation(ctx));
     open.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      open.comment(createComment(ctx.c));
+      open.comment(createTrailingComment(ctx.c));
     }
     return open.build();
   }
@@ -332,10 +453,10 @@ public final class BeancountAntlrToLanguage {
     close.account(createAccount(ctx.a));
     close.date(parseDateToken(ctx.date));
     close.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    close.sourceLocation(getSourceLocation(ctx.start));
+    close.sourceLocation(getSourceLocation(ctx));
     close.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      close.comment(createComment(ctx.c));
+      close.comment(createTrailingComment(ctx.c));
     }
     return close.build();
   }
@@ -345,10 +466,10 @@ public final class BeancountAntlrToLanguage {
     commodity.commodity(createCommodity(ctx.c));
     commodity.date(parseDateToken(ctx.date));
     commodity.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    commodity.sourceLocation(getSourceLocation(ctx.start));
+    commodity.sourceLocation(getSourceLocation(ctx));
     commodity.metadata(createMetadata(ctx.m));
     if (ctx.comment != null) {
-      commodity.comment(createComment(ctx.comment));
+      commodity.comment(createTrailingComment(ctx.comment));
     }
     return commodity.build();
   }
@@ -359,10 +480,10 @@ public final class BeancountAntlrToLanguage {
     pad.targetAccount(createAccount(ctx.targetAccount));
     pad.date(parseDateToken(ctx.date));
     pad.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    pad.sourceLocation(getSourceLocation(ctx.start));
+    pad.sourceLocation(getSourceLocation(ctx));
     pad.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      pad.comment(createComment(ctx.c));
+      pad.comment(createTrailingComment(ctx.c));
     }
     return pad.build();
   }
@@ -373,10 +494,10 @@ public final class BeancountAntlrToLanguage {
     document.account(createAccount(ctx.a));
     document.date(parseDateToken(ctx.date));
     document.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    document.sourceLocation(getSourceLocation(ctx.start));
+    document.sourceLocation(getSourceLocation(ctx));
     document.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      document.comment(createComment(ctx.c));
+      document.comment(createTrailingComment(ctx.c));
     }
     return document.build();
   }
@@ -391,10 +512,10 @@ public final class BeancountAntlrToLanguage {
     note.account(createAccount(ctx.account()));
     note.date(parseDateToken(ctx.date));
     note.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    note.sourceLocation(getSourceLocation(ctx.start));
+    note.sourceLocation(getSourceLocation(ctx));
     note.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      note.comment(createComment(ctx.c));
+      note.comment(createTrailingComment(ctx.c));
     }
     return note.build();
   }
@@ -405,10 +526,10 @@ public final class BeancountAntlrToLanguage {
     event.type(parseStringToken(ctx.type));
     event.date(parseDateToken(ctx.date));
     event.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    event.sourceLocation(getSourceLocation(ctx.start));
+    event.sourceLocation(getSourceLocation(ctx));
     event.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      event.comment(createComment(ctx.c));
+      event.comment(createTrailingComment(ctx.c));
     }
     return event.build();
   }
@@ -419,10 +540,10 @@ public final class BeancountAntlrToLanguage {
     query.name(parseStringToken(ctx.name));
     query.date(parseDateToken(ctx.date));
     query.tagsAndLinks(createTagsAndLinks(ctx.tagsAndLinks()));
-    query.sourceLocation(getSourceLocation(ctx.start));
+    query.sourceLocation(getSourceLocation(ctx));
     query.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      query.comment(createComment(ctx.c));
+      query.comment(createTrailingComment(ctx.c));
     }
     return query.build();
   }
@@ -432,10 +553,10 @@ public final class BeancountAntlrToLanguage {
     custom.name(parseStringToken(ctx.name));
     custom.values(createScalarValueList(ctx.mvl));
     custom.date(parseDateToken(ctx.date));
-    custom.sourceLocation(getSourceLocation(ctx.start));
+    custom.sourceLocation(getSourceLocation(ctx));
     custom.metadata(createMetadata(ctx.m));
     if (ctx.c != null) {
-      custom.comment(createComment(ctx.c));
+      custom.comment(createTrailingComment(ctx.c));
     }
     return custom.build();
   }
@@ -454,11 +575,11 @@ public final class BeancountAntlrToLanguage {
 
   public OptionPragma createOptionPragma(BeancountAntlrParser.OptionContext ctx) {
     OptionPragma.Builder option = OptionPragma.newOptionPragma();
-    option.sourceLocation(getSourceLocation(ctx.start));
+    option.sourceLocation(getSourceLocation(ctx));
     option.name(parseStringToken(ctx.name));
     option.value(parseStringToken(ctx.value));
     if (ctx.c != null) {
-      option.comment(createComment(ctx.c));
+      option.comment(createTrailingComment(ctx.c));
     }
     return option.build();
   }
@@ -466,9 +587,9 @@ public final class BeancountAntlrToLanguage {
   public IncludePragma createIncludePragma(BeancountAntlrParser.IncludeContext ctx) {
     IncludePragma.Builder include = IncludePragma.newIncludePragma();
     include.filename(parseStringToken(ctx.filename));
-    include.sourceLocation(getSourceLocation(ctx.start));
+    include.sourceLocation(getSourceLocation(ctx));
     if (ctx.c != null) {
-      include.comment(createComment(ctx.c));
+      include.comment(createTrailingComment(ctx.c));
     }
     return include.build();
   }
@@ -504,10 +625,18 @@ public final class BeancountAntlrToLanguage {
 
   public Metadata createMetadata(BeancountAntlrParser.MetadataContext ctx) {
     Metadata.Builder metadata = Metadata.newMetadata();
-    if (ctx != null && ctx.ml != null) {
+    if (ctx == null || ctx.ml == null) {
+      metadata.metadata(emptyList());
+    } else if (keepTrivia) {
       metadata.metadata(map(ctx.ml, this::createMetadataLine));
     } else {
-      metadata.metadata(emptyList());
+      final List<MetadataLine> lines = new ArrayList<>(ctx.ml.size());
+      for (BeancountAntlrParser.MetadataLineContext ml : ctx.ml) {
+        if (ml.c == null) {
+          lines.add(createMetadataLine(ml));
+        }
+      }
+      metadata.metadata(Collections.unmodifiableList(lines));
     }
     return metadata.build();
   }
@@ -549,7 +678,7 @@ public final class BeancountAntlrToLanguage {
     }
     final String text = keyToken.getText();
     final String key = text.substring(0, text.length() - 1); // Strip trailing semicolon, i.e. key:
-    return MetadataKey.newMetadataKey().key(key).build();
+    return symbolTable.metadataKey(key);
   }
 
   public NilValue createNilValue() {
@@ -578,9 +707,9 @@ public final class BeancountAntlrToLanguage {
     if (ctx.config != null) {
       plugin.config(parseStringToken(ctx.config));
     }
-    plugin.sourceLocation(getSourceLocation(ctx.start));
+    plugin.sourceLocation(getSourceLocation(ctx));
     if (ctx.c != null) {
-      plugin.comment(createComment(ctx.c));
+      plugin.comment(createTrailingComment(ctx.c));
     }
     return plugin.build();
   }
@@ -595,35 +724,23 @@ public final class BeancountAntlrToLanguage {
     return text.substring(1, text.length() - 1);
   }
 
-  private static final DateTimeFormatter ISO_LOCAL_DATE_WITH_SLASHES =
-      new DateTimeFormatterBuilder()
-          .appendValue(YEAR, 4, 10, SignStyle.EXCEEDS_PAD)
-          .appendLiteral('/')
-          .appendValue(MONTH_OF_YEAR, 2)
-          .appendLiteral('/')
-          .appendValue(DAY_OF_MONTH, 2)
-          .toFormatter(Locale.ROOT);
-
   public LocalDate parseDateToken(Token dateToken) {
     if (dateToken.getType() != BeancountAntlrParser.DATE) {
       Assert.shouldNeverHappen();
     }
-    if (dateToken.getText().charAt(4) == '/') {
-      // Second '/' (2015/12/23) should be implicit via ANTLR
-      return LocalDate.parse(dateToken.getText(), ISO_LOCAL_DATE_WITH_SLASHES);
-    }
-    return LocalDate.parse(dateToken.getText(), DateTimeFormatter.ISO_LOCAL_DATE);
+    // The separators (2015-12-23 or 2015/12/23) are checked by ANTLR
+    return tokenValueParser.parseDate(dateToken.getText());
   }
 
   public Account createAccount(BeancountAntlrParser.AccountContext ctx) {
-    return Account.newAccount().account(ctx.getText()).build();
+    return symbolTable.account(ctx.getText());
   }
 
   public Commodity createCommodity(Token commodityToken) {
     if (commodityToken.getType() != BeancountAntlrParser.CURRENCY) {
       Assert.shouldNeverHappen();
     }
-    return Commodity.newCommodity().commodity(commodityToken.getText()).build();
+    return symbolTable.commodity(commodityToken.getText());
   }
 
   public CostSpec createCostSpec(BeancountAntlrParser.CostSpecContext ctx) {
@@ -730,7 +847,7 @@ public final class BeancountAntlrToLanguage {
       Assert.shouldNeverHappen();
     }
     final String tag = tagToken.getText().substring(1); // Strip leading #
-    return TagValue.newTagValue().tag(tag).build();
+    return symbolTable.tag(tag);
   }
 
   public LinkValue createLinkValue(Token linkToken) {
@@ -738,7 +855,7 @@ public final class BeancountAntlrToLanguage {
       Assert.shouldNeverHappen();
     }
     final String link = linkToken.getText().substring(1); // Strip leading ^
-    return LinkValue.newLinkValue().link(link).build();
+    return symbolTable.link(link);
   }
 
   public Amount createAmount(BeancountAntlrParser.AmountContext ctx) {
@@ -786,8 +903,7 @@ public final class BeancountAntlrToLanguage {
     if (numberToken.getType() != BeancountAntlrParser.NUMBER) {
       Assert.shouldNeverHappen();
     }
-    final String text = numberToken.getText().replace(",", "");
-    return new BigDecimal(text);
+    return TokenValueParser.parseNumber(numberToken.getText());
   }
 
   public ConstantExpression createConstantExpression(BeancountAntlrParser.ConstantContext ctx) {
@@ -847,6 +963,10 @@ public final class BeancountAntlrToLanguage {
     return parenthesised.build();
   }
 
+  private Comment createTrailingComment(Token commentToken) {
+    return keepTrivia ? createComment(commentToken) : null;
+  }
+
   public Comment createComment(Token commentToken) {
     if (commentToken.getType() != BeancountAntlrParser.COMMENT) {
       throw new BeancountInvalidStateException();
@@ -0,0 +1,576 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.ACCOUNT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.ASTERISK;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.AT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.ATAT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.BALANCE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.CLOSE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.COLON;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.COMMA;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.COMMENT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.COMMODITY;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.CURRENCY;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.CUSTOM;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.DATE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.DEDENT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.DOCUMENT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.DOT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.EOL;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.EVENT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.FALSE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.FLAG;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.HASH;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.INCLUDE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.INDENT;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.KEY;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.LCURL;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.LCURLLCURL;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.LINK;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.LPAREN;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.MINUS;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.NOTE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.NULL;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.NUMBER;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.OPEN;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.OPTION;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.OPTIONS;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PAD;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PIPE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PLUGIN;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PLUS;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.POPMETA;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.POPTAG;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PRICE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PUSHMETA;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.PUSHTAG;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.QUERY;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.RCURL;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.RCURLRCURL;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.RPAREN;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.SEMICOLON;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.SLASH;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.STRING;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.TAG;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.TILDE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.TRUE;
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.TXN;
+
+import com.yuvalshavit.antlr4.DenterHelper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+/**
+ * A hand-written replacement for {@code BeancountAntlrLexer}. It scans the input directly instead
+ * of simulating the lexer ATN, and emits exactly the same tokens (including the INDENT and DEDENT
+ * tokens produced by {@link DenterHelper}) so it can be used with the generated parser.
+ *
+ * <p>Comments are split into a COMMENT and an EOL token while scanning, the same way {@link
+ * DenterHelper} splits the COMMENT tokens of the generated lexer.
+ */
+public final class BeancountLexer implements TokenSource {
+
+  private static final String[] KEYWORDS = {
+    "include", "pushtag", "poptag", "pushmeta", "popmeta", "option", "options", "plugin", "txn",
+    "balance", "open", "close", "commodity", "pad", "event", "price", "note", "document", "query",
+    "custom"
+  };
+  private static final int[] KEYWORD_TYPES = {
+    INCLUDE, PUSHTAG, POPTAG, PUSHMETA, POPMETA, OPTION, OPTIONS, PLUGIN, TXN, BALANCE, OPEN, CLOSE,
+    COMMODITY, PAD, EVENT, PRICE, NOTE, DOCUMENT, QUERY, CUSTOM
+  };
+
+  private CharStream input;
+  private Pair<TokenSource, CharStream> tokenFactorySourcePair;
+  private DenterHelper denter;
+  private final List<ANTLRErrorListener> errorListeners = new ArrayList<>();
+  private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+
+  private int line = 1;
+  private int charPositionInLine = 0;
+  private Token eolAfterComment;
+
+  public BeancountLexer(CharStream input) {
+    setInputStream(Objects.requireNonNull(input, "input"));
+    errorListeners.add(ConsoleErrorListener.INSTANCE);
+  }
+
+  /** Starts lexing the given input, so the lexer can be reused. */
+  public void setInputStream(CharStream input) {
+    this.input = input;
+    this.tokenFactorySourcePair = new Pair<>(this, input);
+    this.line = 1;
+    this.charPositionInLine = 0;
+    this.eolAfterComment = null;
+    // Comments are already split by scanComment(), there is no COMMENT token left for the denter
+    this.denter =
+        new DenterHelper(EOL, INDENT, DEDENT, Token.INVALID_TYPE) {
+          @Override
+          protected Token pullToken() {
+            return scanToken();
+          }
+        };
+  }
+
+  public void addErrorListener(ANTLRErrorListener listener) {
+    errorListeners.add(Objects.requireNonNull(listener, "listener"));
+  }
+
+  public void removeErrorListeners() {
+    errorListeners.clear();
+  }
+
+  @Override
+  public Token nextToken() {
+    return denter.nextToken();
+  }
+
+  @Override
+  public int getLine() {
+    return line;
+  }
+
+  @Override
+  public int getCharPositionInLine() {
+    return charPositionInLine;
+  }
+
+  @Override
+  public CharStream getInputStream() {
+    return input;
+  }
+
+  @Override
+  public String getSourceName() {
+    return input.getSourceName();
+  }
+
+  @Override
+  public void setTokenFactory(TokenFactory<?> factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public TokenFactory<?> getTokenFactory() {
+    return factory;
+  }
+
+  private Token scanToken() {
+    if (eolAfterComment != null) {
+      final Token t = eolAfterComment;
+      eolAfterComment = null;
+      return t;
+    }
+    // Keeps the characters of the token available in an unbuffered stream, like Lexer does
+    final int marker = input.mark();
+    try {
+      return scanTokenImpl();
+    } finally {
+      input.release(marker);
+    }
+  }
+
+  private Token scanTokenImpl() {
+    Token t = null;
+    while (t == null) {
+      final int c = input.LA(1);
+      if (c == ' ' || c == '\t') {
+        int n = 1;
+        while (la(n) == ' ' || la(n) == '\t') {
+          n++;
+        }
+        consume(n);
+        continue;
+      }
+      t =
+          switch (c) {
+            case IntStream.EOF ->
+                factory.create(
+                    tokenFactorySourcePair,
+                    Token.EOF,
+                    null,
+                    Token.DEFAULT_CHANNEL,
+                    input.index(),
+                    input.index() - 1,
+                    line,
+                    charPositionInLine);
+            case '\r', '\n' -> emit(EOL, newlineLength(0));
+            case ';' -> scanComment();
+            case '"' -> scanString();
+            case '#' -> scanTagOrHash();
+            case '^' -> scanLink();
+            case '/' -> scanSlashOrCurrency();
+            case '|' -> emit(PIPE, 1);
+            case '@' -> la(1) == '@' ? emit(ATAT, 2) : emit(AT, 1);
+            case '{' -> la(1) == '{' ? emit(LCURLLCURL, 2) : emit(LCURL, 1);
+            case '}' -> la(1) == '}' ? emit(RCURLRCURL, 2) : emit(RCURL, 1);
+            case ',' -> emit(COMMA, 1);
+            case '~' -> emit(TILDE, 1);
+            case '*' -> emit(ASTERISK, 1);
+            case ':' -> emit(COLON, 1);
+            case '+' -> emit(PLUS, 1);
+            case '-' -> emit(MINUS, 1);
+            case '(' -> emit(LPAREN, 1);
+            case ')' -> emit(RPAREN, 1);
+            case '.' -> emit(DOT, 1);
+            case '!', '&', '?', '%' -> emit(FLAG, 1);
+            default -> {
+              if (isDigit(c)) {
+                yield isDate() ? emit(DATE, 10) : emit(NUMBER, numberLength());
+              } else if (c >= 'a' && c <= 'z') {
+                yield scanKeywordOrKey();
+              } else if (isAccountTypeStart(c)) {
+                yield scanUppercase(c);
+              }
+              recover(0);
+              yield null;
+            }
+          };
+    }
+    return t;
+  }
+
+  private Token scanComment() {
+    int n = 1;
+    int c;
+    while ((c = la(n)) != '\n' && c != '\r') {
+      if (c == IntStream.EOF) {
+        return emit(SEMICOLON, 1);
+      }
+      n++;
+    }
+    final int newlineStart = n;
+    int end = n + (c == '\r' && la(n + 1) == '\n' ? 2 : 1);
+    int eolStart = newlineStart;
+    if (la(end) != ' ') {
+      // Without indentation on the next line, trailing spaces of the comment become part of the EOL
+      while (eolStart > 1 && la(eolStart - 1) == ' ') {
+        eolStart--;
+      }
+    }
+    while (la(end) == ' ') {
+      end++;
+    }
+    final int start = input.index();
+    final int commentLine = line;
+    final int commentCharPositionInLine = charPositionInLine;
+    final int eolLength = end - eolStart;
+    consume(end);
+    // The EOL token mirrors DenterHelper.FakeEolAfterCommentToken, including its column
+    eolAfterComment =
+        factory.create(
+            tokenFactorySourcePair,
+            EOL,
+            null,
+            Token.DEFAULT_CHANNEL,
+            start + eolStart,
+            start + end - 1,
+            commentLine,
+            commentCharPositionInLine - eolLength);
+    return factory.create(
+        tokenFactorySourcePair,
+        COMMENT,
+        null,
+        Token.DEFAULT_CHANNEL,
+        start,
+        start + eolStart - 1,
+        commentLine,
+        commentCharPositionInLine);
+  }
+
+  private Token scanTagOrHash() {
+    final int n = tagOrLinkIdentifierLength(1);
+    return n > 0 ? emit(TAG, n + 1) : emit(HASH, 1);
+  }
+
+  private Token scanLink() {
+    final int n = tagOrLinkIdentifierLength(1);
+    if (n > 0) {
+      return emit(LINK, n + 1);
+    }
+    recover(1);
+    return null;
+  }
+
+  private Token scanSlashOrCurrency() {
+    final int n = slashCurrencyLength();
+    return n > 0 ? emit(CURRENCY, n) : emit(SLASH, 1);
+  }
+
+  private Token scanString() {
+    int n = 1;
+    while (true) {
+      final int c = la(n);
+      if (c == '"') {
+        return emit(STRING, n + 1);
+      } else if (c == IntStream.EOF || (c == '\\' && la(n + 1) == IntStream.EOF)) {
+        recover(c == IntStream.EOF ? n : n + 1);
+        return null;
+      }
+      n += c == '\\' ? 2 : 1;
+    }
+  }
+
+  private Token scanKeywordOrKey() {
+    int n = 1;
+    while (isKeyChar(la(n))) {
+      n++;
+    }
+    if (n > 1 && la(n) == ':') {
+      return emit(KEY, n + 1);
+    }
+    int type = Token.INVALID_TYPE;
+    int length = 0;
+    for (int i = 0; i < KEYWORDS.length; i++) {
+      final String keyword = KEYWORDS[i];
+      if (keyword.length() > length && keyword.length() <= n && startsWith(keyword)) {
+        type = KEYWORD_TYPES[i];
+        length = keyword.length();
+      }
+    }
+    if (length > 0) {
+      return emit(type, length);
+    }
+    recover(n);
+    return null;
+  }
+
+  private Token scanUppercase(int c) {
+    // Both rules that start with an uppercase letter, CURRENCY and ACCOUNT, are greedy. On a tie
+    // the earlier rule in the grammar wins: TRUE, FALSE and NULL before CURRENCY before ACCOUNT.
+    int currencyLength = 0;
+    if (c >= 'A' && c <= 'Z') {
+      currencyLength = 1;
+      while (isCurrencyChar(la(currencyLength))) {
+        currencyLength++;
+      }
+    }
+    final int accountLength = accountLength();
+    if (accountLength > currencyLength) {
+      return emit(ACCOUNT, accountLength);
+    } else if (currencyLength > 0) {
+      if (currencyLength == 4 && startsWith("TRUE")) {
+        return emit(TRUE, 4);
+      } else if (currencyLength == 5 && startsWith("FALSE")) {
+        return emit(FALSE, 5);
+      } else if (currencyLength == 4 && startsWith("NULL")) {
+        return emit(NULL, 4);
+      }
+      return emit(CURRENCY, currencyLength);
+    }
+    int n = 1;
+    while (isAccountChar(la(n))) {
+      n++;
+    }
+    recover(la(n) == ':' ? n + 1 : n);
+    return null;
+  }
+
+  private boolean isDate() {
+    final int separator = la(4);
+    return isDigit(la(1))
+        && isDigit(la(2))
+        && isDigit(la(3))
+        && (separator == '-' || separator == '/')
+        && isDigit(la(5))
+        && isDigit(la(6))
+        && la(7) == separator
+        && isDigit(la(8))
+        && isDigit(la(9));
+  }
+
+  private int numberLength() {
+    // ([0-9]+ | [0-9] [0-9,]+ [0-9]) (DOT [0-9]*)?, the integral part ends at the last digit
+    int n = 1;
+    int length = 1;
+    int c;
+    while ((c = la(n)) == ',' || isDigit(c)) {
+      n++;
+      if (c != ',') {
+        length = n;
+      }
+    }
+    if (la(length) == '.') {
+      length++;
+      while (isDigit(la(length))) {
+        length++;
+      }
+    }
+    return length;
+  }
+
+  private int slashCurrencyLength() {
+    // '/' CurrencyCharset* [A-Z] (CurrencyCharset* [A-Z0-9])?, i.e. up to the last [A-Z0-9] as long
+    // as there is an [A-Z] somewhere
+    boolean seenUppercase = false;
+    int length = 0;
+    int c;
+    for (int n = 1; isCurrencyChar(c = la(n)); n++) {
+      if (c >= 'A' && c <= 'Z') {
+        seenUppercase = true;
+        length = n + 1;
+      } else if (c >= '0' && c <= '9') {
+        length = n + 1;
+      }
+    }
+    return seenUppercase ? length : 0;
+  }
+
+  private int accountLength() {
+    int n = 1;
+    while (isAccountChar(la(n))) {
+      n++;
+    }
+    int length = 0;
+    while (la(n) == ':' && isAccountNameStart(la(n + 1))) {
+      n += 2;
+      while (isAccountChar(la(n))) {
+        n++;
+      }
+      length = n;
+    }
+    return length;
+  }
+
+  private int tagOrLinkIdentifierLength(int offset) {
+    int n = offset;
+    int c;
+    while (isKeyChar(c = la(n)) || c == '/' || c == '.') {
+      n++;
+    }
+    return n - offset;
+  }
+
+  private int newlineLength(int offset) {
+    int n = offset + (la(offset) == '\r' && la(offset + 1) == '\n' ? 2 : 1);
+    while (la(n) == ' ') {
+      n++;
+    }
+    return n - offset;
+  }
+
+  private boolean startsWith(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (la(i) != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Token emit(int type, int length) {
+    final int start = input.index();
+    final int tokenLine = line;
+    final int tokenCharPositionInLine = charPositionInLine;
+    consume(length);
+    return factory.create(
+        tokenFactorySourcePair,
+        type,
+        null,
+        Token.DEFAULT_CHANNEL,
+        start,
+        start + length - 1,
+        tokenLine,
+        tokenCharPositionInLine);
+  }
+
+  /**
+   * Reports a token recognition error up to and including the character at {@code offset}, like
+   * the generated lexer does, and skips past it.
+   */
+  private void recover(int offset) {
+    final int start = input.index();
+    final int end = la(offset) == IntStream.EOF ? offset - 1 : offset;
+    final String text = input.getText(Interval.of(start, start + end));
+    final String message = "token recognition error at: '" + escape(text) + "'";
+    for (ANTLRErrorListener listener : List.copyOf(errorListeners)) {
+      listener.syntaxError(null, null, line, charPositionInLine, message, null);
+    }
+    int n = 0;
+    while (n <= offset && la(n) != IntStream.EOF) {
+      n++;
+    }
+    consume(n);
+  }
+
+  private void consume(int length) {
+    for (int i = 0; i < length; i++) {
+      if (input.LA(1) == '\n') {
+        line++;
+        charPositionInLine = 0;
+      } else {
+        charPositionInLine++;
+      }
+      input.consume();
+    }
+  }
+
+  private int la(int offset) {
+    return input.LA(offset + 1);
+  }
+
+  private static String escape(String s) {
+    return s.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isKeyChar(int c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '-'
+        || c == '_';
+  }
+
+  private static boolean isCurrencyChar(int c) {
+    return (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '.'
+        || c == '_'
+        || c == '-'
+        || c == '\'';
+  }
+
+  private static boolean isAccountTypeStart(int c) {
+    if (c < 0x80) {
+      return c >= 'A' && c <= 'Z';
+    }
+    final int type = Character.getType(c);
+    return type == Character.UPPERCASE_LETTER || type == Character.OTHER_LETTER;
+  }
+
+  private static boolean isAccountNameStart(int c) {
+    if (c < 0x80) {
+      return (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+    return isAccountTypeStart(c) || isUnicodeNumber(c);
+  }
+
+  private static boolean isAccountChar(int c) {
+    if (c < 0x80) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-';
+    }
+    return Character.isLetter(c) || isUnicodeNumber(c);
+  }
+
+  private static boolean isUnicodeNumber(int c) {
+    final int type = Character.getType(c);
+    return type == Character.DECIMAL_DIGIT_NUMBER
+        || type == Character.LETTER_NUMBER
+        || type == Character.OTHER_NUMBER;
+  }
+}
@@ -1,113 +1,929 @@
 package nl.bluetainer.jbeancount.parser;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.atomic.AtomicLong;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
 import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.SymbolTable;
 import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer;
 import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrParser;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 public class BeancountParser {
 
-  private BeancountParser() {}
+  private static final String WARM_UP_CORPUS = "warm-up.beancount";
+  // More than one pipeline per core is only kept for threads that block while parsing
+  private static final int MAX_POOLED_PIPELINES = Runtime.getRuntime().availableProcessors();
+
+  private final BeancountParserOptions options;
+  private final SymbolTable symbolTable;
+  private final Queue<Pipeline> pipelines = new ArrayBlockingQueue<>(MAX_POOLED_PIPELINES);
+
+  private BeancountParser(BeancountParserOptions options) {
+    this.options = Objects.requireNonNull(options, "options");
+    this.symbolTable =
+        options.symbolTable() != null ? options.symbolTable() : SymbolTable.newSymbolTable();
+  }
 
   public static BeancountParser newParser() {
-    return new BeancountParser();
+    return new BeancountParser(BeancountParserOptions.defaultOptions());
+  }
+
+  public static BeancountParser newParser(BeancountParserOptions options) {
+    return new BeancountParser(options);
+  }
+
+  public BeancountParserOptions options() {
+    return options;
+  }
+
+  /** The table in which every journal parsed by this parser interns its symbols. */
+  public SymbolTable symbolTable() {
+    return symbolTable;
+  }
+
+  /**
+   * Parses a small embedded corpus using every prediction strategy. ANTLR keeps its lexer and
+   * parser DFA caches in static state that is shared by all instances, so subsequent parses start
+   * at (close to) steady-state speed.
+   */
+  public static void warmUp() {
+    for (BeancountParserOptions.PredictionStrategy predictionStrategy :
+        BeancountParserOptions.PredictionStrategy.values()) {
+      final BeancountParser parser =
+          newParser(
+              BeancountParserOptions.newBeancountParserOptions()
+                  .predictionStrategy(predictionStrategy)
+                  .build());
+      try (InputStream inputStream =
+              Objects.requireNonNull(
+                  BeancountParser.class.getResourceAsStream(WARM_UP_CORPUS), WARM_UP_CORPUS);
+          Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+        parser.parseJournal(reader);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
   }
 
   public Journal parseJournal(Path path) {
-    return parseJournalImpl(path, path.getFileName().toString(), CharStreams::fromPath);
+    if (options.declarationFilter() != null) {
+      final byte[] bytes;
+      try {
+        bytes = Files.readAllBytes(path);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return parseFiltered(bytes, path.getFileName().toString());
+    }
+    if (options.treeRetention() == BeancountParserOptions.TreeRetention.PER_DECLARATION) {
+      try (DeclarationIterator declarations = iterateDeclarations(path)) {
+        return declarations.toJournal();
+      }
+    }
+    final String sourceName = path.getFileName().toString();
+    final MetricsRecorder recorder = newMetricsRecorder();
+    final Journal journal;
+    if (options.inputMode() == BeancountParserOptions.InputMode.MEMORY_MAPPED) {
+      // Nothing refers to the mapped file once the journal has been created
+      try (Arena arena = Arena.ofConfined()) {
+        journal =
+            parseJournalImpl(
+                path, sourceName, p -> MappedUtf8CharStream.open(p, arena), recorder);
+      }
+    } else {
+      journal = parseJournalImpl(path, sourceName, CharStreams::fromPath, recorder);
+    }
+    if (recorder != null) {
+      reportMetrics(recorder, sourceName, size(path));
+    }
+    return journal;
   }
 
   public Journal parseJournal(Reader reader) {
-    return parseJournalImpl(reader, null, CharStreams::fromReader);
+    if (options.declarationFilter() != null) {
+      final StringWriter text = new StringWriter();
+      try {
+        reader.transferTo(text);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return parseFiltered(text.toString().getBytes(StandardCharsets.UTF_8), null);
+    }
+    if (options.treeRetention() == BeancountParserOptions.TreeRetention.PER_DECLARATION) {
+      return iterateDeclarations(reader, null, -1, null).toJournal();
+    }
+    final MetricsRecorder recorder = newMetricsRecorder();
+    final Journal journal = parseJournalImpl(reader, null, CharStreams::fromReader, recorder);
+    if (recorder != null) {
+      reportMetrics(recorder, null, -1);
+    }
+    return journal;
+  }
+
+  /**
+   * Parses the declarations {@code from} (inclusive) up to {@code to} (exclusive) of an indexed
+   * file, reading only their bytes. Line numbers and offsets are those in the entire file. The
+   * declarations are parsed together, as they would be in the entire file, regardless of the
+   * {@link BeancountParserOptions#declarationFilter() filter} and the other input options.
+   */
+  public Journal parseJournal(Path path, JournalIndex index, int from, int to) {
+    Objects.checkFromToIndex(from, to, index.size());
+    final String sourceName = path.getFileName().toString();
+    if (from == to) {
+      return parseFragment("", sourceName, 0, 0);
+    }
+    final long start = index.startOffset(from);
+    final byte[] bytes = new byte[Math.toIntExact(index.endOffset(to - 1) - start)];
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          throw new EOFException(path + " is shorter than when it was indexed");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    // Offsets in the file are ints, the index counts code points in longs
+    final long sourceOffset = index.startCodePointOffset(from);
+    return parseFragment(
+        new String(bytes, StandardCharsets.UTF_8),
+        sourceName,
+        index.line(from) - 1,
+        sourceOffset + bytes.length <= Integer.MAX_VALUE ? (int) sourceOffset : -1);
+  }
+
+  /**
+   * Parses a single journal file by splitting it at top-level declarations, and parsing the
+   * resulting chunks on the common {@link ForkJoinPool}.
+   */
+  public Journal parseJournalParallel(Path path) {
+    return parseJournalParallel(path, ForkJoinPool.commonPool());
+  }
+
+  public Journal parseJournalParallel(Path path, ForkJoinPool pool) {
+    return parseJournalParallel(path, pool, -1);
+  }
+
+  Journal parseJournalParallel(Path path, ForkJoinPool pool, int targetChunkSize) {
+    final byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    final String sourceName = path.getFileName().toString();
+    final MetricsRecorder recorder = newMetricsRecorder();
+    final Journal journal = parseChunks(bytes, sourceName, pool, targetChunkSize, recorder);
+    if (recorder != null) {
+      reportMetrics(recorder, sourceName, bytes.length);
+    }
+    return journal;
+  }
+
+  private Journal parseChunks(
+      byte[] bytes,
+      String sourceName,
+      ForkJoinPool pool,
+      int targetChunkSize,
+      MetricsRecorder recorder) {
+    final List<JournalChunker.Chunk> chunks =
+        JournalChunker.split(
+            bytes,
+            targetChunkSize > 0
+                ? targetChunkSize
+                : JournalChunker.targetChunkSize(bytes.length, pool.getParallelism()));
+    if (chunks.size() == 1) {
+      return parseChunk(bytes, chunks.get(0), 0, sourceName, recorder);
+    }
+
+    final int[] sourceOffsets = codePointOffsets(bytes, chunks);
+    final List<ForkJoinTask<Journal>> tasks = new ArrayList<>(chunks.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      final JournalChunker.Chunk chunk = chunks.get(i);
+      final int sourceOffset = sourceOffsets[i];
+      tasks.add(pool.submit(() -> parseChunk(bytes, chunk, sourceOffset, sourceName, recorder)));
+    }
+    final List<Journal> journals = new ArrayList<>(chunks.size());
+    final List<InvalidSyntaxException> errors = new ArrayList<>();
+    int declarationCount = 0;
+    try {
+      for (ForkJoinTask<Journal> task : tasks) {
+        try {
+          final Journal journal = task.join();
+          declarationCount += journal.declarations().size();
+          journals.add(journal);
+        } catch (InvalidSyntaxErrorsException e) {
+          // Only thrown when collecting all errors, so keep collecting those of later chunks
+          errors.addAll(e.getErrors());
+        }
+      }
+    } catch (RuntimeException e) {
+      tasks.forEach(task -> task.cancel(false));
+      throw e;
+    }
+    if (!errors.isEmpty()) {
+      throw new InvalidSyntaxErrorsException(errors);
+    }
+
+    final List<JournalDeclaration<?, ?>> declarations = new ArrayList<>(declarationCount);
+    for (Journal journal : journals) {
+      declarations.addAll(journal.declarations());
+    }
+    final SourceLocation first = journals.get(0).sourceLocation();
+    return Journal.newJournal()
+        .sourceLocation(
+            SourceLocation.of(
+                first.line(),
+                first.column(),
+                first.sourceName(),
+                first.startOffset(),
+                sourceOffsets[chunks.size()]))
+        .declarations(declarations)
+        .build();
+  }
+
+  /**
+   * Parses the declarations that may match the {@link DeclarationFilter}, judging by their first
+   * line. Consecutive declarations that may match are parsed together, and the resulting
+   * declarations are tested again to drop those that do not match after all.
+   */
+  private Journal parseFiltered(byte[] bytes, String sourceName) {
+    final DeclarationFilter filter = options.declarationFilter();
+    final MetricsRecorder recorder = newMetricsRecorder();
+    // Every chunk holds a single declaration, followed by its comments and blank lines
+    final List<JournalChunker.Chunk> chunks = JournalChunker.split(bytes, 1);
+    final int[] sourceOffsets = codePointOffsets(bytes, chunks);
+    final List<JournalDeclaration<?, ?>> declarations = new ArrayList<>();
+    final List<InvalidSyntaxException> errors = new ArrayList<>();
+    int runStart = -1;
+    for (int i = 0; i <= chunks.size(); i++) {
+      final boolean mightMatch =
+          i < chunks.size()
+              && filter.mightMatch(bytes, chunks.get(i).startOffset(), chunks.get(i).endOffset());
+      if (mightMatch && runStart < 0) {
+        runStart = i;
+      } else if (!mightMatch && runStart >= 0) {
+        final JournalChunker.Chunk first = chunks.get(runStart);
+        final JournalChunker.Chunk run =
+            new JournalChunker.Chunk(
+                first.startOffset(), chunks.get(i - 1).endOffset(), first.firstLine());
+        try {
+          final Journal journal =
+              parseChunk(bytes, run, sourceOffsets[runStart], sourceName, recorder);
+          for (JournalDeclaration<?, ?> declaration : journal.declarations()) {
+            // Pushtag and poptag pragmas are left out, as when streaming
+            if (declaration != null && filter.test(declaration)) {
+              declarations.add(declaration);
+            }
+          }
+        } catch (InvalidSyntaxErrorsException e) {
+          // Only thrown when collecting all errors, so keep collecting those of later runs
+          errors.addAll(e.getErrors());
+        }
+        runStart = -1;
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new InvalidSyntaxErrorsException(errors);
+    }
+    if (recorder != null) {
+      reportMetrics(recorder, sourceName, bytes.length);
+    }
+    return Journal.newJournal()
+        .sourceLocation(
+            options.profile() == BeancountParserOptions.Profile.LOSSLESS
+                ? SourceLocation.of(1, 0, sourceName, 0, sourceOffsets[chunks.size()])
+                : SourceLocation.EMPTY)
+        .declarations(declarations)
+        .build();
+  }
+
+  /**
+   * Returns the number of code points before every chunk, followed by the number of code points in
+   * the file.
+   */
+  private static int[] codePointOffsets(byte[] bytes, List<JournalChunker.Chunk> chunks) {
+    final ByteScanner scanner = ByteScanner.get();
+    final MemorySegment segment = MemorySegment.ofArray(bytes);
+    final int[] offsets = new int[chunks.size() + 1];
+    int codePoints = 0;
+    int start = 0;
+    for (int i = 0; i <= chunks.size(); i++) {
+      final int end = i < chunks.size() ? chunks.get(i).startOffset() : bytes.length;
+      codePoints += (int) scanner.countCodePoints(segment, start, end);
+      offsets[i] = codePoints;
+      start = end;
+    }
+    return offsets;
+  }
+
+  private Journal parseChunk(
+      byte[] bytes,
+      JournalChunker.Chunk chunk,
+      int sourceOffset,
+      String sourceName,
+      MetricsRecorder recorder) {
+    final String text =
+        new String(
+            bytes,
+            chunk.startOffset(),
+            chunk.endOffset() - chunk.startOffset(),
+            StandardCharsets.UTF_8);
+    return parseCharStream(
+        CharStreams.fromString(text, sourceName),
+        sourceName,
+        chunk.lineOffset(),
+        sourceOffset,
+        recorder);
   }
 
-  public static AtomicLong ns = new AtomicLong(0);
-  public static AtomicLong c = new AtomicLong(0);
+  /**
+   * Parses a journal one declaration at a time. Only the tokens and the parse tree of the
+   * declaration that is being parsed are kept, so memory use depends on the size of the largest
+   * declaration rather than on the size of the journal. The returned stream must be closed to close
+   * the file. {@link ParseMetrics} are reported once the end of the journal has been reached.
+   */
+  public Stream<JournalDeclaration<?, ?>> streamJournal(Path path) {
+    final DeclarationIterator declarations = iterateDeclarations(path);
+    return stream(declarations).onClose(declarations::close);
+  }
+
+  /**
+   * Like {@link #streamJournal(Path)}, parses a journal one declaration at a time. Closing the
+   * reader is left to the caller.
+   */
+  public Stream<JournalDeclaration<?, ?>> streamJournal(Reader reader) {
+    return stream(iterateDeclarations(reader, null, -1, null));
+  }
+
+  private static Stream<JournalDeclaration<?, ?>> stream(DeclarationIterator declarations) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            declarations, Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  private DeclarationIterator iterateDeclarations(Path path) {
+    final String sourceName = path.getFileName().toString();
+    if (options.inputMode() == BeancountParserOptions.InputMode.MEMORY_MAPPED) {
+      final Arena arena = Arena.ofShared();
+      try {
+        return new DeclarationIterator(
+            MappedUtf8CharStream.open(path, arena), sourceName, size(path), arena::close);
+      } catch (IOException e) {
+        arena.close();
+        throw new UncheckedIOException(e);
+      }
+    }
+    final Reader reader;
+    try {
+      reader =
+          new BufferedReader(
+              new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return iterateDeclarations(reader, sourceName, size(path), reader);
+  }
+
+  private DeclarationIterator iterateDeclarations(
+      Reader reader, String sourceName, long bytes, Closeable resource) {
+    final UnbufferedCharStream charStream = new UnbufferedCharStream(reader);
+    charStream.name = sourceName;
+    return new DeclarationIterator(charStream, sourceName, bytes, resource);
+  }
+
+  /**
+   * Parses and converts one declaration at a time, see {@link #streamJournal(Path)}. Closing it
+   * closes the resource the characters are read from, if any.
+   */
+  private final class DeclarationIterator
+      implements Iterator<JournalDeclaration<?, ?>>, AutoCloseable {
+
+    private final String sourceName;
+    private final long bytes;
+    private final Closeable resource;
+    private final SyntaxErrorListener errorListener;
+    private final MetricsRecorder recorder;
+    private final TimingTokenSource timingLexer;
+    private final UnbufferedTokenStream<Token> tokens;
+    private final BeancountAntlrParser antlrParser;
+    private final BeancountAntlrToLanguage toLanguage;
+
+    private JournalDeclaration<?, ?> next;
+    private boolean reported = false;
+
+    private DeclarationIterator(
+        CharStream charStream, String sourceName, long bytes, Closeable resource) {
+      this.sourceName = sourceName;
+      this.bytes = bytes;
+      this.resource = resource;
+      this.errorListener = createErrorListener(charStream, sourceName, 0);
+
+      final TokenSource lexer = createLexer(charStream, errorListener);
+      if (charStream instanceof UnbufferedCharStream) {
+        // The characters of a token are gone by the time its text is needed
+        lexer.setTokenFactory(new CommonTokenFactory(true));
+      }
+      this.recorder = newMetricsRecorder();
+      this.timingLexer = recorder != null ? new TimingTokenSource(lexer) : null;
+      this.tokens = new UnbufferedTokenStream<>(timingLexer != null ? timingLexer : lexer);
+
+      this.antlrParser = new BeancountAntlrParser(tokens);
+      antlrParser.removeErrorListeners();
+      antlrParser.addErrorListener(errorListener);
+      antlrParser.setErrorHandler(new DeclarationErrorStrategy());
+
+      this.toLanguage = newToLanguage(sourceName);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && tokens.LA(1) != Token.EOF) {
+        // Pushtag and poptag pragmas are not converted (yet), which yields null, and
+        // neither are declarations with syntax errors
+        next = recorder != null ? nextTimed() : nextDeclaration();
+      }
+      if (next == null && recorder != null && !reported) {
+        reported = true;
+        recorder.add(timingLexer, 0, 0);
+        reportMetrics(recorder, sourceName, bytes);
+      }
+      if (next == null) {
+        errorListener.throwCollectedErrors();
+      }
+      return next != null;
+    }
+
+    private JournalDeclaration<?, ?> nextDeclaration() {
+      final int errors = errorListener.errorCount();
+      final BeancountAntlrParser.DeclarationContext declarationContext =
+          parseDeclarationContext(antlrParser, tokens, errorListener);
+      return errorListener.errorCount() == errors
+          ? toLanguage.createDeclaration(declarationContext)
+          : null;
+    }
 
-  private <T> Journal parseJournalImpl(T t, String sourceName, CharStreamFunction<T> func) {
+    private JournalDeclaration<?, ?> nextTimed() {
+      final int errors = errorListener.errorCount();
+      final long parseStart = System.nanoTime();
+      final long lexingBefore = timingLexer.nanos();
+      final BeancountAntlrParser.DeclarationContext declarationContext =
+          parseDeclarationContext(antlrParser, tokens, errorListener);
+      final long conversionStart = System.nanoTime();
+      final JournalDeclaration<?, ?> declaration =
+          errorListener.errorCount() == errors
+              ? toLanguage.createDeclaration(declarationContext)
+              : null;
+      recorder.addTimes(
+          conversionStart - parseStart - (timingLexer.nanos() - lexingBefore),
+          System.nanoTime() - conversionStart);
+      return declaration;
+    }
+
+    @Override
+    public JournalDeclaration<?, ?> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final JournalDeclaration<?, ?> declaration = next;
+      next = null;
+      return declaration;
+    }
+
+    /** Converts all remaining declarations, and returns them as a journal. */
+    private Journal toJournal() {
+      final Token start = tokens.LT(1);
+      final List<JournalDeclaration<?, ?>> declarations = new ArrayList<>();
+      forEachRemaining(declarations::add);
+      return toLanguage.createJournal(start, tokens.LT(1), declarations);
+    }
+
+    @Override
+    public void close() {
+      if (resource == null) {
+        return;
+      }
+      try {
+        resource.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Parses a part of a file, whose first line is line {@code lineOffset + 1} of the file and whose
+   * first code point is at {@code sourceOffset} in the file.
+   */
+  Journal parseFragment(String text, String sourceName, int lineOffset, int sourceOffset) {
+    final MetricsRecorder recorder = newMetricsRecorder();
+    final Journal journal =
+        parseCharStream(
+            CharStreams.fromString(text, sourceName),
+            sourceName,
+            lineOffset,
+            sourceOffset,
+            recorder);
+    if (recorder != null) {
+      reportMetrics(recorder, sourceName, -1);
+    }
+    return journal;
+  }
+
+  private <T> Journal parseJournalImpl(
+      T t, String sourceName, CharStreamFunction<T> func, MetricsRecorder recorder) {
     final CharStream charStream;
     try {
       charStream = func.apply(t);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
+    return parseCharStream(charStream, sourceName, 0, 0, recorder);
+  }
+
+  Journal parseCharStream(
+      CharStream charStream,
+      String sourceName,
+      int lineOffset,
+      int sourceOffset,
+      MetricsRecorder recorder) {
+    final SyntaxErrorListener errorListener =
+        createErrorListener(charStream, sourceName, lineOffset);
+
+    final Pipeline pipeline = acquirePipeline();
+    try {
+      final TokenSource lexer = pipeline.lexer(charStream, errorListener);
+      final TimingTokenSource timingLexer = recorder != null ? new TimingTokenSource(lexer) : null;
+      final CommonTokenStream tokens = pipeline.tokens(timingLexer != null ? timingLexer : lexer);
+      final BeancountAntlrParser antlrParser = pipeline.parser(tokens, errorListener);
+      final BeancountAntlrToLanguage toLanguage =
+          pipeline.toLanguage(sourceName, lineOffset, sourceOffset);
+
+      final long parseStart = recorder != null ? System.nanoTime() : 0;
+      final long lexingBefore = timingLexer != null ? timingLexer.nanos() : 0;
+      final BeancountAntlrParser.JournalContext journalContext =
+          parseJournalContext(antlrParser, tokens, errorListener);
+      // The parse tree of a journal with syntax errors cannot be converted
+      errorListener.throwCollectedErrors();
+
+      //    String tokensDebug =
+      //            tokens.getTokens().stream()
+      //                    .mapToInt(Token::getType)
+      //                    .mapToObj(BeancountAntlrParser.VOCABULARY::getSymbolicName)
+      //                    .collect(Collectors.joining(" "));
+      //
+      //    System.out.println(tokensDebug);
+
+      if (recorder == null) {
+        return toLanguage.createJournal(journalContext);
+      }
+      final long conversionStart = System.nanoTime();
+      final Journal journal = toLanguage.createJournal(journalContext);
+      recorder.add(
+          timingLexer,
+          conversionStart - parseStart - (timingLexer.nanos() - lexingBefore),
+          System.nanoTime() - conversionStart);
+      return journal;
+    } finally {
+      releasePipeline(pipeline);
+    }
+  }
 
+  private Pipeline acquirePipeline() {
+    final Pipeline pipeline = pipelines.poll();
+    return pipeline != null ? pipeline : new Pipeline();
+  }
+
+  private void releasePipeline(Pipeline pipeline) {
+    pipeline.clear();
+    // Dropped if the pool is full
+    pipelines.offer(pipeline);
+  }
+
+  private SyntaxErrorListener createErrorListener(
+      CharStream charStream, String sourceName, int lineOffset) {
+    return new SyntaxErrorListener(
+        charStream,
+        sourceName,
+        lineOffset,
+        options.syntaxErrorHandling() == BeancountParserOptions.SyntaxErrorHandling.COLLECT_ALL);
+  }
+
+  private BeancountAntlrToLanguage newToLanguage(String sourceName) {
+    return new BeancountAntlrToLanguage(
+        null,
+        sourceName,
+        0,
+        0,
+        symbolTable,
+        options.profile() == BeancountParserOptions.Profile.LOSSLESS);
+  }
+
+  private MetricsRecorder newMetricsRecorder() {
+    return options.metricsListener() != null ? new MetricsRecorder() : null;
+  }
+
+  private void reportMetrics(MetricsRecorder recorder, String sourceName, long bytes) {
+    options.metricsListener().parsed(recorder.toMetrics(sourceName, bytes));
+  }
+
+  private long size(Path path) {
+    if (options.metricsListener() == null) {
+      return -1;
+    }
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private TokenSource createLexer(CharStream charStream, ANTLRErrorListener errorListener) {
+    if (options.lexerImplementation() == BeancountParserOptions.LexerImplementation.HAND_WRITTEN) {
+      final BeancountLexer lexer = new BeancountLexer(charStream);
+      lexer.removeErrorListeners();
+      lexer.addErrorListener(errorListener);
+      return lexer;
+    }
     final BeancountAntlrLexer lexer = new BeancountAntlrLexer(charStream);
     lexer.removeErrorListeners();
-    lexer.addErrorListener(
-        new BaseErrorListener() {
-          @Override
-          public void syntaxError(
-              Recognizer<?, ?> recognizer,
-              Object offendingSymbol,
-              int line,
-              int charPositionInLine,
-              String message,
-              RecognitionException e) {
-            SourceLocation sourceLocation =
-                AntlrHelper.createSourceLocation(line, charPositionInLine, sourceName);
-            throw new InvalidSyntaxException(
-                sourceLocation,
-                message,
-                AntlrHelper.createPreview(
-                    charStream, line, charPositionInLine, charPositionInLine + 1));
-          }
-        });
-
-    final CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-    final BeancountAntlrParser antlrParser = new BeancountAntlrParser(tokens);
-    antlrParser.removeErrorListeners();
-    antlrParser.addErrorListener(
-        new BaseErrorListener() {
-          @Override
-          public void syntaxError(
-              Recognizer<?, ?> recognizer,
-              Object offendingSymbol,
-              int line,
-              int charPositionInLine,
-              String message,
-              RecognitionException e) {
-            SourceLocation sourceLocation =
-                AntlrHelper.createSourceLocation(line, charPositionInLine, sourceName);
-            throw new InvalidSyntaxException(
-                sourceLocation,
-                message,
-                AntlrHelper.createPreview(
-                    charStream, line, charPositionInLine, charPositionInLine + 1));
-          }
-        });
-
-    final BeancountAntlrToLanguage toLanguage = new BeancountAntlrToLanguage(tokens, sourceName);
-
-    long a = System.nanoTime();
-    final BeancountAntlrParser.JournalContext journalContext = antlrParser.journal();
-    ns.addAndGet(System.nanoTime() - a);
-    c.incrementAndGet();
-
-    //    String tokensDebug =
-    //            tokens.getTokens().stream()
-    //                    .mapToInt(Token::getType)
-    //                    .mapToObj(BeancountAntlrParser.VOCABULARY::getSymbolicName)
-    //                    .collect(Collectors.joining(" "));
-    //
-    //    System.out.println(tokensDebug);
-
-    @SuppressWarnings("UnnecessaryLocalVariable")
-    final Journal journal = toLanguage.createJournal(journalContext);
-    //    ns.addAndGet(System.nanoTime() - a);
-    //    c.incrementAndGet();
-    return journal;
+    lexer.addErrorListener(errorListener);
+    return lexer;
+  }
+
+  private BeancountAntlrParser.JournalContext parseJournalContext(
+      BeancountAntlrParser antlrParser,
+      CommonTokenStream tokens,
+      ANTLRErrorListener errorListener) {
+    if (options.predictionStrategy() == BeancountParserOptions.PredictionStrategy.SLL_THEN_LL) {
+      antlrParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+      antlrParser.setErrorHandler(new BailErrorStrategy());
+      antlrParser.removeErrorListeners();
+      try {
+        return antlrParser.journal();
+      } catch (ParseCancellationException e) {
+        // SLL is weaker than LL, a failure here may be a false positive. Reparse the (already
+        // lexed) tokens using full LL prediction to either succeed or report the actual error.
+        tokens.seek(0);
+        antlrParser.reset();
+        antlrParser.addErrorListener(errorListener);
+        antlrParser.setErrorHandler(new DefaultErrorStrategy());
+        antlrParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      }
+    }
+    return antlrParser.journal();
+  }
+
+  private BeancountAntlrParser.DeclarationContext parseDeclarationContext(
+      BeancountAntlrParser antlrParser,
+      UnbufferedTokenStream<Token> tokens,
+      ANTLRErrorListener errorListener) {
+    // Keeps the tokens of the declaration buffered, to parse it again and to report errors
+    final int marker = tokens.mark();
+    try {
+      if (options.predictionStrategy() == BeancountParserOptions.PredictionStrategy.SLL_THEN_LL) {
+        final int start = tokens.index();
+        antlrParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        antlrParser.setErrorHandler(new BailErrorStrategy());
+        antlrParser.removeErrorListeners();
+        try {
+          return antlrParser.declaration();
+        } catch (ParseCancellationException e) {
+          tokens.seek(start);
+          antlrParser.addErrorListener(errorListener);
+          antlrParser.setErrorHandler(new DeclarationErrorStrategy());
+          antlrParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        }
+      }
+      return antlrParser.declaration();
+    } finally {
+      tokens.release(marker);
+    }
+  }
+
+  /**
+   * The lexer, token stream, parser and converter that parse a journal into a {@link Journal}.
+   * Creating them for every file adds up when a journal includes hundreds of small files, so they
+   * are pooled per parser, up to one per core, and pointed at the next input instead.
+   */
+  private final class Pipeline {
+    private TokenSource lexer;
+    private CommonTokenStream tokens;
+    private BeancountAntlrParser antlrParser;
+    private final BeancountAntlrToLanguage toLanguage = newToLanguage(null);
+
+    private TokenSource lexer(CharStream charStream, ANTLRErrorListener errorListener) {
+      if (lexer == null) {
+        lexer = createLexer(charStream, errorListener);
+      } else if (lexer instanceof BeancountLexer handWrittenLexer) {
+        handWrittenLexer.setInputStream(charStream);
+        handWrittenLexer.removeErrorListeners();
+        handWrittenLexer.addErrorListener(errorListener);
+      } else {
+        final BeancountAntlrLexer antlrLexer = (BeancountAntlrLexer) lexer;
+        antlrLexer.setInputStream(charStream);
+        antlrLexer.removeErrorListeners();
+        antlrLexer.addErrorListener(errorListener);
+      }
+      return lexer;
+    }
+
+    private CommonTokenStream tokens(TokenSource tokenSource) {
+      if (tokens == null) {
+        tokens = new CommonTokenStream(tokenSource);
+      } else {
+        tokens.setTokenSource(tokenSource);
+      }
+      return tokens;
+    }
+
+    private BeancountAntlrParser parser(
+        CommonTokenStream tokens, ANTLRErrorListener errorListener) {
+      if (antlrParser == null) {
+        antlrParser = new BeancountAntlrParser(tokens);
+      } else {
+        antlrParser.setInputStream(tokens);
+        antlrParser.setErrorHandler(new DefaultErrorStrategy());
+        antlrParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      }
+      antlrParser.removeErrorListeners();
+      antlrParser.addErrorListener(errorListener);
+      return antlrParser;
+    }
+
+    private BeancountAntlrToLanguage toLanguage(
+        String sourceName, int lineOffset, int sourceOffset) {
+      toLanguage.reset(sourceName, lineOffset, sourceOffset);
+      return toLanguage;
+    }
+
+    /**
+     * Drops the references to the input, to the tokens lexed from it and the tree parsed from it,
+     * and to the error listener, which holds on to the input to preview syntax errors.
+     */
+    private void clear() {
+      if (lexer instanceof BeancountLexer handWrittenLexer) {
+        handWrittenLexer.setInputStream(null);
+        handWrittenLexer.removeErrorListeners();
+      } else if (lexer != null) {
+        final BeancountAntlrLexer antlrLexer = (BeancountAntlrLexer) lexer;
+        antlrLexer.setInputStream(null);
+        antlrLexer.removeErrorListeners();
+      }
+      if (tokens != null) {
+        tokens.setTokenSource(lexer);
+      }
+      if (antlrParser != null) {
+        // Resets the context of the parser, the error strategy keeps a context of its own
+        antlrParser.setInputStream(tokens);
+        antlrParser.setErrorHandler(new DefaultErrorStrategy());
+        antlrParser.removeErrorListeners();
+        // The simulator keeps the context of its last prediction, and with it the parse tree. A
+        // new one shares the DFA caches, which are static.
+        final ParserATNSimulator interpreter = antlrParser.getInterpreter();
+        antlrParser.setInterpreter(
+            new ParserATNSimulator(
+                antlrParser,
+                antlrParser.getATN(),
+                interpreter.decisionToDFA,
+                interpreter.getSharedContextCache()));
+      }
+      toLanguage.reset(null, 0, 0);
+    }
+  }
+
+  /** Sums the metrics of a file, which may be parsed as several chunks in parallel. */
+  private static final class MetricsRecorder {
+    private int tokens = 0;
+    private long lexingNanos = 0;
+    private long parsingNanos = 0;
+    private long conversionNanos = 0;
+
+    synchronized void add(TimingTokenSource lexer, long parsingNanos, long conversionNanos) {
+      this.tokens += lexer.tokens();
+      this.lexingNanos += lexer.nanos();
+      addTimes(parsingNanos, conversionNanos);
+    }
+
+    synchronized void addTimes(long parsingNanos, long conversionNanos) {
+      this.parsingNanos += parsingNanos;
+      this.conversionNanos += conversionNanos;
+    }
+
+    synchronized ParseMetrics toMetrics(String sourceName, long bytes) {
+      return new ParseMetrics(
+          sourceName, bytes, tokens, lexingNanos, parsingNanos, conversionNanos);
+    }
+  }
+
+  private static final class SyntaxErrorListener extends BaseErrorListener {
+
+    private final CharStream charStream;
+    private final String sourceName;
+    private final int lineOffset;
+    private final List<InvalidSyntaxException> errors;
+    private LineIndex lineIndex;
+
+    private SyntaxErrorListener(
+        CharStream charStream, String sourceName, int lineOffset, boolean collectAll) {
+      this.charStream = charStream;
+      this.sourceName = sourceName;
+      this.lineOffset = lineOffset;
+      this.errors = collectAll ? new ArrayList<>() : null;
+    }
+
+    @Override
+    public void syntaxError(
+        Recognizer<?, ?> recognizer,
+        Object offendingSymbol,
+        int line,
+        int charPositionInLine,
+        String message,
+        RecognitionException e) {
+      SourceLocation sourceLocation =
+          AntlrHelper.createSourceLocation(line + lineOffset, charPositionInLine, sourceName);
+      final InvalidSyntaxException exception =
+          new InvalidSyntaxException(sourceLocation, message, preview(line, charPositionInLine));
+      if (errors == null) {
+        throw exception;
+      }
+      errors.add(exception);
+    }
+
+    private String preview(int line, int charPositionInLine) {
+      // An unbuffered stream no longer has the surrounding lines
+      if (charStream instanceof UnbufferedCharStream) {
+        return "";
+      }
+      if (lineIndex == null) {
+        lineIndex = new LineIndex(charStream);
+      }
+      return AntlrHelper.createPreview(
+          lineIndex, line, charPositionInLine, charPositionInLine + 1, lineOffset);
+    }
+
+    private int errorCount() {
+      return errors == null ? 0 : errors.size();
+    }
+
+    private void throwCollectedErrors() {
+      if (errors != null && !errors.isEmpty()) {
+        // Lexer errors are reported while parsing, possibly ahead of the parser
+        errors.sort(
+            Comparator.comparingInt(
+                    (InvalidSyntaxException error) -> error.getSourceLocation().line())
+                .thenComparingInt(error -> error.getSourceLocation().column()));
+        throw new InvalidSyntaxErrorsException(errors);
+      }
+    }
   }
 }
@@ -1,3 +1,305 @@
 package nl.bluetainer.jbeancount.parser;
 
-public final class BeancountParserOptions {}
+import java.util.Objects;
+import java.util.function.Consumer;
+import nl.bluetainer.jbeancount.language.SymbolTable;
+
+public final class BeancountParserOptions {
+
+  private static final BeancountParserOptions DEFAULT_OPTIONS =
+      newBeancountParserOptions().build();
+
+  private final PredictionStrategy predictionStrategy;
+  private final LexerImplementation lexerImplementation;
+  private final InputMode inputMode;
+  private final SyntaxErrorHandling syntaxErrorHandling;
+  private final TreeRetention treeRetention;
+  private final Profile profile;
+  private final DeclarationFilter declarationFilter;
+  private final ParseMetricsListener metricsListener;
+  private final SymbolTable symbolTable;
+
+  private BeancountParserOptions(
+      PredictionStrategy predictionStrategy,
+      LexerImplementation lexerImplementation,
+      InputMode inputMode,
+      SyntaxErrorHandling syntaxErrorHandling,
+      TreeRetention treeRetention,
+      Profile profile,
+      DeclarationFilter declarationFilter,
+      ParseMetricsListener metricsListener,
+      SymbolTable symbolTable) {
+    this.predictionStrategy = Objects.requireNonNull(predictionStrategy, "predictionStrategy");
+    this.lexerImplementation = Objects.requireNonNull(lexerImplementation, "lexerImplementation");
+    this.inputMode = Objects.requireNonNull(inputMode, "inputMode");
+    this.syntaxErrorHandling = Objects.requireNonNull(syntaxErrorHandling, "syntaxErrorHandling");
+    this.treeRetention = Objects.requireNonNull(treeRetention, "treeRetention");
+    this.profile = Objects.requireNonNull(profile, "profile");
+    this.declarationFilter = declarationFilter;
+    this.metricsListener = metricsListener;
+    this.symbolTable = symbolTable;
+  }
+
+  public PredictionStrategy predictionStrategy() {
+    return predictionStrategy;
+  }
+
+  public LexerImplementation lexerImplementation() {
+    return lexerImplementation;
+  }
+
+  public InputMode inputMode() {
+    return inputMode;
+  }
+
+  public SyntaxErrorHandling syntaxErrorHandling() {
+    return syntaxErrorHandling;
+  }
+
+  public TreeRetention treeRetention() {
+    return treeRetention;
+  }
+
+  public Profile profile() {
+    return profile;
+  }
+
+  /** The filter that selects the declarations to parse, or {@code null} to parse all of them. */
+  public DeclarationFilter declarationFilter() {
+    return declarationFilter;
+  }
+
+  /** The listener that receives {@link ParseMetrics}, or {@code null} to not measure parses. */
+  public ParseMetricsListener metricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * The symbol table shared by every parser using these options, or {@code null} to give each
+   * {@link BeancountParser} its own.
+   */
+  public SymbolTable symbolTable() {
+    return symbolTable;
+  }
+
+  public static BeancountParserOptions defaultOptions() {
+    return DEFAULT_OPTIONS;
+  }
+
+  public static Builder newBeancountParserOptions() {
+    return new Builder();
+  }
+
+  public BeancountParserOptions transform(Consumer<Builder> builderConsumer) {
+    final Builder b = new Builder(this);
+    builderConsumer.accept(b);
+    return b.build();
+  }
+
+  public enum PredictionStrategy {
+    /** Always use ANTLR's full-context (LL) adaptive prediction. */
+    LL,
+    /**
+     * First parse using the faster SLL prediction mode, bailing out on the first syntax error. Only
+     * when that fails is the input parsed again using full LL prediction. The resulting journal
+     * (and any syntax error reported) is identical to {@link #LL}.
+     */
+    SLL_THEN_LL
+  }
+
+  public enum LexerImplementation {
+    /** The lexer generated by ANTLR from the grammar. */
+    ANTLR,
+    /**
+     * The hand-written {@link BeancountLexer}, which produces the same tokens as {@link #ANTLR}
+     * without simulating the lexer ATN.
+     */
+    HAND_WRITTEN
+  }
+
+  /** How {@link BeancountParser#parseJournal(java.nio.file.Path)} reads a file. */
+  public enum InputMode {
+    /** Read and decode the entire file into memory before lexing it. */
+    DECODED,
+    /**
+     * Memory-map the file and decode its UTF-8 contents while lexing, so the file contents do not
+     * have to fit in the heap.
+     */
+    MEMORY_MAPPED
+  }
+
+  public enum SyntaxErrorHandling {
+    /** Throw an {@link InvalidSyntaxException} for the first syntax error. */
+    FAIL_FAST,
+    /**
+     * Recover from syntax errors and keep parsing, then throw an {@link
+     * InvalidSyntaxErrorsException} with every syntax error in the journal.
+     */
+    COLLECT_ALL
+  }
+
+  /** How much of the ANTLR parse tree {@link BeancountParser#parseJournal} keeps while parsing. */
+  public enum TreeRetention {
+    /**
+     * Parse the entire journal, keeping every token, and only then convert the parse tree. Peak
+     * memory use is that of the tokens, the parse tree and the journal combined.
+     */
+    FULL_TREE,
+    /**
+     * Convert every declaration as soon as it has been parsed, after which its parse tree and
+     * tokens are discarded, like {@link BeancountParser#streamJournal(java.nio.file.Path)} does.
+     * Peak memory use is roughly that of the resulting journal. As with streaming, pushtag and
+     * poptag pragmas are left out of the journal rather than included as {@code null}.
+     */
+    PER_DECLARATION
+  }
+
+  /** What parsed journals contain besides the directives and pragmas. */
+  public enum Profile {
+    /**
+     * Everything needed to print the journal again: comments, blank lines and the source location
+     * of every node.
+     */
+    LOSSLESS,
+    /**
+     * Only what the journal means. Comment and blank line declarations, the comments of
+     * directives, postings and metadata, and comment-only posting lines are not created, and every
+     * node has {@link nl.bluetainer.jbeancount.language.SourceLocation#EMPTY} as its location.
+     * Syntax errors are still reported with their location.
+     */
+    ANALYTICS
+  }
+
+  public static final class Builder {
+    private PredictionStrategy predictionStrategy = PredictionStrategy.LL;
+    private LexerImplementation lexerImplementation = LexerImplementation.ANTLR;
+    private InputMode inputMode = InputMode.DECODED;
+    private SyntaxErrorHandling syntaxErrorHandling = SyntaxErrorHandling.FAIL_FAST;
+    private TreeRetention treeRetention = TreeRetention.FULL_TREE;
+    private Profile profile = Profile.LOSSLESS;
+    private DeclarationFilter declarationFilter = null;
+    private ParseMetricsListener metricsListener = null;
+    private SymbolTable symbolTable = null;
+
+    private Builder() {}
+
+    private Builder(BeancountParserOptions options) {
+      this.predictionStrategy = options.predictionStrategy;
+      this.lexerImplementation = options.lexerImplementation;
+      this.inputMode = options.inputMode;
+      this.syntaxErrorHandling = options.syntaxErrorHandling;
+      this.treeRetention = options.treeRetention;
+      this.profile = options.profile;
+      this.declarationFilter = options.declarationFilter;
+      this.metricsListener = options.metricsListener;
+      this.symbolTable = options.symbolTable;
+    }
+
+    public BeancountParserOptions build() {
+      return new BeancountParserOptions(
+          predictionStrategy,
+          lexerImplementation,
+          inputMode,
+          syntaxErrorHandling,
+          treeRetention,
+          profile,
+          declarationFilter,
+          metricsListener,
+          symbolTable);
+    }
+
+    public PredictionStrategy predictionStrategy() {
+      return predictionStrategy;
+    }
+
+    public Builder predictionStrategy(PredictionStrategy predictionStrategy) {
+      this.predictionStrategy = predictionStrategy;
+      return this;
+    }
+
+    public LexerImplementation lexerImplementation() {
+      return lexerImplementation;
+    }
+
+    public Builder lexerImplementation(LexerImplementation lexerImplementation) {
+      this.lexerImplementation = lexerImplementation;
+      return this;
+    }
+
+    public InputMode inputMode() {
+      return inputMode;
+    }
+
+    public Builder inputMode(InputMode inputMode) {
+      this.inputMode = inputMode;
+      return this;
+    }
+
+    public SyntaxErrorHandling syntaxErrorHandling() {
+      return syntaxErrorHandling;
+    }
+
+    public Builder syntaxErrorHandling(SyntaxErrorHandling syntaxErrorHandling) {
+      this.syntaxErrorHandling = syntaxErrorHandling;
+      return this;
+    }
+
+    public TreeRetention treeRetention() {
+      return treeRetention;
+    }
+
+    public Builder treeRetention(TreeRetention treeRetention) {
+      this.treeRetention = treeRetention;
+      return this;
+    }
+
+    public Profile profile() {
+      return profile;
+    }
+
+    public Builder profile(Profile profile) {
+      this.profile = profile;
+      return this;
+    }
+
+    public DeclarationFilter declarationFilter() {
+      return declarationFilter;
+    }
+
+    /**
+     * Only parses the declarations that match the given filter, and skips the others before they
+     * are lexed. A filtered parse reads the entire file into memory, regardless of the {@link
+     * InputMode} and {@link TreeRetention}.
+     */
+    public Builder declarationFilter(DeclarationFilter declarationFilter) {
+      this.declarationFilter = declarationFilter;
+      return this;
+    }
+
+    public ParseMetricsListener metricsListener() {
+      return metricsListener;
+    }
+
+    /**
+     * Measures every parse and reports it to the given listener. Nothing is measured when this is
+     * {@code null}, which is the default.
+     */
+    public Builder metricsListener(ParseMetricsListener metricsListener) {
+      this.metricsListener = metricsListener;
+      return this;
+    }
+
+    public SymbolTable symbolTable() {
+      return symbolTable;
+    }
+
+    /**
+     * Interns the accounts, commodities, tags, links and metadata keys of every parse in the given
+     * table, for example to share them between all journals of a {@code Beancount} instance.
+     */
+    public Builder symbolTable(SymbolTable symbolTable) {
+      this.symbolTable = symbolTable;
+      return this;
+    }
+  }
+}
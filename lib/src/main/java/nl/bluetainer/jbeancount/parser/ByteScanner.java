@@ -0,0 +1,147 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Finds line breaks, string and comment delimiters, and code points in the raw UTF-8 bytes of a
+ * journal, which is what chunking and indexing a file spend most of their time on.
+ *
+ * <p>When the {@code jdk.incubator.vector} module is available (run with {@code --add-modules
+ * jdk.incubator.vector}, as the CLI launcher does) the bytes are compared a vector at a time,
+ * otherwise one at a time. The choice is made when this class is initialized, which a native image
+ * does when it runs, and as the image does not contain the module it scans one byte at a time.
+ */
+abstract class ByteScanner {
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+  private static final String VECTOR_SCANNER = "nl.bluetainer.jbeancount.parser.VectorByteScanner";
+  private static final ByteScanner INSTANCE = create();
+
+  ByteScanner() {}
+
+  static ByteScanner get() {
+    return INSTANCE;
+  }
+
+  static ByteScanner scalar() {
+    return new Scalar();
+  }
+
+  private static ByteScanner create() {
+    if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        return (ByteScanner) Class.forName(VECTOR_SCANNER).getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // Not packaged, or the module is there but not readable by (or not supported for) this code
+      }
+    }
+    return scalar();
+  }
+
+  /**
+   * Returns the offset of the first byte in {@code [from, to)} that is {@code a}, {@code b} or
+   * {@code c}, or {@code to} if there is none.
+   */
+  abstract long indexOfAny(MemorySegment segment, long from, long to, byte a, byte b, byte c);
+
+  /** Returns the number of UTF-8 code points that start in {@code [from, to)}. */
+  abstract long countCodePoints(MemorySegment segment, long from, long to);
+
+  final long indexOf(MemorySegment segment, long from, long to, byte b) {
+    return indexOfAny(segment, from, to, b, b, b);
+  }
+
+  /**
+   * Calls the listener at the start of every line in the segment that follows a line break outside
+   * of a (multiline) string, and returns whether the segment ends inside a string. These are the
+   * only places a top-level declaration can start. The segment starts at the start of a line, which
+   * is inside a string if {@code startsInString}.
+   */
+  final boolean scanLineStarts(
+      MemorySegment segment, boolean startsInString, LineStartListener listener) {
+    final long end = segment.byteSize();
+    int line = 1;
+    boolean inString = startsInString;
+    long i = 0;
+    while (i < end) {
+      if (inString) {
+        i = indexOfAny(segment, i, end, (byte) '"', (byte) '\\', (byte) '\n');
+        if (i == end) {
+          break;
+        }
+        final byte b = segment.get(ValueLayout.JAVA_BYTE, i);
+        if (b == '\\' && i + 1 < end && segment.get(ValueLayout.JAVA_BYTE, i + 1) != '\n') {
+          // An escaped quote does not end the string, an escaped line break still counts
+          i++;
+        } else if (b == '"') {
+          inString = false;
+        } else if (b == '\n') {
+          line++;
+        }
+        i++;
+        continue;
+      }
+      i = indexOfAny(segment, i, end, (byte) '"', (byte) ';', (byte) '\n');
+      if (i == end) {
+        break;
+      }
+      final byte b = segment.get(ValueLayout.JAVA_BYTE, i);
+      if (b == '"') {
+        inString = true;
+        i++;
+      } else if (b == ';') {
+        // A comment runs up to the end of the line, quotes in it do not start a string
+        i = indexOf(segment, i, end, (byte) '\n');
+      } else {
+        line++;
+        i++;
+        if (i < end) {
+          listener.lineStart(i, line);
+        }
+      }
+    }
+    return inString;
+  }
+
+  static long scalarIndexOfAny(
+      MemorySegment segment, long from, long to, byte a, byte b, byte c) {
+    for (long i = from; i < to; i++) {
+      final byte value = segment.get(ValueLayout.JAVA_BYTE, i);
+      if (value == a || value == b || value == c) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  static long scalarCountCodePoints(MemorySegment segment, long from, long to) {
+    long count = 0;
+    for (long i = from; i < to; i++) {
+      // Every byte except UTF-8 continuation bytes starts a code point
+      if ((segment.get(ValueLayout.JAVA_BYTE, i) & 0xC0) != 0x80) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @FunctionalInterface
+  interface LineStartListener {
+    /** Called with the offset of the line and its 1-based number. */
+    void lineStart(long offset, int line);
+  }
+
+  private static final class Scalar extends ByteScanner {
+
+    @Override
+    long indexOfAny(MemorySegment segment, long from, long to, byte a, byte b, byte c) {
+      return scalarIndexOfAny(segment, from, to, a, b, c);
+    }
+
+    @Override
+    long countCodePoints(MemorySegment segment, long from, long to) {
+      return scalarCountCodePoints(segment, from, to);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package nl.bluetainer.jbeancount.parser;
+
+import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrParser;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+/**
+ * Error recovery for parsing one declaration at a time. When a declaration is the outermost rule,
+ * ANTLR's resynchronization set only contains {@code EOF}, so recovering from an error could
+ * consume the rest of the journal. This strategy never skips past the start of the next top-level
+ * declaration, which is the first token on a line that is not indented.
+ */
+final class DeclarationErrorStrategy extends DefaultErrorStrategy {
+
+  @Override
+  protected void consumeUntil(Parser recognizer, IntervalSet set) {
+    final int declarationStart = outermost(recognizer.getContext()).start.getTokenIndex();
+    int ttype = recognizer.getInputStream().LA(1);
+    while (ttype != Token.EOF && !set.contains(ttype)) {
+      final Token token = recognizer.getInputStream().LT(1);
+      if (token.getTokenIndex() > declarationStart && startsDeclaration(token)) {
+        return;
+      }
+      recognizer.consume();
+      ttype = recognizer.getInputStream().LA(1);
+    }
+  }
+
+  private static ParserRuleContext outermost(ParserRuleContext ctx) {
+    while (ctx.getParent() != null) {
+      ctx = ctx.getParent();
+    }
+    return ctx;
+  }
+
+  private static boolean startsDeclaration(Token token) {
+    return token.getCharPositionInLine() == 0
+        && token.getType() != BeancountAntlrParser.EOL
+        && token.getType() != BeancountAntlrParser.INDENT
+        && token.getType() != BeancountAntlrParser.DEDENT;
+  }
+}
@@ -0,0 +1,337 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import nl.bluetainer.jbeancount.language.Account;
+import nl.bluetainer.jbeancount.language.BalanceDirective;
+import nl.bluetainer.jbeancount.language.CloseDirective;
+import nl.bluetainer.jbeancount.language.CommodityDirective;
+import nl.bluetainer.jbeancount.language.CustomDirective;
+import nl.bluetainer.jbeancount.language.DirectiveNode;
+import nl.bluetainer.jbeancount.language.DocumentDirective;
+import nl.bluetainer.jbeancount.language.EventDirective;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.NoteDirective;
+import nl.bluetainer.jbeancount.language.OpenDirective;
+import nl.bluetainer.jbeancount.language.PadDirective;
+import nl.bluetainer.jbeancount.language.Posting;
+import nl.bluetainer.jbeancount.language.PragmaNode;
+import nl.bluetainer.jbeancount.language.PriceDirective;
+import nl.bluetainer.jbeancount.language.QueryDirective;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+
+/**
+ * Selects the directives a parse should produce, by type, by date and by account. Pragmas always
+ * match, so options are still read and includes are still resolved, while comments and blank lines
+ * never do.
+ *
+ * <p>With a filter, {@link BeancountParser#parseJournal} looks at the first line of every
+ * top-level declaration before lexing it, and skips the declarations that cannot match without
+ * creating tokens, parse trees or nodes for them. Skipped declarations are therefore not checked
+ * for syntax errors.
+ */
+public final class DeclarationFilter {
+
+  private static final Map<String, Class<? extends DirectiveNode<?, ?>>> KEYWORDS =
+      Map.ofEntries(
+          Map.entry("txn", TransactionDirective.class),
+          Map.entry("balance", BalanceDirective.class),
+          Map.entry("open", OpenDirective.class),
+          Map.entry("close", CloseDirective.class),
+          Map.entry("commodity", CommodityDirective.class),
+          Map.entry("pad", PadDirective.class),
+          Map.entry("event", EventDirective.class),
+          Map.entry("price", PriceDirective.class),
+          Map.entry("note", NoteDirective.class),
+          Map.entry("document", DocumentDirective.class),
+          Map.entry("query", QueryDirective.class),
+          Map.entry("custom", CustomDirective.class));
+
+  private static final Set<Class<? extends DirectiveNode<?, ?>>> WITH_ACCOUNTS =
+      Set.of(
+          TransactionDirective.class,
+          BalanceDirective.class,
+          OpenDirective.class,
+          CloseDirective.class,
+          PadDirective.class,
+          NoteDirective.class,
+          DocumentDirective.class);
+
+  private final Set<Class<? extends DirectiveNode<?, ?>>> directiveTypes;
+  private final LocalDate from;
+  private final LocalDate until;
+  private final String accountPrefix;
+  private final int fromKey;
+  private final int untilKey;
+  private final byte[] accountPrefixBytes;
+
+  private DeclarationFilter(
+      Set<Class<? extends DirectiveNode<?, ?>>> directiveTypes,
+      LocalDate from,
+      LocalDate until,
+      String accountPrefix) {
+    this.directiveTypes = Set.copyOf(Objects.requireNonNull(directiveTypes, "directiveTypes"));
+    this.from = from;
+    this.until = until;
+    this.accountPrefix = accountPrefix;
+    this.fromKey = from != null ? dateKey(from) : Integer.MIN_VALUE;
+    this.untilKey = until != null ? dateKey(until) : Integer.MAX_VALUE;
+    this.accountPrefixBytes =
+        accountPrefix != null ? accountPrefix.getBytes(StandardCharsets.UTF_8) : null;
+  }
+
+  /** The types of directive to keep, or an empty set to keep directives of any type. */
+  public Set<Class<? extends DirectiveNode<?, ?>>> directiveTypes() {
+    return directiveTypes;
+  }
+
+  /** The first date to keep directives of, or {@code null} to not limit the start. */
+  public LocalDate from() {
+    return from;
+  }
+
+  /** The date from which directives are no longer kept, or {@code null} to not limit the end. */
+  public LocalDate until() {
+    return until;
+  }
+
+  /**
+   * Directives are only kept when one of their accounts (for a transaction: of their postings)
+   * starts with this prefix, or {@code null} to keep directives regardless of their accounts.
+   * Directives without accounts, such as prices, never match a prefix.
+   */
+  public String accountPrefix() {
+    return accountPrefix;
+  }
+
+  public boolean test(JournalDeclaration<?, ?> declaration) {
+    if (declaration instanceof PragmaNode<?, ?>) {
+      return true;
+    }
+    if (!(declaration instanceof DirectiveNode<?, ?> directive)) {
+      return false;
+    }
+    if (!directiveTypes.isEmpty() && !directiveTypes.contains(directive.getClass())) {
+      return false;
+    }
+    if ((from != null && directive.date().isBefore(from))
+        || (until != null && !directive.date().isBefore(until))) {
+      return false;
+    }
+    return accountPrefix == null || hasAccountWithPrefix(directive);
+  }
+
+  private boolean hasAccountWithPrefix(DirectiveNode<?, ?> directive) {
+    if (directive instanceof TransactionDirective transaction) {
+      for (Posting posting : transaction.postings()) {
+        if (hasPrefix(posting.account())) {
+          return true;
+        }
+      }
+      return false;
+    } else if (directive instanceof PadDirective pad) {
+      return hasPrefix(pad.sourceAccount()) || hasPrefix(pad.targetAccount());
+    } else if (directive instanceof OpenDirective open) {
+      return hasPrefix(open.account());
+    } else if (directive instanceof CloseDirective close) {
+      return hasPrefix(close.account());
+    } else if (directive instanceof BalanceDirective balance) {
+      return hasPrefix(balance.account());
+    } else if (directive instanceof NoteDirective note) {
+      return hasPrefix(note.account());
+    } else if (directive instanceof DocumentDirective document) {
+      return hasPrefix(document.account());
+    }
+    return false;
+  }
+
+  private boolean hasPrefix(Account account) {
+    // The account of a comment-only posting line is null
+    return account != null && account.account().startsWith(accountPrefix);
+  }
+
+  /**
+   * Whether the declaration in {@code bytes[start, end)} may match, judging by the UTF-8 bytes of
+   * its first line only, and for an account prefix by whether the prefix occurs as the start of a
+   * word in the declaration. The declaration may be preceded by comments and blank lines. When this
+   * returns {@code true}, the parsed declaration still has to be {@link #test tested}.
+   */
+  boolean mightMatch(byte[] bytes, int start, int end) {
+    int lineStart = start;
+    while (lineStart < end && !JournalChunker.isDeclarationStart(bytes, lineStart)) {
+      lineStart = nextLine(bytes, lineStart, end);
+    }
+    if (lineStart >= end) {
+      // Only comments and blank lines
+      return false;
+    }
+    if (!isDigit(bytes[lineStart])) {
+      return true;
+    }
+    final int key = dateKey(bytes, lineStart, end);
+    if (key < 0) {
+      // Not a date, leave the error to the parser
+      return true;
+    }
+    if (key < fromKey || key >= untilKey) {
+      return false;
+    }
+
+    int i = lineStart + 10;
+    while (i < end && (bytes[i] == ' ' || bytes[i] == '\t')) {
+      i++;
+    }
+    final int keywordStart = i;
+    while (i < end && bytes[i] >= 'a' && bytes[i] <= 'z') {
+      i++;
+    }
+    // A transaction starts with a flag rather than with the txn keyword
+    final Class<? extends DirectiveNode<?, ?>> type =
+        i > keywordStart
+            ? KEYWORDS.get(
+                new String(bytes, keywordStart, i - keywordStart, StandardCharsets.US_ASCII))
+            : TransactionDirective.class;
+    if (type == null) {
+      return true;
+    }
+    if (!directiveTypes.isEmpty() && !directiveTypes.contains(type)) {
+      return false;
+    }
+    if (accountPrefixBytes == null) {
+      return true;
+    }
+    return WITH_ACCOUNTS.contains(type) && containsWord(bytes, lineStart, end, accountPrefixBytes);
+  }
+
+  private static int nextLine(byte[] bytes, int offset, int end) {
+    int i = offset;
+    while (i < end && bytes[i] != '\n') {
+      i++;
+    }
+    return i + 1;
+  }
+
+  private static boolean containsWord(byte[] bytes, int start, int end, byte[] word) {
+    for (int i = start + 1; i + word.length <= end; i++) {
+      if ((bytes[i - 1] == ' ' || bytes[i - 1] == '\t') && regionMatches(bytes, i, word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionMatches(byte[] bytes, int offset, byte[] word) {
+    for (int i = 0; i < word.length; i++) {
+      if (bytes[offset + i] != word[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int dateKey(LocalDate date) {
+    return (date.getYear() * 100 + date.getMonthValue()) * 100 + date.getDayOfMonth();
+  }
+
+  /**
+   * Packs a {@code yyyy-mm-dd} or {@code yyyy/mm/dd} date into an int that sorts like the date, or
+   * returns -1. A lenient date with a day past the end of its month sorts after the date it
+   * resolves to, but never past a date in a later month, so the key can be compared to the bounds.
+   */
+  private static int dateKey(byte[] bytes, int offset, int end) {
+    if (offset + 10 > end) {
+      return -1;
+    }
+    final byte separator = bytes[offset + 4];
+    if ((separator != '-' && separator != '/') || bytes[offset + 7] != separator) {
+      return -1;
+    }
+    int key = 0;
+    for (int i = offset; i < offset + 10; i++) {
+      if (i == offset + 4 || i == offset + 7) {
+        continue;
+      }
+      if (!isDigit(bytes[i])) {
+        return -1;
+      }
+      key = key * 10 + bytes[i] - '0';
+    }
+    return key;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  public static Builder newDeclarationFilter() {
+    return new Builder();
+  }
+
+  public DeclarationFilter transform(Consumer<Builder> builderConsumer) {
+    final Builder b = new Builder(this);
+    builderConsumer.accept(b);
+    return b.build();
+  }
+
+  public static final class Builder {
+    private Set<Class<? extends DirectiveNode<?, ?>>> directiveTypes = Set.of();
+    private LocalDate from = null;
+    private LocalDate until = null;
+    private String accountPrefix = null;
+
+    private Builder() {}
+
+    private Builder(DeclarationFilter filter) {
+      this.directiveTypes = filter.directiveTypes;
+      this.from = filter.from;
+      this.until = filter.until;
+      this.accountPrefix = filter.accountPrefix;
+    }
+
+    public DeclarationFilter build() {
+      return new DeclarationFilter(directiveTypes, from, until, accountPrefix);
+    }
+
+    public Set<Class<? extends DirectiveNode<?, ?>>> directiveTypes() {
+      return directiveTypes;
+    }
+
+    public Builder directiveTypes(Set<Class<? extends DirectiveNode<?, ?>>> directiveTypes) {
+      this.directiveTypes = directiveTypes;
+      return this;
+    }
+
+    public LocalDate from() {
+      return from;
+    }
+
+    /** Keeps directives dated on or after the given date. */
+    public Builder from(LocalDate from) {
+      this.from = from;
+      return this;
+    }
+
+    public LocalDate until() {
+      return until;
+    }
+
+    /** Keeps directives dated before the given date. */
+    public Builder until(LocalDate until) {
+      this.until = until;
+      return this;
+    }
+
+    public String accountPrefix() {
+      return accountPrefix;
+    }
+
+    public Builder accountPrefix(String accountPrefix) {
+      this.accountPrefix = accountPrefix;
+      return this;
+    }
+  }
+}
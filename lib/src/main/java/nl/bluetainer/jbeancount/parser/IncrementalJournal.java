@@ -0,0 +1,303 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.SourceLocationShifter;
+
+/**
+ * The text of a journal file and the journal parsed from it, which can be edited without parsing
+ * the entire file again. The text is kept per top-level declaration (together with the comments
+ * and blank lines that follow it), the same boundaries {@link
+ * BeancountParser#parseJournalParallel(java.nio.file.Path)} splits a file at. An edit only lexes
+ * and parses the declarations it touches, and the one before them. All other {@link
+ * JournalDeclaration} instances are reused; when text was inserted or removed above them, their
+ * source locations are moved lazily, as they are retrieved from {@link Journal#declarations()}, and
+ * the moved declarations are kept for the edits that follow.
+ *
+ * <p>Instances are immutable, {@link #edit(TextEdit)} returns a new one.
+ */
+public final class IncrementalJournal {
+
+  private final BeancountParser parser;
+  private final String sourceName;
+  private final SourceLocation journalLocation;
+  // A segment is replaced by one at its current location once its declarations are retrieved
+  private final Segment[] segments;
+  // The char offset, code point offset, first line and index of the first declaration of every
+  // segment
+  private final int[] segmentOffsets;
+  private final int[] segmentSourceOffsets;
+  private final int[] segmentLines;
+  private final int[] declarationIndexes;
+  private final Journal journal;
+
+  /**
+   * A top-level declaration and the text it was parsed from, with the declarations located at
+   * {@code parsedFirstLine} and {@code parsedSourceOffset}.
+   */
+  private record Segment(
+      String text,
+      int lineCount,
+      int codePointCount,
+      int parsedFirstLine,
+      int parsedSourceOffset,
+      List<JournalDeclaration<?, ?>> declarations) {
+
+    Segment movedTo(int firstLine, int sourceOffset) {
+      final int lines = firstLine - parsedFirstLine;
+      final int offset = sourceOffset - parsedSourceOffset;
+      final List<JournalDeclaration<?, ?>> moved = new ArrayList<>(declarations.size());
+      for (JournalDeclaration<?, ?> declaration : declarations) {
+        moved.add(
+            declaration != null ? SourceLocationShifter.shift(declaration, lines, offset) : null);
+      }
+      return new Segment(
+          text,
+          lineCount,
+          codePointCount,
+          firstLine,
+          sourceOffset,
+          Collections.unmodifiableList(moved));
+    }
+  }
+
+  private IncrementalJournal(
+      BeancountParser parser,
+      String sourceName,
+      SourceLocation journalLocation,
+      Segment[] segments) {
+    this.parser = parser;
+    this.sourceName = sourceName;
+    this.journalLocation = journalLocation;
+    this.segments = segments;
+    this.segmentOffsets = new int[segments.length + 1];
+    this.segmentSourceOffsets = new int[segments.length + 1];
+    this.segmentLines = new int[segments.length + 1];
+    this.declarationIndexes = new int[segments.length + 1];
+    segmentLines[0] = 1;
+    for (int i = 0; i < segments.length; i++) {
+      segmentOffsets[i + 1] = segmentOffsets[i] + segments[i].text().length();
+      segmentSourceOffsets[i + 1] = segmentSourceOffsets[i] + segments[i].codePointCount();
+      segmentLines[i + 1] = segmentLines[i] + segments[i].lineCount();
+      declarationIndexes[i + 1] = declarationIndexes[i] + segments[i].declarations().size();
+    }
+    this.journal =
+        Journal.newJournal()
+            .sourceLocation(journalLocation)
+            .declarations(new Declarations())
+            .build();
+  }
+
+  public static IncrementalJournal parse(BeancountParser parser, String text, String sourceName) {
+    Objects.requireNonNull(parser, "parser");
+    Objects.requireNonNull(text, "text");
+    if (parser.options().profile() != BeancountParserOptions.Profile.LOSSLESS) {
+      // The declarations are assigned to their segment by line
+      throw new IllegalArgumentException("an incremental journal needs a LOSSLESS parser");
+    }
+    final List<Segment> segments = new ArrayList<>();
+    final Journal journal = parseSegments(parser, sourceName, text, 1, 0, segments);
+    return new IncrementalJournal(
+        parser, sourceName, journal.sourceLocation(), segments.toArray(new Segment[0]));
+  }
+
+  public Journal journal() {
+    return journal;
+  }
+
+  public String text() {
+    final StringBuilder sb = new StringBuilder(length());
+    for (Segment segment : segments) {
+      sb.append(segment.text());
+    }
+    return sb.toString();
+  }
+
+  public int length() {
+    return segmentOffsets[segments.length];
+  }
+
+  /**
+   * Applies the edit and parses the affected declarations again.
+   *
+   * @throws InvalidSyntaxException when the edited declarations contain a syntax error, this
+   *     instance can still be edited further
+   */
+  public IncrementalJournal edit(TextEdit edit) {
+    Objects.checkFromIndexSize(edit.offset(), edit.removedLength(), length());
+    final int end = edit.offset() + edit.removedLength();
+    // An edit on the first line of a declaration can turn it into a continuation of the previous
+    final int first = Math.max(0, segmentAt(edit.offset()) - 1);
+    int last = segmentAt(Math.max(edit.offset(), end - 1));
+
+    final StringBuilder text = new StringBuilder();
+    for (int i = first; i <= last; i++) {
+      text.append(segments[i].text());
+    }
+    final int textOffset = segmentOffsets[first];
+    text.replace(edit.offset() - textOffset, end - textOffset, edit.insertedText());
+    // A removed line break or an unterminated string joins the text with what follows. Only the
+    // text that was appended since the last line break is scanned for strings again.
+    int scanned = 0;
+    boolean inString = false;
+    while (last + 1 < segments.length) {
+      if (!text.isEmpty() && text.charAt(text.length() - 1) == '\n') {
+        inString =
+            JournalChunker.endsInString(
+                text.substring(scanned).getBytes(StandardCharsets.UTF_8), inString);
+        scanned = text.length();
+        if (!inString) {
+          break;
+        }
+      }
+      text.append(segments[++last].text());
+    }
+
+    final List<Segment> parsed = new ArrayList<>();
+    final Journal parsedJournal =
+        parseSegments(
+            parser,
+            sourceName,
+            text.toString(),
+            segmentLines[first],
+            segmentSourceOffsets[first],
+            parsed);
+    final int kept = segments.length - (last - first + 1);
+    if (parsed.size() == 1 && parsed.get(0).text().isEmpty() && kept > 0) {
+      parsed.clear();
+    }
+
+    final Segment[] edited = new Segment[kept + parsed.size()];
+    System.arraycopy(segments, 0, edited, 0, first);
+    for (int i = 0; i < parsed.size(); i++) {
+      edited[first + i] = parsed.get(i);
+    }
+    System.arraycopy(
+        segments, last + 1, edited, first + parsed.size(), segments.length - last - 1);
+    return new IncrementalJournal(
+        parser,
+        sourceName,
+        first == 0 ? parsedJournal.sourceLocation() : journalLocation,
+        edited);
+  }
+
+  private int segmentAt(int offset) {
+    return floor(segmentOffsets, segments.length, offset);
+  }
+
+  /** Returns the last index below {@code count} with a value of at most {@code key}. */
+  private static int floor(int[] sortedValues, int count, int key) {
+    int low = 0;
+    int high = count - 1;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (sortedValues[mid] <= key) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  private static Journal parseSegments(
+      BeancountParser parser,
+      String sourceName,
+      String text,
+      int firstLine,
+      int firstSourceOffset,
+      List<Segment> segments) {
+    final Journal journal =
+        parser.parseFragment(text, sourceName, firstLine - 1, firstSourceOffset);
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    final List<JournalChunker.Chunk> chunks = JournalChunker.split(bytes, 1);
+    final List<JournalDeclaration<?, ?>> declarations = journal.declarations();
+    int d = 0;
+    int sourceOffset = firstSourceOffset;
+    for (int c = 0; c < chunks.size(); c++) {
+      final JournalChunker.Chunk chunk = chunks.get(c);
+      final int chunkLine = firstLine + chunk.lineOffset();
+      final int nextChunkLine =
+          c + 1 < chunks.size() ? firstLine + chunks.get(c + 1).lineOffset() : Integer.MAX_VALUE;
+      final boolean nextIsTagPragma =
+          c + 1 < chunks.size()
+              && JournalChunker.isTagPragmaStart(bytes, chunks.get(c + 1).startOffset());
+      final int from = d;
+      // Pushtag and poptag are not converted (yet), their null stays in the segment of their line
+      if (JournalChunker.isTagPragmaStart(bytes, chunk.startOffset())
+          && d < declarations.size()
+          && declarations.get(d) == null) {
+        d++;
+      }
+      while (d < declarations.size()) {
+        final JournalDeclaration<?, ?> declaration = declarations.get(d);
+        if (declaration == null
+            ? nextIsTagPragma
+            : declaration.sourceLocation().line() >= nextChunkLine) {
+          break;
+        }
+        d++;
+      }
+      final String chunkText =
+          new String(
+              bytes,
+              chunk.startOffset(),
+              chunk.endOffset() - chunk.startOffset(),
+              StandardCharsets.UTF_8);
+      final int codePointCount = chunkText.codePointCount(0, chunkText.length());
+      segments.add(
+          new Segment(
+              chunkText,
+              lineCount(chunkText),
+              codePointCount,
+              chunkLine,
+              sourceOffset,
+              // Pushtag and poptag are null declarations, so the list must allow nulls
+              Collections.unmodifiableList(new ArrayList<>(declarations.subList(from, d)))));
+      sourceOffset += codePointCount;
+    }
+    return journal;
+  }
+
+  private static int lineCount(String text) {
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** The declarations of all segments, moved to the current location of their segment on demand. */
+  private final class Declarations extends AbstractList<JournalDeclaration<?, ?>>
+      implements RandomAccess {
+
+    @Override
+    public JournalDeclaration<?, ?> get(int index) {
+      Objects.checkIndex(index, size());
+      final int s = floor(declarationIndexes, segments.length, index);
+      Segment segment = segments[s];
+      if (segment.parsedFirstLine() != segmentLines[s]
+          || segment.parsedSourceOffset() != segmentSourceOffsets[s]) {
+        // Segments are immutable, so a thread that does not see this one moves it once more
+        segment = segment.movedTo(segmentLines[s], segmentSourceOffsets[s]);
+        segments[s] = segment;
+      }
+      return segment.declarations().get(index - declarationIndexes[s]);
+    }
+
+    @Override
+    public int size() {
+      return declarationIndexes[segments.length];
+    }
+  }
+}
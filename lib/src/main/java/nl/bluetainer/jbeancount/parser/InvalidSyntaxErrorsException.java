@@ -0,0 +1,28 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * All syntax errors found in a journal, thrown when parsing with {@link
+ * BeancountParserOptions.SyntaxErrorHandling#COLLECT_ALL}. The source location, message and
+ * preview are those of the first error.
+ */
+public class InvalidSyntaxErrorsException extends InvalidSyntaxException {
+
+  private final List<InvalidSyntaxException> errors;
+
+  public InvalidSyntaxErrorsException(List<InvalidSyntaxException> errors) {
+    this(errors, errors.get(0));
+  }
+
+  private InvalidSyntaxErrorsException(
+      List<InvalidSyntaxException> errors, InvalidSyntaxException first) {
+    super(first.getSourceLocation(), first.getMessage(), first.getPreview());
+    this.errors = List.copyOf(Objects.requireNonNull(errors, "errors"));
+  }
+
+  public List<InvalidSyntaxException> getErrors() {
+    return errors;
+  }
+}
@@ -0,0 +1,110 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the raw UTF-8 bytes of a journal at safe top-level boundaries, i.e. lines that start at
+ * column 0 with a date or a pragma keyword and that are not part of a (multiline) string.
+ */
+final class JournalChunker {
+
+  static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+  private static final byte[] PUSHTAG = "pushtag".getBytes();
+  private static final byte[] POPTAG = "poptag".getBytes();
+  private static final byte[][] PRAGMA_KEYWORDS = {
+    "include".getBytes(), "option".getBytes(), "plugin".getBytes(), PUSHTAG, POPTAG
+  };
+
+  private JournalChunker() {}
+
+  record Chunk(int startOffset, int endOffset, int firstLine) {
+
+    int lineOffset() {
+      return firstLine - 1;
+    }
+  }
+
+  static int targetChunkSize(int length, int parallelism) {
+    // A few chunks per worker, so a chunk full of large transactions does not stall the pool
+    return Math.max(MIN_CHUNK_SIZE, length / (Math.max(1, parallelism) * 4));
+  }
+
+  static List<Chunk> split(byte[] bytes, int targetChunkSize) {
+    final List<Chunk> chunks = new ArrayList<>();
+    final Splitter splitter = new Splitter(bytes, targetChunkSize, chunks);
+    ByteScanner.get().scanLineStarts(MemorySegment.ofArray(bytes), false, splitter);
+    chunks.add(new Chunk(splitter.chunkStart, bytes.length, splitter.chunkFirstLine));
+    return chunks;
+  }
+
+  /**
+   * Whether the bytes end inside a string, which then continues in whatever follows them. The bytes
+   * start at the start of a line, which is inside a string if {@code startsInString}.
+   */
+  static boolean endsInString(byte[] bytes, boolean startsInString) {
+    return ByteScanner.get()
+        .scanLineStarts(MemorySegment.ofArray(bytes), startsInString, (offset, line) -> {});
+  }
+
+  static boolean isDeclarationStart(byte[] bytes, int lineStart) {
+    if (lineStart >= bytes.length) {
+      return false;
+    }
+    final byte first = bytes[lineStart];
+    if (first >= '0' && first <= '9') {
+      return true;
+    }
+    for (byte[] keyword : PRAGMA_KEYWORDS) {
+      if (startsWithKeyword(bytes, lineStart, keyword)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Whether the line starts with a pushtag or poptag pragma. */
+  static boolean isTagPragmaStart(byte[] bytes, int lineStart) {
+    return startsWithKeyword(bytes, lineStart, PUSHTAG)
+        || startsWithKeyword(bytes, lineStart, POPTAG);
+  }
+
+  private static boolean startsWithKeyword(byte[] bytes, int offset, byte[] keyword) {
+    final int end = offset + keyword.length;
+    if (end >= bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < keyword.length; i++) {
+      if (bytes[offset + i] != keyword[i]) {
+        return false;
+      }
+    }
+    return bytes[end] == ' ' || bytes[end] == '\t';
+  }
+
+  private static final class Splitter implements ByteScanner.LineStartListener {
+    private final byte[] bytes;
+    private final int targetChunkSize;
+    private final List<Chunk> chunks;
+    private int chunkStart = 0;
+    private int chunkFirstLine = 1;
+
+    private Splitter(byte[] bytes, int targetChunkSize, List<Chunk> chunks) {
+      this.bytes = bytes;
+      this.targetChunkSize = targetChunkSize;
+      this.chunks = chunks;
+    }
+
+    @Override
+    public void lineStart(long offset, int line) {
+      final int lineStart = (int) offset;
+      if (lineStart - chunkStart >= targetChunkSize && isDeclarationStart(bytes, lineStart)) {
+        chunks.add(new Chunk(chunkStart, lineStart, chunkFirstLine));
+        chunkStart = lineStart;
+        chunkFirstLine = line;
+      }
+    }
+  }
+}
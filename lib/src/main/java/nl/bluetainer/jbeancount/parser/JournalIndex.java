@@ -0,0 +1,342 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The top-level declarations of a journal file, found by a single pass over its raw UTF-8 bytes
+ * without lexing or parsing them. Every entry has the byte offset, line and kind of a declaration,
+ * its date if it is a directive, and its filename if it is an include pragma.
+ *
+ * <p>Declarations are recognized like {@link BeancountParser#parseJournalParallel(Path)} splits a
+ * file: at lines that start at column 0 with a date or a pragma keyword and that are not part of a
+ * (multiline) string. An entry runs up to the next entry, so it includes the comments and blank
+ * lines that follow the declaration, and a range of entries can be parsed on its own with {@link
+ * BeancountParser#parseJournal(Path, JournalIndex, int, int)}. Nothing is validated, a declaration
+ * with a syntax error is indexed like any other.
+ */
+public final class JournalIndex {
+
+  private static final Kind[] KINDS = Kind.values();
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final long size;
+  private final int count;
+  private final long[] offsets;
+  private final long[] codePointOffsets;
+  private final int[] lines;
+  // yyyymmdd, or 0 for a pragma or an invalid date
+  private final int[] dates;
+  private final byte[] kinds;
+  private final List<Integer> includes;
+  private final List<String> includeFilenames;
+
+  private JournalIndex(Scanner scanner) {
+    this.size = scanner.segment.byteSize();
+    this.count = scanner.count;
+    this.offsets = scanner.offsets;
+    this.codePointOffsets = scanner.codePointOffsets;
+    this.lines = scanner.lines;
+    this.dates = scanner.dates;
+    this.kinds = scanner.kinds;
+    this.includes = Collections.unmodifiableList(scanner.includes);
+    this.includeFilenames = Collections.unmodifiableList(scanner.includeFilenames);
+  }
+
+  /** Memory-maps and indexes the given file, which may be larger than the heap. */
+  public static JournalIndex scan(Path path) {
+    try (Arena arena = Arena.ofConfined();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new JournalIndex(
+          new Scanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static JournalIndex scan(byte[] bytes) {
+    return new JournalIndex(new Scanner(MemorySegment.ofArray(bytes)));
+  }
+
+  /** The number of declarations. */
+  public int size() {
+    return count;
+  }
+
+  /** The byte offset at which the declaration starts. */
+  public long startOffset(int entry) {
+    return offsets[Objects.checkIndex(entry, count)];
+  }
+
+  /** The byte offset at which the next declaration starts, or the size of the file. */
+  public long endOffset(int entry) {
+    Objects.checkIndex(entry, count);
+    return entry + 1 < count ? offsets[entry + 1] : size;
+  }
+
+  /**
+   * The number of code points before the declaration, which is what the offsets of a {@link
+   * nl.bluetainer.jbeancount.language.SourceLocation} count.
+   */
+  public long startCodePointOffset(int entry) {
+    return codePointOffsets[Objects.checkIndex(entry, count)];
+  }
+
+  /** The 1-based line on which the declaration starts. */
+  public int line(int entry) {
+    return lines[Objects.checkIndex(entry, count)];
+  }
+
+  public Kind kind(int entry) {
+    return KINDS[kinds[Objects.checkIndex(entry, count)]];
+  }
+
+  /**
+   * The date of a directive, or {@code null} for a pragma or a directive whose date does not
+   * exist. Like the parser, a day past the end of the month of a date with slashes is moved back to
+   * the last day of that month.
+   */
+  public LocalDate date(int entry) {
+    final int date = dates[Objects.checkIndex(entry, count)];
+    return date == 0 ? null : LocalDate.of(date / 10000, date / 100 % 100, date % 100);
+  }
+
+  /** The filename of an include pragma, or {@code null} for any other declaration. */
+  public String includeFilename(int entry) {
+    final int index = Collections.binarySearch(includes, Objects.checkIndex(entry, count));
+    return index >= 0 ? includeFilenames.get(index) : null;
+  }
+
+  /** The filenames of the include pragmas, in the order they appear in. */
+  public List<String> includeFilenames() {
+    return includeFilenames;
+  }
+
+  /** The kinds of top-level declaration, named after their keyword. */
+  public enum Kind {
+    /** A transaction, whether it starts with {@code txn} or with a flag. */
+    TRANSACTION,
+    BALANCE,
+    OPEN,
+    CLOSE,
+    COMMODITY,
+    PAD,
+    EVENT,
+    PRICE,
+    NOTE,
+    DOCUMENT,
+    QUERY,
+    CUSTOM,
+    /** A line starting with a date, but not followed by a known keyword or a flag. */
+    UNKNOWN_DIRECTIVE,
+    INCLUDE,
+    OPTION,
+    PLUGIN,
+    PUSHTAG,
+    POPTAG;
+
+    private final byte[] keyword = name().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static final class Scanner {
+    private static final Kind[] DIRECTIVE_KINDS = {
+      Kind.BALANCE,
+      Kind.OPEN,
+      Kind.CLOSE,
+      Kind.COMMODITY,
+      Kind.PAD,
+      Kind.EVENT,
+      Kind.PRICE,
+      Kind.NOTE,
+      Kind.DOCUMENT,
+      Kind.QUERY,
+      Kind.CUSTOM
+    };
+    private static final Kind[] PRAGMA_KINDS = {
+      Kind.INCLUDE, Kind.OPTION, Kind.PLUGIN, Kind.PUSHTAG, Kind.POPTAG
+    };
+    private static final byte[] TXN = "txn".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteScanner bytes = ByteScanner.get();
+    private final MemorySegment segment;
+    private final long end;
+    private long counted = 0;
+    private long codePoints = 0;
+    private int count = 0;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private long[] codePointOffsets = new long[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private final List<Integer> includes = new ArrayList<>();
+    private final List<String> includeFilenames = new ArrayList<>();
+
+    private Scanner(MemorySegment segment) {
+      this.segment = segment;
+      this.end = segment.byteSize();
+      scan();
+    }
+
+    private byte at(long offset) {
+      return segment.get(ValueLayout.JAVA_BYTE, offset);
+    }
+
+    private void scan() {
+      if (end > 0) {
+        indexLine(0, 1);
+      }
+      bytes.scanLineStarts(segment, false, this::indexLine);
+    }
+
+    private void indexLine(long offset, int line) {
+      final byte first = at(offset);
+      if (first >= '0' && first <= '9') {
+        add(offset, line, directiveKind(offset + 10), date(offset));
+        return;
+      }
+      for (Kind kind : PRAGMA_KINDS) {
+        if (startsWithKeyword(offset, kind.keyword)) {
+          add(offset, line, kind, 0);
+          if (kind == Kind.INCLUDE) {
+            final String filename = string(offset + kind.keyword.length);
+            if (filename != null) {
+              includes.add(count - 1);
+              includeFilenames.add(filename);
+            }
+          }
+          return;
+        }
+      }
+    }
+
+    private Kind directiveKind(long offset) {
+      long i = skipBlanks(offset);
+      if (i >= end) {
+        return Kind.UNKNOWN_DIRECTIVE;
+      }
+      final byte b = at(i);
+      if (b == '*' || b == '!' || b == '&' || b == '#' || b == '?' || b == '%') {
+        return Kind.TRANSACTION;
+      }
+      if (startsWithKeyword(i, TXN)) {
+        return Kind.TRANSACTION;
+      }
+      for (Kind kind : DIRECTIVE_KINDS) {
+        if (startsWithKeyword(i, kind.keyword)) {
+          return kind;
+        }
+      }
+      return Kind.UNKNOWN_DIRECTIVE;
+    }
+
+    /** Packs a {@code yyyy-mm-dd} or {@code yyyy/mm/dd} date into yyyymmdd, or returns 0. */
+    private int date(long offset) {
+      if (offset + 10 > end) {
+        return 0;
+      }
+      final byte separator = at(offset + 4);
+      if ((separator != '-' && separator != '/') || at(offset + 7) != separator) {
+        return 0;
+      }
+      final int year = digits(offset, 4);
+      final int month = digits(offset + 5, 2);
+      final int day = digits(offset + 8, 2);
+      if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+        return 0;
+      }
+      final int length = Month.of(month).length(Year.isLeap(year));
+      if (day > length && separator == '-') {
+        return 0;
+      }
+      return (year * 100 + month) * 100 + Math.min(day, length);
+    }
+
+    private int digits(long offset, int count) {
+      int value = 0;
+      for (long i = offset; i < offset + count; i++) {
+        final byte b = at(i);
+        if (b < '0' || b > '9') {
+          return -1;
+        }
+        value = value * 10 + b - '0';
+      }
+      return value;
+    }
+
+    /** The contents of the string that follows the blanks at the offset, if it is on this line. */
+    private String string(long offset) {
+      final long start = skipBlanks(offset);
+      if (start >= end || at(start) != '"') {
+        return null;
+      }
+      for (long i = start + 1; i < end; i++) {
+        final byte b = at(i);
+        if (b == '\\') {
+          i++;
+        } else if (b == '"') {
+          return new String(
+              segment.asSlice(start + 1, i - start - 1).toArray(ValueLayout.JAVA_BYTE),
+              StandardCharsets.UTF_8);
+        }
+      }
+      return null;
+    }
+
+    private long skipBlanks(long offset) {
+      long i = offset;
+      while (i < end && (at(i) == ' ' || at(i) == '\t')) {
+        i++;
+      }
+      return i;
+    }
+
+    private boolean startsWithKeyword(long offset, byte[] keyword) {
+      final long keywordEnd = offset + keyword.length;
+      if (keywordEnd >= end) {
+        return false;
+      }
+      for (int i = 0; i < keyword.length; i++) {
+        if (at(offset + i) != keyword[i]) {
+          return false;
+        }
+      }
+      final byte next = at(keywordEnd);
+      return next == ' ' || next == '\t' || next == '\r' || next == '\n';
+    }
+
+    private void add(long offset, int line, Kind kind, int date) {
+      if (count == offsets.length) {
+        final int capacity = count * 2;
+        offsets = Arrays.copyOf(offsets, capacity);
+        codePointOffsets = Arrays.copyOf(codePointOffsets, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+      }
+      offsets[count] = offset;
+      // Counted per declaration rather than per byte, which lets the counting be vectorized
+      codePoints += bytes.countCodePoints(segment, counted, offset);
+      counted = offset;
+      codePointOffsets[count] = codePoints;
+      lines[count] = line;
+      dates[count] = date;
+      kinds[count] = (byte) kind.ordinal();
+      count++;
+    }
+  }
+}
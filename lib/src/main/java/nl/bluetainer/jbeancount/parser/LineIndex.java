@@ -0,0 +1,68 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.util.Arrays;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * The offsets at which the lines of a {@link CharStream} start. The stream is only scanned as far
+ * as the requested lines, and only once, so creating the previews of many syntax errors costs
+ * about as much as creating a single one.
+ */
+final class LineIndex {
+
+  private static final int SCAN_CHUNK = 4096;
+
+  private final CharStream charStream;
+  private int[] starts = new int[64];
+  private int lines = 1;
+  private int scanned = 0;
+
+  LineIndex(CharStream charStream) {
+    this.charStream = charStream;
+  }
+
+  /** Returns the offset of the first character of the given (1-based) line, or -1. */
+  int lineStart(int line) {
+    while (lines < line && scanned < charStream.size()) {
+      scan();
+    }
+    return line >= 1 && line <= lines ? starts[line - 1] : -1;
+  }
+
+  /** Returns the text of the given (1-based) line without its line terminator, or null. */
+  String lineText(int line) {
+    final int start = lineStart(line);
+    if (start < 0 || start >= charStream.size()) {
+      return null;
+    }
+    final int next = lineStart(line + 1);
+    final String text =
+        charStream.getText(Interval.of(start, (next < 0 ? charStream.size() : next) - 1));
+    int end = text.length();
+    if (end > 0 && text.charAt(end - 1) == '\n') {
+      end--;
+    }
+    if (end > 0 && text.charAt(end - 1) == '\r') {
+      end--;
+    }
+    return text.substring(0, end);
+  }
+
+  private void scan() {
+    final int end = Math.min(scanned + SCAN_CHUNK, charStream.size());
+    final String text = charStream.getText(Interval.of(scanned, end - 1));
+    int offset = scanned;
+    for (int i = 0; i < text.length(); offset++) {
+      final int codePoint = text.codePointAt(i);
+      i += Character.charCount(codePoint);
+      if (codePoint == '\n') {
+        if (lines == starts.length) {
+          starts = Arrays.copyOf(starts, lines * 2);
+        }
+        starts[lines++] = offset + 1;
+      }
+    }
+    scanned = end;
+  }
+}
@@ -0,0 +1,273 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A {@link CharStream} over a memory-mapped UTF-8 file, which decodes code points on the fly
+ * instead of reading the entire file into a code point array like {@link
+ * org.antlr.v4.runtime.CharStreams#fromPath(Path)} does.
+ *
+ * <p>Like any {@link CharStream} it is indexed by code point. When the file is entirely ASCII a
+ * code point index is also the byte offset. Otherwise the byte offset of every {@value #BLOCK}th
+ * code point is kept, together with the offsets of the most recently visited code points, so
+ * random access (which the lexer needs for look-ahead and token texts) only has to decode a short
+ * distance. Malformed UTF-8 is replaced by U+FFFD like the JDK's decoder (and so {@link
+ * org.antlr.v4.runtime.CharStreams}) replaces it: once for an incomplete sequence or an encoded
+ * surrogate, and once for every other invalid byte, including the bytes of an overlong sequence.
+ */
+final class MappedUtf8CharStream implements CharStream {
+
+  private static final int BLOCK_SHIFT = 12;
+  static final int BLOCK = 1 << BLOCK_SHIFT;
+  private static final int BLOCK_MASK = BLOCK - 1;
+  private static final int RECENT = 256;
+  private static final int RECENT_MASK = RECENT - 1;
+  private static final long ASCII_MASK = 0x8080808080808080L;
+  private static final int REPLACEMENT_CHARACTER = 0xFFFD;
+
+  private final MemorySegment segment;
+  private final String sourceName;
+  private final long byteSize;
+  private final int size;
+  private final boolean ascii;
+  private final long[] blockOffsets;
+  private final int[] recentIndexes = new int[RECENT];
+  private final long[] recentOffsets = new long[RECENT];
+
+  private int index = 0;
+  private long offset = 0;
+
+  private MappedUtf8CharStream(MemorySegment segment, String sourceName) throws IOException {
+    this.segment = segment;
+    this.sourceName = sourceName;
+    this.byteSize = segment.byteSize();
+
+    long[] offsets = new long[(int) Math.min(Integer.MAX_VALUE - 8, byteSize / BLOCK + 1)];
+    long count = 0;
+    long o = 0;
+    boolean onlyAscii = true;
+    while (o < byteSize) {
+      if ((count & BLOCK_MASK) == 0) {
+        offsets[(int) (count >>> BLOCK_SHIFT)] = o;
+      }
+      if (o + 8 <= byteSize
+          && (count & BLOCK_MASK) <= BLOCK - 8
+          && (segment.get(ValueLayout.JAVA_LONG_UNALIGNED, o) & ASCII_MASK) == 0) {
+        o += 8;
+        count += 8;
+      } else {
+        onlyAscii &= byteAt(o) < 0x80;
+        o += sequenceLength(o);
+        count++;
+      }
+      if (count > Integer.MAX_VALUE - 8) {
+        throw new IOException(sourceName + " contains more than 2^31 code points");
+      }
+    }
+    this.size = (int) count;
+    this.ascii = onlyAscii;
+    this.blockOffsets = ascii ? null : Arrays.copyOf(offsets, (size >>> BLOCK_SHIFT) + 1);
+    Arrays.fill(recentIndexes, -1);
+    remember(0, 0);
+  }
+
+  /**
+   * Maps the file into memory using the given arena. The stream must not be used after the arena
+   * has been closed.
+   */
+  static MappedUtf8CharStream open(Path path, Arena arena) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new MappedUtf8CharStream(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena), path.toString());
+    }
+  }
+
+  @Override
+  public void consume() {
+    if (index >= size) {
+      throw new IllegalStateException("cannot consume EOF");
+    }
+    index++;
+    if (!ascii) {
+      offset += sequenceLength(offset);
+      remember(index, offset);
+    }
+  }
+
+  @Override
+  public int LA(int i) {
+    if (i == 0) {
+      return 0;
+    }
+    final int target = i > 0 ? index + i - 1 : index + i;
+    if (target < 0 || target >= size) {
+      return IntStream.EOF;
+    }
+    if (ascii) {
+      return segment.get(ValueLayout.JAVA_BYTE, target);
+    }
+    if (i > 0) {
+      long o = offset;
+      for (int k = 1; k < i; k++) {
+        o += sequenceLength(o);
+      }
+      return decode(o);
+    }
+    return decode(offsetOf(target));
+  }
+
+  @Override
+  public int mark() {
+    return -1;
+  }
+
+  @Override
+  public void release(int marker) {}
+
+  @Override
+  public int index() {
+    return index;
+  }
+
+  @Override
+  public void seek(int index) {
+    final int target = Math.max(0, Math.min(index, size));
+    if (!ascii) {
+      offset = offsetOf(target);
+      remember(target, offset);
+    }
+    this.index = target;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String getSourceName() {
+    return sourceName;
+  }
+
+  @Override
+  public String getText(Interval interval) {
+    final int start = Math.max(0, Math.min(interval.a, size));
+    final int length = Math.min(interval.b - interval.a + 1, size - start);
+    if (length <= 0) {
+      return "";
+    }
+    if (ascii) {
+      final byte[] bytes = new byte[length];
+      MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, start, bytes, 0, length);
+      return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    final StringBuilder sb = new StringBuilder(length);
+    long o = offsetOf(start);
+    for (int i = 0; i < length; i++) {
+      sb.appendCodePoint(decode(o));
+      o += sequenceLength(o);
+    }
+    return sb.toString();
+  }
+
+  private void remember(int index, long offset) {
+    recentIndexes[index & RECENT_MASK] = index;
+    recentOffsets[index & RECENT_MASK] = offset;
+  }
+
+  private long offsetOf(int target) {
+    if (target == index) {
+      return offset;
+    } else if (target >= size) {
+      return byteSize;
+    } else if (recentIndexes[target & RECENT_MASK] == target) {
+      return recentOffsets[target & RECENT_MASK];
+    }
+    int i;
+    long o;
+    if (target > index && target - index < BLOCK) {
+      i = index;
+      o = offset;
+    } else {
+      i = target & ~BLOCK_MASK;
+      o = blockOffsets[target >>> BLOCK_SHIFT];
+    }
+    for (; i < target; i++) {
+      o += sequenceLength(o);
+    }
+    return o;
+  }
+
+  private int byteAt(long o) {
+    return o < byteSize ? segment.get(ValueLayout.JAVA_BYTE, o) & 0xFF : -1;
+  }
+
+  private boolean isContinuation(long o) {
+    return (byteAt(o) & 0xC0) == 0x80;
+  }
+
+  private int sequenceLength(long o) {
+    return Math.abs(sequence(o));
+  }
+
+  /**
+   * Returns the length of the sequence at the offset, or minus the number of bytes that are
+   * replaced by a single U+FFFD.
+   */
+  private int sequence(long o) {
+    final int b = byteAt(o);
+    if (b < 0x80) {
+      return 1;
+    }
+    final int second = byteAt(o + 1);
+    if (b >= 0xC2 && b <= 0xDF) {
+      return isContinuation(o + 1) ? 2 : -1;
+    } else if (b >= 0xE0 && b <= 0xEF) {
+      if (!isContinuation(o + 1) || (b == 0xE0 && second < 0xA0)) {
+        return -1;
+      } else if (!isContinuation(o + 2)) {
+        return -2;
+      }
+      // ED A0..BF encodes a UTF-16 surrogate
+      return b == 0xED && second >= 0xA0 ? -3 : 3;
+    } else if (b >= 0xF0 && b <= 0xF4) {
+      if (!isContinuation(o + 1)
+          || (b == 0xF0 && second < 0x90)
+          || (b == 0xF4 && second > 0x8F)) {
+        return -1;
+      } else if (!isContinuation(o + 2)) {
+        return -2;
+      }
+      return isContinuation(o + 3) ? 4 : -3;
+    }
+    return -1;
+  }
+
+  private int decode(long o) {
+    final int b = byteAt(o);
+    if (b < 0x80) {
+      return b;
+    }
+    return switch (sequence(o)) {
+      case 2 -> (b & 0x1F) << 6 | (byteAt(o + 1) & 0x3F);
+      case 3 -> (b & 0x0F) << 12 | (byteAt(o + 1) & 0x3F) << 6 | (byteAt(o + 2) & 0x3F);
+      case 4 ->
+          (b & 0x07) << 18
+              | (byteAt(o + 1) & 0x3F) << 12
+              | (byteAt(o + 2) & 0x3F) << 6
+              | (byteAt(o + 3) & 0x3F);
+      default -> REPLACEMENT_CHARACTER;
+    };
+  }
+}
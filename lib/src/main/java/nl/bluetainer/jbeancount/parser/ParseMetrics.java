@@ -0,0 +1,27 @@
+package nl.bluetainer.jbeancount.parser;
+
+/**
+ * Where the time went while parsing a single file (or reader), as reported to a {@link
+ * ParseMetricsListener}. Lexing happens on demand while parsing, the time spent in the lexer is
+ * measured separately and is not part of {@link #parsingNanos()}. When a file is parsed in
+ * parallel, the times of all of its chunks are added up.
+ *
+ * @param sourceName the file name, or {@code null} when parsing from a reader
+ * @param bytes the size of the file, or {@code -1} when parsing from a reader
+ * @param tokens the number of tokens produced by the lexer, including {@code EOF}
+ * @param lexingNanos the time spent in the lexer
+ * @param parsingNanos the time spent in the ANTLR parser, excluding lexing
+ * @param conversionNanos the time spent converting the parse tree into language nodes
+ */
+public record ParseMetrics(
+    String sourceName,
+    long bytes,
+    int tokens,
+    long lexingNanos,
+    long parsingNanos,
+    long conversionNanos) {
+
+  public long totalNanos() {
+    return lexingNanos + parsingNanos + conversionNanos;
+  }
+}
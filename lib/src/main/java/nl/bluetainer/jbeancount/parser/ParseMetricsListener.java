@@ -0,0 +1,20 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the metrics of every parse, see {@link
+ * BeancountParserOptions.Builder#metricsListener(ParseMetricsListener)}. Files may be parsed
+ * concurrently, so implementations must be thread-safe.
+ */
+public interface ParseMetricsListener {
+
+  void parsed(ParseMetrics metrics);
+
+  /**
+   * Called by {@link nl.bluetainer.jbeancount.Beancount} once the include pragmas of a file have
+   * been resolved. The time is measured from the moment the file was parsed until all of its
+   * includes (recursively) have been parsed, so it overlaps with the metrics of those includes.
+   */
+  default void includesResolved(Path path, int includes, long nanos) {}
+}
@@ -0,0 +1,26 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.util.Objects;
+
+/**
+ * Replaces {@code removedLength} characters at {@code offset} with {@code insertedText}. Offsets
+ * count UTF-16 chars, like {@link String#length()}.
+ */
+public record TextEdit(int offset, int removedLength, String insertedText) {
+
+  public TextEdit {
+    if (offset < 0 || removedLength < 0) {
+      throw new IllegalArgumentException(
+          "invalid edit at offset " + offset + " removing " + removedLength);
+    }
+    Objects.requireNonNull(insertedText, "insertedText");
+  }
+
+  public static TextEdit insert(int offset, String text) {
+    return new TextEdit(offset, 0, text);
+  }
+
+  public static TextEdit remove(int offset, int length) {
+    return new TextEdit(offset, length, "");
+  }
+}
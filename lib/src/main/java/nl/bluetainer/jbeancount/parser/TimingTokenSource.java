@@ -0,0 +1,65 @@
+package nl.bluetainer.jbeancount.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+
+/** Measures the time spent in, and the number of tokens produced by, a lexer. */
+final class TimingTokenSource implements TokenSource {
+
+  private final TokenSource delegate;
+  private long nanos = 0;
+  private int tokens = 0;
+
+  TimingTokenSource(TokenSource delegate) {
+    this.delegate = delegate;
+  }
+
+  long nanos() {
+    return nanos;
+  }
+
+  int tokens() {
+    return tokens;
+  }
+
+  @Override
+  public Token nextToken() {
+    final long start = System.nanoTime();
+    final Token token = delegate.nextToken();
+    nanos += System.nanoTime() - start;
+    tokens++;
+    return token;
+  }
+
+  @Override
+  public int getLine() {
+    return delegate.getLine();
+  }
+
+  @Override
+  public int getCharPositionInLine() {
+    return delegate.getCharPositionInLine();
+  }
+
+  @Override
+  public CharStream getInputStream() {
+    return delegate.getInputStream();
+  }
+
+  @Override
+  public String getSourceName() {
+    return delegate.getSourceName();
+  }
+
+  @Override
+  public void setTokenFactory(TokenFactory<?> factory) {
+    delegate.setTokenFactory(factory);
+  }
+
+  @Override
+  public TokenFactory<?> getTokenFactory() {
+    return delegate.getTokenFactory();
+  }
+}
@@ -0,0 +1,93 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Converts the text of {@code DATE} and {@code NUMBER} tokens using digit arithmetic, instead of
+ * {@link java.time.format.DateTimeFormatter} and {@link BigDecimal#BigDecimal(String)}. The lexer
+ * already guarantees the shape of the text, so only the values have to be checked.
+ *
+ * <p>Journals are mostly sorted by date and have many entries per day, so the most recent dates
+ * are cached. An instance is not thread-safe.
+ */
+final class TokenValueParser {
+
+  private static final int DATE_CACHE_SIZE = 64;
+  private static final int DATE_CACHE_MASK = DATE_CACHE_SIZE - 1;
+  // 18 digits always fit in a long
+  private static final int MAX_LONG_DIGITS = 18;
+
+  // A key of 0 (0000-00-00) is never a valid date, so it marks an empty entry
+  private final int[] dateKeys = new int[DATE_CACHE_SIZE];
+  private final LocalDate[] dates = new LocalDate[DATE_CACHE_SIZE];
+
+  /** Parses {@code yyyy-mm-dd} or {@code yyyy/mm/dd}. */
+  LocalDate parseDate(String text) {
+    final int year =
+        digit(text, 0) * 1000 + digit(text, 1) * 100 + digit(text, 2) * 10 + digit(text, 3);
+    final int month = digit(text, 5) * 10 + digit(text, 6);
+    final int day = digit(text, 8) * 10 + digit(text, 9);
+    final int key = (year * 100 + month) * 100 + day;
+    final int slot = (key ^ (key >>> 6)) & DATE_CACHE_MASK;
+    if (dateKeys[slot] == key && key != 0) {
+      return dates[slot];
+    }
+    final LocalDate date =
+        text.charAt(4) == '/'
+            ? lenientDate(text, year, month, day)
+            : LocalDate.of(year, month, day);
+    // A date that only exists leniently must not be returned for its strict form
+    if (date.getDayOfMonth() == day) {
+      dateKeys[slot] = key;
+      dates[slot] = date;
+    }
+    return date;
+  }
+
+  /**
+   * Dates with slashes used to be parsed with a smart resolving formatter, which moves a day that
+   * is past the end of the month (but at most 31) back to the last day of the month.
+   */
+  private static LocalDate lenientDate(String text, int year, int month, int day) {
+    if (month < 1 || month > 12 || day < 1 || day > 31) {
+      throw new DateTimeException("Invalid date '" + text + "'");
+    }
+    return LocalDate.of(year, month, Math.min(day, YearMonth.of(year, month).lengthOfMonth()));
+  }
+
+  private static int digit(String text, int index) {
+    return text.charAt(index) - '0';
+  }
+
+  /** Parses digits with optional thousands separators and an optional fraction. */
+  static BigDecimal parseNumber(String text) {
+    long unscaled = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == ',') {
+        continue;
+      } else if (c == '.') {
+        fraction = true;
+        continue;
+      }
+      // Leading zeroes do not count towards the digits that have to fit in a long
+      if (unscaled != 0 || c != '0') {
+        digits++;
+      }
+      unscaled = unscaled * 10 + (c - '0');
+      if (fraction) {
+        scale++;
+      }
+    }
+    if (digits > MAX_LONG_DIGITS) {
+      return new BigDecimal(text.replace(",", ""));
+    }
+    return BigDecimal.valueOf(unscaled, scale);
+  }
+}
@@ -0,0 +1,151 @@
+package nl.bluetainer.jbeancount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import nl.bluetainer.jbeancount.construe.BoundedConstrueStrategy;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.BeancountUtil;
+import nl.bluetainer.jbeancount.parser.ParseMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IncludeGraphTest {
+
+  @TempDir Path tempDir;
+
+  private final List<ParseMetrics> parsed = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void scansEveryFileOnce() throws IOException {
+    writeIncludeTree();
+
+    final IncludeGraph graph = IncludeGraph.scan(tempDir.resolve("main.beancount"));
+
+    assertThat(graph.nodes())
+        .extracting(node -> node.path().getFileName().toString())
+        .containsExactly("main.beancount", "a.beancount", "x.beancount", "y.beancount");
+    final List<IncludeGraph.Include> includes = graph.root().includes();
+    assertThat(includes)
+        .extracting(IncludeGraph.Include::filename)
+        .containsExactly("a.beancount", "s/*.beancount");
+    assertThat(includes.get(1).files())
+        .containsExactly(
+            graph.node(tempDir.resolve("s/x.beancount")),
+            graph.node(tempDir.resolve("s/y.beancount")));
+    assertThat(graph.node(tempDir.resolve("a.beancount")).includes().get(0).files())
+        .containsExactly(graph.node(tempDir.resolve("s/../s/x.beancount")));
+    assertThat(graph.root().include("s/*.beancount")).isSameAs(includes.get(1));
+    assertThat(graph.root().include("x.beancount")).isNull();
+    assertThat(parsed).isEmpty();
+  }
+
+  @Test
+  public void parsesTheLargestFilesFirst() throws IOException {
+    writeIncludeTree();
+
+    final IncludeGraph graph = IncludeGraph.scan(tempDir.resolve("main.beancount"));
+
+    assertThat(graph.parseOrder())
+        .extracting(IncludeGraph.Node::bytes)
+        .isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    assertThat(graph.parseOrder().get(0).path().getFileName()).hasToString("y.beancount");
+  }
+
+  @Test
+  public void createsTheSameJournalAsResolvingTheIncludes() throws IOException {
+    writeIncludeTree();
+    final Path main = tempDir.resolve("main.beancount");
+    final IncludeGraph graph = IncludeGraph.scan(main);
+
+    final Journal fromGraph = beancount().createJournalSync(graph);
+
+    assertThat(parsed).hasSize(4);
+    assertThat(graph.nodes()).allSatisfy(node -> assertThat(node.parseNanos()).isPresent());
+    final Journal fromPath = beancount().createJournalSync(main);
+    assertThat(structure(fromGraph)).isEqualTo(structure(fromPath));
+    final List<IncludePragma> includes =
+        BeancountUtil.findDeclarationsOfType(fromGraph, IncludePragma.class);
+    final Journal x =
+        BeancountUtil.findDeclarationsOfType(includes.get(0).journal(), IncludePragma.class)
+            .get(0)
+            .journal();
+    final Journal xOfGlob =
+        BeancountUtil.findDeclarationsOfType(includes.get(1).journal(), IncludePragma.class)
+            .get(0)
+            .journal();
+    assertThat(x).isNotNull().isSameAs(xOfGlob);
+  }
+
+  @Test
+  public void reportsIncludeCycles() throws IOException {
+    write("main.beancount", "include \"a.beancount\"\n");
+    write("a.beancount", "include \"main.beancount\"\n");
+
+    final Path main = tempDir.resolve("main.beancount");
+    final Path realMain = main.toRealPath();
+    assertThatThrownBy(() -> IncludeGraph.scan(main))
+        .isInstanceOfSatisfying(
+            IncludeCycleException.class,
+            e -> assertThat(e.includeChain()).hasSize(3).startsWith(realMain).endsWith(realMain));
+  }
+
+  @Test
+  public void failsWhenAFileChangedAfterTheScan() throws IOException {
+    write("main.beancount", "2022-01-01 open Assets:A EUR\n");
+    write("a.beancount", "2022-01-01 open Assets:B EUR\n");
+    final IncludeGraph graph = IncludeGraph.scan(tempDir.resolve("main.beancount"));
+    write("main.beancount", "include \"a.beancount\"\n");
+
+    assertThatThrownBy(() -> beancount().createJournalSync(graph))
+        .hasRootCauseInstanceOf(BeancountException.class)
+        .hasMessageContaining("not in the include graph");
+  }
+
+  private void writeIncludeTree() throws IOException {
+    write("main.beancount", "include \"a.beancount\"\ninclude \"s/*.beancount\"\n");
+    write("a.beancount", "include \"s/x.beancount\"\n2022-01-01 open Assets:A EUR\n");
+    Files.createDirectory(tempDir.resolve("s"));
+    write("s/x.beancount", "2022-01-01 open Assets:X EUR\n");
+    write(
+        "s/y.beancount",
+        "2022-01-01 open Assets:Y EUR\n2022-01-02 open Assets:Z EUR\n2022-01-03 close Assets:Z\n");
+  }
+
+  private Beancount beancount() {
+    return Beancount.newBeancount()
+        .parserOptions(
+            BeancountParserOptions.newBeancountParserOptions()
+                .metricsListener(parsed::add)
+                .build())
+        .construeStrategy(new BoundedConstrueStrategy(2))
+        .build();
+  }
+
+  /** The kinds of the declarations of the journal, with the journals of the includes nested. */
+  private static String structure(Journal journal) {
+    final StringBuilder sb = new StringBuilder("[");
+    for (JournalDeclaration<?, ?> declaration : journal.declarations()) {
+      if (declaration instanceof IncludePragma includePragma) {
+        sb.append(includePragma.filename()).append(structure(includePragma.journal()));
+      } else {
+        sb.append(declaration.getClass().getSimpleName());
+      }
+      sb.append(' ');
+    }
+    return sb.append(']').toString();
+  }
+
+  private void write(String name, String text) throws IOException {
+    Files.writeString(tempDir.resolve(name), text, StandardCharsets.UTF_8);
+  }
+}
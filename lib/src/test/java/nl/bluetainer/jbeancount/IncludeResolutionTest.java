@@ -0,0 +1,136 @@
+package nl.bluetainer.jbeancount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import nl.bluetainer.jbeancount.construe.VirtualThreadConstrueStrategy;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.BeancountUtil;
+import nl.bluetainer.jbeancount.parser.ParseMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IncludeResolutionTest {
+
+  @TempDir Path tempDir;
+
+  private final List<ParseMetrics> parsed = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void parsesSharedIncludesOnce() throws IOException {
+    write("main.beancount", "include \"a.beancount\"\ninclude \"sub/../b.beancount\"\n");
+    write("a.beancount", "include \"accounts.beancount\"\n");
+    write("b.beancount", "include \"./accounts.beancount\"\n");
+    write("accounts.beancount", "2022-01-01 open Assets:Cash EUR\n");
+    Files.createDirectory(tempDir.resolve("sub"));
+
+    final Journal journal = beancount(false).createJournalSync(tempDir.resolve("main.beancount"));
+
+    assertThat(parsed)
+        .extracting(ParseMetrics::sourceName)
+        .containsExactlyInAnyOrder(
+            "main.beancount", "a.beancount", "b.beancount", "accounts.beancount");
+    final List<IncludePragma> includes =
+        BeancountUtil.findDeclarationsOfType(journal, IncludePragma.class);
+    final Journal accountsOfA =
+        BeancountUtil.findDeclarationsOfType(includes.get(0).journal(), IncludePragma.class)
+            .get(0)
+            .journal();
+    final Journal accountsOfB =
+        BeancountUtil.findDeclarationsOfType(includes.get(1).journal(), IncludePragma.class)
+            .get(0)
+            .journal();
+    assertThat(accountsOfA).isNotNull().isSameAs(accountsOfB);
+  }
+
+  @Test
+  public void reportsIncludeCycles() throws IOException {
+    write("main.beancount", "include \"a.beancount\"\n");
+    write("a.beancount", "include \"b.beancount\"\n");
+    write("b.beancount", "include \"main.beancount\"\n");
+
+    final Path main = tempDir.resolve("main.beancount");
+    final Path b = tempDir.resolve("b.beancount").toRealPath();
+    assertThatThrownBy(() -> beancount(false).createJournalSync(main))
+        .rootCause()
+        .hasMessageContaining("b.beancount -> ")
+        .isInstanceOfSatisfying(
+            IncludeCycleException.class,
+            e -> assertThat(e.includeChain()).hasSize(4).startsWith(b).endsWith(b));
+  }
+
+  @Test
+  public void reportsCyclesThroughFilesThatAreBeingParsed() throws IOException {
+    // b includes c and c includes b, while main includes both of them concurrently
+    write("main.beancount", "include \"b.beancount\"\ninclude \"c.beancount\"\n");
+    write("b.beancount", "include \"c.beancount\"\n");
+    write("c.beancount", "include \"b.beancount\"\n");
+
+    assertThat(beancount(true).createJournal(tempDir.resolve("main.beancount")))
+        .failsWithin(10, TimeUnit.SECONDS)
+        .withThrowableThat()
+        .havingRootCause()
+        .isInstanceOf(IncludeCycleException.class);
+  }
+
+  @Test
+  public void nestsTheFilesMatchingAGlobUnderThePragma() throws IOException {
+    write("main.beancount", "include \"statements/*/*.beancount\"\n");
+    Files.createDirectories(tempDir.resolve("statements/2022"));
+    Files.createDirectories(tempDir.resolve("statements/2021"));
+    write("statements/2022/b.beancount", "2022-01-01 open Assets:B EUR\n");
+    write("statements/2022/a.beancount", "2022-01-01 open Assets:A EUR\n");
+    write("statements/2021/z.beancount", "2021-01-01 open Assets:Z EUR\n");
+
+    final Journal journal = beancount(true).createJournalSync(tempDir.resolve("main.beancount"));
+
+    final IncludePragma glob =
+        BeancountUtil.findDeclarationsOfType(journal, IncludePragma.class).get(0);
+    assertThat(glob.filename()).isEqualTo("statements/*/*.beancount");
+    final List<IncludePragma> matches =
+        BeancountUtil.findDeclarationsOfType(glob.journal(), IncludePragma.class);
+    assertThat(matches)
+        .extracting(IncludePragma::filename)
+        .containsExactly(
+            "statements/2021/z.beancount",
+            "statements/2022/a.beancount",
+            "statements/2022/b.beancount");
+    assertThat(matches).extracting(IncludePragma::journal).doesNotContainNull();
+  }
+
+  @Test
+  public void failsOnAGlobWithoutMatches() throws IOException {
+    write("main.beancount", "include \"statements/*.beancount\"\n");
+
+    final Path main = tempDir.resolve("main.beancount");
+    assertThatThrownBy(() -> beancount(false).createJournalSync(main))
+        .hasRootCauseInstanceOf(NoSuchFileException.class);
+  }
+
+  private Beancount beancount(boolean concurrent) {
+    final Beancount.Builder builder =
+        Beancount.newBeancount()
+            .parserOptions(
+                BeancountParserOptions.newBeancountParserOptions()
+                    .metricsListener(parsed::add)
+                    .build());
+    if (concurrent) {
+      builder.construeStrategy(new VirtualThreadConstrueStrategy());
+    }
+    return builder.build();
+  }
+
+  private void write(String name, String text) throws IOException {
+    Files.writeString(tempDir.resolve(name), text, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,184 @@
+package nl.bluetainer.jbeancount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.BeancountUtil;
+import nl.bluetainer.jbeancount.parser.InvalidSyntaxException;
+import nl.bluetainer.jbeancount.parser.ParseMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LiveJournalTest {
+
+  // Some platforms poll for changes rather than being notified of them
+  private static final long TIMEOUT_SECONDS = 30;
+
+  @TempDir Path tempDir;
+
+  private final List<ParseMetrics> parsed = new CopyOnWriteArrayList<>();
+  private final BlockingQueue<Object> updates = new LinkedBlockingQueue<>();
+
+  @Test
+  public void reparsesOnlyTheChangedFile() throws Exception {
+    write("main.beancount", "include \"a.beancount\"\ninclude \"b.beancount\"\n");
+    write("a.beancount", "2022-01-01 open Assets:A EUR\n");
+    write("b.beancount", "2022-01-01 open Assets:B EUR\n");
+
+    try (LiveJournal liveJournal = open()) {
+      final Journal before = liveJournal.journal();
+      parsed.clear();
+
+      replace("a.beancount", "2022-01-01 open Assets:A EUR\n2022-01-02 close Assets:A\n");
+
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isInstanceOf(Journal.class);
+      final Journal after = liveJournal.journal();
+      assertThat(parsed).extracting(ParseMetrics::sourceName).containsOnly("a.beancount");
+      assertThat(include(after, 0).declarations()).hasSize(2);
+      assertThat(include(after, 1)).isSameAs(include(before, 1));
+    }
+  }
+
+  @Test
+  public void keepsTheJournalWhenAReloadFails() throws Exception {
+    write("main.beancount", "include \"a.beancount\"\n");
+    write("a.beancount", "2022-01-01 open Assets:A EUR\n");
+
+    try (LiveJournal liveJournal = open()) {
+      final Journal before = liveJournal.journal();
+
+      replace("a.beancount", "2022-01-04 open open\n");
+
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+          .isInstanceOf(InvalidSyntaxException.class);
+      assertThat(liveJournal.journal()).isSameAs(before);
+    }
+  }
+
+  @Test
+  public void loadsNewIncludes() throws Exception {
+    write("main.beancount", "2022-01-01 open Assets:A EUR\n");
+    write("b.beancount", "2022-01-01 open Assets:B EUR\n");
+
+    try (LiveJournal liveJournal = open()) {
+      replace("main.beancount", "2022-01-01 open Assets:A EUR\ninclude \"b.beancount\"\n");
+
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isInstanceOf(Journal.class);
+      assertThat(include(liveJournal.journal(), 0).declarations()).hasSize(1);
+    }
+  }
+
+  @Test
+  public void dropsDeletedFilesThatAGlobMatched() throws Exception {
+    write("main.bean", "include \"*.beancount\"\n");
+    write("a.beancount", "2022-01-01 open Assets:A EUR\n");
+    write("b.beancount", "2022-01-01 open Assets:B EUR\n");
+
+    try (LiveJournal liveJournal = open("main.bean")) {
+      assertThat(include(include(liveJournal.journal(), 0), 1)).isNotNull();
+
+      Files.delete(tempDir.resolve("b.beancount"));
+
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isInstanceOf(Journal.class);
+      final Journal glob = include(liveJournal.journal(), 0);
+      assertThat(BeancountUtil.findDeclarationsOfType(glob, IncludePragma.class))
+          .extracting(IncludePragma::filename)
+          .containsExactly("a.beancount");
+    }
+  }
+
+  @Test
+  public void failsWhenAnIncludedFileIsDeleted() throws Exception {
+    write("main.beancount", "include \"a.beancount\"\n");
+    write("a.beancount", "2022-01-01 open Assets:A EUR\n");
+
+    try (LiveJournal liveJournal = open()) {
+      final Journal before = liveJournal.journal();
+
+      Files.delete(tempDir.resolve("a.beancount"));
+
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+          .isInstanceOfSatisfying(
+              UncheckedIOException.class,
+              e -> assertThat(e).hasCauseInstanceOf(NoSuchFileException.class));
+      assertThat(liveJournal.journal()).isSameAs(before);
+    }
+  }
+
+  @Test
+  public void keepsWatchingWhenAListenerThrows() throws Exception {
+    write("main.beancount", "2022-01-01 open Assets:A EUR\n");
+
+    try (LiveJournal liveJournal = open()) {
+      liveJournal.addListener(
+          journal -> {
+            throw new IllegalStateException("Listener failed");
+          });
+
+      replace("main.beancount", "2022-01-01 open Assets:B EUR\n");
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isInstanceOf(Journal.class);
+      replace("main.beancount", "2022-01-01 open Assets:C EUR\n");
+
+      assertThat(updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isInstanceOf(Journal.class);
+      assertThat(liveJournal.journal().declarations()).hasSize(1);
+    }
+  }
+
+  private LiveJournal open() throws IOException {
+    return open("main.beancount");
+  }
+
+  private LiveJournal open(String name) throws IOException {
+    final LiveJournal liveJournal =
+        LiveJournal.open(
+            Beancount.newBeancount()
+                .parserOptions(
+                    BeancountParserOptions.newBeancountParserOptions()
+                        .metricsListener(parsed::add)
+                        .build())
+                .build(),
+            tempDir.resolve(name));
+    liveJournal.addListener(
+        new LiveJournal.Listener() {
+          @Override
+          public void journalChanged(Journal journal) {
+            updates.add(journal);
+          }
+
+          @Override
+          public void reloadFailed(Throwable t) {
+            updates.add(t);
+          }
+        });
+    return liveJournal;
+  }
+
+  private static Journal include(Journal journal, int index) {
+    return BeancountUtil.findDeclarationsOfType(journal, IncludePragma.class).get(index).journal();
+  }
+
+  private void write(String name, String text) throws IOException {
+    Files.writeString(tempDir.resolve(name), text, StandardCharsets.UTF_8);
+  }
+
+  /** Replaces the file at once, so the watcher never sees it half written. */
+  private void replace(String name, String text) throws IOException {
+    final Path temporary = Files.createTempFile(tempDir, name, ".tmp");
+    Files.writeString(temporary, text, StandardCharsets.UTF_8);
+    Files.move(temporary, tempDir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+  }
+}
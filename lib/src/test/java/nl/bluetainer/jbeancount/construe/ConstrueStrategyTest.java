@@ -0,0 +1,139 @@
+package nl.bluetainer.jbeancount.construe;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import nl.bluetainer.jbeancount.Beancount;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.ParseMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ConstrueStrategyTest {
+
+  private static final int INCLUDES = 20;
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void boundedStrategyLimitsParallelism() {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final BoundedConstrueStrategy strategy = new BoundedConstrueStrategy(3);
+
+    final List<CompletableFuture<Journal>> journals = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      journals.add(
+          strategy.construe(
+              () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                  Thread.sleep(5);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return Journal.newJournal()
+                    .sourceLocation(SourceLocation.EMPTY)
+                    .declarations(List.of())
+                    .build();
+              }));
+    }
+    CompletableFuture.allOf(journals.toArray(new CompletableFuture<?>[0])).join();
+
+    assertThat(maxRunning.get()).isBetween(1, 3);
+  }
+
+  @Test
+  public void virtualThreadsParseIncludesLikeSync() throws IOException {
+    final Path main = writeIncludeTree();
+
+    final Journal sync = Beancount.newBeancount().build().createJournalSync(main);
+    final Journal virtual =
+        Beancount.newBeancount()
+            .construeStrategy(new VirtualThreadConstrueStrategy())
+            .build()
+            .createJournalSync(main);
+
+    assertThat(includedJournals(virtual)).isEqualTo(includedJournals(sync)).isEqualTo(INCLUDES);
+  }
+
+  @Test
+  public void failedIncludeAbortsSiblings() throws IOException {
+    final Path main = writeIncludeTree();
+    Files.delete(tempDir.resolve("child-0.beancount"));
+    final List<ParseMetrics> parsed = new CopyOnWriteArrayList<>();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Beancount beancount =
+          Beancount.newBeancount()
+              .construeStrategy(new BoundedConstrueStrategy(1, executor))
+              .parserOptions(
+                  BeancountParserOptions.newBeancountParserOptions()
+                      .metricsListener(parsed::add)
+                      .build())
+              .build();
+
+      assertThatThrownBy(() -> beancount.createJournalSync(main))
+          .hasRootCauseInstanceOf(NoSuchFileException.class);
+      // The includes after the missing one were never parsed
+      assertThat(parsed).extracting(ParseMetrics::sourceName).containsExactly("main.beancount");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void executorParsesIncludes() throws IOException {
+    final Path main = writeIncludeTree();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Journal journal =
+          Beancount.newBeancount().executor(executor).build().createJournalSync(main);
+      assertThat(includedJournals(journal)).isEqualTo(INCLUDES);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private Path writeIncludeTree() throws IOException {
+    final StringBuilder main = new StringBuilder();
+    for (int i = 0; i < INCLUDES; i++) {
+      final String child = "child-" + i + ".beancount";
+      main.append("include \"").append(child).append("\"\n");
+      Files.writeString(
+          tempDir.resolve(child),
+          "2022-01-%02d open Assets:Child%d EUR\n".formatted(i % 28 + 1, i),
+          StandardCharsets.UTF_8);
+    }
+    final Path path = tempDir.resolve("main.beancount");
+    Files.writeString(path, main, StandardCharsets.UTF_8);
+    return path;
+  }
+
+  private static int includedJournals(Journal journal) {
+    int count = 0;
+    for (JournalDeclaration<?, ?> declaration : journal.declarations()) {
+      if (declaration instanceof IncludePragma include && include.journal() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
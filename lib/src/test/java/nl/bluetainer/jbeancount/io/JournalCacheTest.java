@@ -0,0 +1,110 @@
+package nl.bluetainer.jbeancount.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import nl.bluetainer.jbeancount.Beancount;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.ParseMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JournalCacheTest {
+
+  @TempDir Path tempDir;
+
+  private final List<ParseMetrics> parsed = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void parsesOnlyChangedFiles() throws IOException {
+    final Path main = write("main.beancount", "include \"2021.beancount\"\n");
+    write("2021.beancount", "2021-01-01 open Assets:Cash EUR\n");
+
+    final Journal cold = load(main);
+    assertThat(parsed).hasSize(2);
+
+    parsed.clear();
+    final Journal warm = load(main);
+    assertThat(parsed).isEmpty();
+    assertThat(print(warm)).isEqualTo(print(cold));
+
+    write("main.beancount", "include \"2021.beancount\"\n2022-01-01 close Assets:Cash\n");
+    parsed.clear();
+    load(main);
+    assertThat(parsed).extracting(ParseMetrics::sourceName).containsExactly("main.beancount");
+  }
+
+  @Test
+  public void usesEntriesOfFilesThatWereOnlyTouched() throws IOException {
+    final Path main = write("main.beancount", "2021-01-01 open Assets:Cash EUR\n");
+    load(main);
+
+    Files.setLastModifiedTime(main, FileTime.fromMillis(0));
+    parsed.clear();
+    load(main);
+
+    assertThat(parsed).isEmpty();
+  }
+
+  @Test
+  public void parsesFilesOfUnreadableEntriesAgain() throws IOException {
+    final Path main = write("main.beancount", "2021-01-01 open Assets:Cash EUR\n");
+    final Journal journal = load(main);
+    try (Stream<Path> entries = Files.list(tempDir.resolve("cache"))) {
+      for (Path entry : entries.toList()) {
+        Files.write(entry, new byte[] {1, 2, 3});
+      }
+    }
+
+    parsed.clear();
+    assertThat(print(load(main))).isEqualTo(print(journal));
+    assertThat(parsed).hasSize(1);
+  }
+
+  @Test
+  public void keepsAnEntryPerTreeRetention() throws IOException {
+    final Path main = write("main.beancount", "2021-01-01 open Assets:Cash EUR\n");
+    load(main, BeancountParserOptions.TreeRetention.FULL_TREE);
+
+    parsed.clear();
+    load(main, BeancountParserOptions.TreeRetention.PER_DECLARATION);
+    assertThat(parsed).hasSize(1);
+
+    parsed.clear();
+    load(main, BeancountParserOptions.TreeRetention.FULL_TREE);
+    load(main, BeancountParserOptions.TreeRetention.PER_DECLARATION);
+    assertThat(parsed).isEmpty();
+  }
+
+  private Journal load(Path path) {
+    return load(path, BeancountParserOptions.TreeRetention.FULL_TREE);
+  }
+
+  private Journal load(Path path, BeancountParserOptions.TreeRetention treeRetention) {
+    return Beancount.newBeancount()
+        .parserOptions(
+            BeancountParserOptions.newBeancountParserOptions()
+                .treeRetention(treeRetention)
+                .metricsListener(parsed::add)
+                .build())
+        .journalCache(JournalCache.newJournalCache(tempDir.resolve("cache")))
+        .build()
+        .createJournalSync(path);
+  }
+
+  private Path write(String name, String text) throws IOException {
+    return Files.writeString(tempDir.resolve(name), text, StandardCharsets.UTF_8);
+  }
+
+  private static String print(Journal journal) {
+    return SimpleBeancountPrinter.newDefaultPrinter().print(journal);
+  }
+}
@@ -0,0 +1,62 @@
+package nl.bluetainer.jbeancount.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.SymbolTable;
+import nl.bluetainer.jbeancount.parser.BeancountParser;
+import org.junit.jupiter.api.Test;
+
+public class JournalCodecTest {
+
+  @Test
+  public void decodesWhatWasEncoded() throws IOException {
+    final Journal journal = parseCorpus();
+    final byte[] bytes = JournalCodec.encode(journal);
+
+    final SymbolTable symbolTable = SymbolTable.newSymbolTable();
+    final Journal decoded = JournalCodec.decode(bytes, 0, bytes.length, symbolTable);
+
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(decoded)).isEqualTo(printer.print(journal));
+    assertThat(sourceLocations(decoded)).isEqualTo(sourceLocations(journal));
+    assertThat(JournalCodec.encode(decoded)).isEqualTo(bytes);
+    assertThat(symbolTable.accounts()).isNotEmpty();
+  }
+
+  @Test
+  public void rejectsTruncatedJournals() throws IOException {
+    final byte[] bytes = JournalCodec.encode(parseCorpus());
+    final byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+    assertThatThrownBy(
+            () ->
+                JournalCodec.decode(
+                    truncated, 0, truncated.length, SymbolTable.newSymbolTable()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Journal parseCorpus() throws IOException {
+    try (InputStream in =
+            Objects.requireNonNull(
+                BeancountParser.class.getResourceAsStream("warm-up.beancount"));
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return BeancountParser.newParser().parseJournal(reader);
+    }
+  }
+
+  private static List<SourceLocation> sourceLocations(Journal journal) {
+    return journal.declarations().stream().map(JournalDeclaration::sourceLocation).toList();
+  }
+}
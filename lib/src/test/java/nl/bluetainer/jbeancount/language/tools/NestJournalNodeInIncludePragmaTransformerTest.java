@@ -0,0 +1,68 @@
+package nl.bluetainer.jbeancount.language.tools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import nl.bluetainer.jbeancount.language.IncludePragma;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountParser;
+import org.junit.jupiter.api.Test;
+
+public class NestJournalNodeInIncludePragmaTransformerTest {
+
+  private static final String JOURNAL =
+      """
+      include "a.beancount"
+      2022-01-01 open Assets:Cash EUR
+      include "b.beancount"
+      2022-01-02 close Assets:Cash
+      """;
+
+  private final BeancountParser parser = BeancountParser.newParser();
+
+  @Test
+  public void splicesTheJournalsIntoThePragmasAtTheIndices() {
+    final Journal journal = parser.parseJournal(new StringReader(JOURNAL));
+    final Journal a = empty(journal);
+    final Journal b = empty(journal);
+
+    final Journal nested =
+        NestJournalNodeInIncludePragmaTransformer.splice(journal, new int[] {0, 2}, List.of(a, b));
+
+    assertThat(((IncludePragma) nested.declarations().get(0)).journal()).isSameAs(a);
+    assertThat(((IncludePragma) nested.declarations().get(2)).journal()).isSameAs(b);
+    assertThat(nested.declarations().get(1)).isSameAs(journal.declarations().get(1));
+    assertThat(nested.declarations().get(3)).isSameAs(journal.declarations().get(3));
+    assertThat(((IncludePragma) journal.declarations().get(0)).journal()).isNull();
+  }
+
+  @Test
+  public void nestsTheJournalsOfTheMappedPragmas() {
+    final Journal journal = parser.parseJournal(new StringReader(JOURNAL));
+    final Journal b = empty(journal);
+
+    final Journal nested =
+        NestJournalNodeInIncludePragmaTransformer.transform(
+            journal, Map.of((IncludePragma) journal.declarations().get(2), b));
+
+    assertThat(((IncludePragma) nested.declarations().get(0)).journal()).isNull();
+    assertThat(((IncludePragma) nested.declarations().get(2)).journal()).isSameAs(b);
+  }
+
+  @Test
+  public void rejectsAnIndexThatIsNotAnIncludePragma() {
+    final Journal journal = parser.parseJournal(new StringReader(JOURNAL));
+    final List<Journal> journals = List.of(empty(journal));
+
+    assertThatThrownBy(
+            () -> NestJournalNodeInIncludePragmaTransformer.splice(journal, new int[] {1}, journals))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Journal empty(Journal journal) {
+    return journal.transform(builder -> builder.declarations(List.of()));
+  }
+}
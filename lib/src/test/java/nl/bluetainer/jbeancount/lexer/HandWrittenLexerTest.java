@@ -0,0 +1,92 @@
+package nl.bluetainer.jbeancount.lexer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.parser.BeancountLexer;
+import nl.bluetainer.jbeancount.parser.BeancountParser;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions;
+import nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class HandWrittenLexerTest {
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "2022-01-01 2022/01/01 2022-01/01 1,000.00 1, 1. 12,3",
+        "EUR /ABC /1A /A1. A'B TRUE FALSE NULL TRUEX",
+        "open options option key: key-x_1: txn pushmeta custom",
+        "Assets:Cash Assets:Cash: Äpfel:Ünter Liabilities:日本 Assets:1a",
+        "#tag # #1/2.3 ^link * ! & ? % | ~ + - / ( ) : . , { {{ } }} @ @@",
+        "\"str\" \"a\\\"b\" \"multi\nline\"",
+        "; comment\n;\n2022-01-01 open Assets:Cash ; trailing  \n  key: TRUE\n",
+        "2022-01-01 * \"Narration\"  \n  Assets:Cash  1 EUR ;  \n\n  Assets:Bank\r\n\n",
+      })
+  public void sameTokensAsAntlrLexer(String input) {
+    assertSameTokens(input);
+  }
+
+  @Test
+  public void sameTokensAsAntlrLexerForWarmUpCorpus() throws IOException {
+    assertSameTokens(warmUpCorpus());
+  }
+
+  @Test
+  public void sameJournalAsAntlrLexer() throws IOException {
+    final String corpus = warmUpCorpus();
+    final Journal antlr = BeancountParser.newParser().parseJournal(new StringReader(corpus));
+    final Journal handWritten =
+        BeancountParser.newParser(
+                BeancountParserOptions.newBeancountParserOptions()
+                    .lexerImplementation(BeancountParserOptions.LexerImplementation.HAND_WRITTEN)
+                    .build())
+            .parseJournal(new StringReader(corpus));
+
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(handWritten)).isEqualTo(printer.print(antlr));
+  }
+
+  private static void assertSameTokens(String input) {
+    assertThat(tokens(new BeancountLexer(CharStreams.fromString(input))))
+        .containsExactlyElementsOf(tokens(new BeancountAntlrLexer(CharStreams.fromString(input))));
+  }
+
+  private static List<String> tokens(TokenSource tokenSource) {
+    final List<String> tokens = new ArrayList<>();
+    Token token;
+    do {
+      token = tokenSource.nextToken();
+      tokens.add(
+          String.format(
+              "%s %d:%d [%d..%d] %s",
+              BeancountAntlrLexer.VOCABULARY.getSymbolicName(token.getType()),
+              token.getLine(),
+              token.getCharPositionInLine(),
+              token.getStartIndex(),
+              token.getStopIndex(),
+              token.getText()));
+    } while (token.getType() != Token.EOF);
+    return tokens;
+  }
+
+  private static String warmUpCorpus() throws IOException {
+    try (InputStream inputStream =
+        BeancountParser.class.getResourceAsStream("warm-up.beancount")) {
+      assertThat(inputStream).isNotNull();
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Stream;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.OpenDirective;
+import nl.bluetainer.jbeancount.language.Posting;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+import org.junit.jupiter.api.Test;
+
+public class AnalyticsProfileTest {
+
+  private static final String JOURNAL =
+      """
+      ; Accounts
+      2022-01-01 open Assets:Cash EUR ; cash
+        ; Opened by hand
+        opened-by: "someone"
+
+      2022-01-02 * "Bakery" "Bread" ; breakfast
+        Assets:Cash  -3.50 EUR ; paid
+        ; Split later
+        Expenses:Food
+      """;
+
+  private final BeancountParser parser =
+      BeancountParser.newParser(
+          BeancountParserOptions.newBeancountParserOptions()
+              .profile(BeancountParserOptions.Profile.ANALYTICS)
+              .build());
+
+  @Test
+  public void triviaIsNotCreated() {
+    final Journal journal = parser.parseJournal(new StringReader(JOURNAL));
+    assertThat(journal.sourceLocation()).isSameAs(SourceLocation.EMPTY);
+    assertThat(journal.declarations()).hasSize(2);
+
+    final OpenDirective open = (OpenDirective) journal.declarations().get(0);
+    assertThat(open.comment()).isNull();
+    assertThat(open.metadata().metadata()).hasSize(1);
+    assertThat(open.sourceLocation()).isSameAs(SourceLocation.EMPTY);
+
+    final TransactionDirective txn = (TransactionDirective) journal.declarations().get(1);
+    assertThat(txn.comment()).isNull();
+    assertThat(txn.postings())
+        .extracting(posting -> posting.account().account())
+        .containsExactly("Assets:Cash", "Expenses:Food");
+    assertThat(txn.postings()).extracting(Posting::comment).containsOnlyNulls();
+  }
+
+  @Test
+  public void streamedTriviaIsNotCreated() {
+    final List<JournalDeclaration<?, ?>> declarations;
+    try (Stream<JournalDeclaration<?, ?>> stream =
+        parser.streamJournal(new StringReader(JOURNAL))) {
+      declarations = stream.toList();
+    }
+    assertThat(declarations)
+        .hasExactlyElementsOfTypes(OpenDirective.class, TransactionDirective.class);
+  }
+}
@@ -0,0 +1,97 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class ByteScannerTest {
+
+  private static final String JOURNAL =
+      """
+      2022-01-01 open Assets:Café EUR ; ¡Olé!
+      2022-01-02 * "Bäckerei 😀" "日本"
+        Assets:Café  -3.50 EUR
+        Expenses:Food
+
+      """;
+
+  private final ByteScanner scanner = ByteScanner.get();
+  private final ByteScanner scalar = ByteScanner.scalar();
+
+  @Test
+  public void testsRunWithTheVectorModule() {
+    // By name, the tests are compiled without the module
+    assertThat(scanner.getClass().getName())
+        .isEqualTo("nl.bluetainer.jbeancount.parser.VectorByteScanner");
+  }
+
+  @Test
+  public void findsBytesLikeTheScalarScanner() {
+    // Long enough for several vectors, and not a multiple of any vector length
+    final byte[] bytes = JOURNAL.repeat(20).getBytes(StandardCharsets.UTF_8);
+    final MemorySegment segment = MemorySegment.ofArray(bytes);
+    for (int from = 0; from < bytes.length; from += 7) {
+      for (int to = from; to <= bytes.length; to += 61) {
+        assertThat(scanner.indexOfAny(segment, from, to, (byte) '"', (byte) ';', (byte) '\n'))
+            .isEqualTo(scalar.indexOfAny(segment, from, to, (byte) '"', (byte) ';', (byte) '\n'));
+        // The first byte of a four byte code point
+        assertThat(scanner.indexOf(segment, from, to, (byte) 0xF0))
+            .isEqualTo(scalar.indexOf(segment, from, to, (byte) 0xF0));
+        assertThat(scanner.countCodePoints(segment, from, to))
+            .isEqualTo(scalar.countCodePoints(segment, from, to));
+      }
+    }
+  }
+
+  @Test
+  public void countsCodePoints() {
+    final byte[] bytes = JOURNAL.repeat(3).getBytes(StandardCharsets.UTF_8);
+    assertThat(scanner.countCodePoints(MemorySegment.ofArray(bytes), 0, bytes.length))
+        .isEqualTo(JOURNAL.repeat(3).codePointCount(0, JOURNAL.length() * 3));
+  }
+
+  @Test
+  public void countsArbitraryBytesLikeTheScalarScanner() {
+    final byte[] bytes = new byte[1000];
+    new Random(42).nextBytes(bytes);
+    final MemorySegment segment = MemorySegment.ofArray(bytes);
+    assertThat(scanner.countCodePoints(segment, 3, bytes.length))
+        .isEqualTo(scalar.countCodePoints(segment, 3, bytes.length));
+    assertThat(scanner.indexOfAny(segment, 0, bytes.length, (byte) 0x80, (byte) -1, (byte) 0))
+        .isEqualTo(scalar.indexOfAny(segment, 0, bytes.length, (byte) 0x80, (byte) -1, (byte) 0));
+  }
+
+  @Test
+  public void reportsLineStartsOutsideStrings() {
+    final byte[] bytes =
+        "a \"multi\nline\" ; \"no string\nb \"escaped \\\" quote\nc\"\nd\n"
+            .getBytes(StandardCharsets.UTF_8);
+    final List<Long> lineStarts = new ArrayList<>();
+    final List<Integer> lines = new ArrayList<>();
+
+    final boolean endsInString =
+        scanner.scanLineStarts(
+            MemorySegment.ofArray(bytes),
+            false,
+            (offset, line) -> {
+              lineStarts.add(offset);
+              lines.add(line);
+            });
+
+    assertThat(endsInString).isFalse();
+    assertThat(lineStarts)
+        .extracting(offset -> (char) bytes[offset.intValue()])
+        .containsExactly('b', 'd');
+    assertThat(lines).containsExactly(3, 5);
+    // The rest of a string that started before the segment
+    final MemorySegment rest =
+        MemorySegment.ofArray("line\nof a string\n".getBytes(StandardCharsets.UTF_8));
+    assertThat(scanner.scanLineStarts(rest, true, (offset, line) -> lines.add(line))).isTrue();
+    assertThat(lines).containsExactly(3, 5);
+  }
+}
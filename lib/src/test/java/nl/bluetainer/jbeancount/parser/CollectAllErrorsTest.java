@@ -0,0 +1,82 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CollectAllErrorsTest {
+
+  private static final String JOURNAL =
+      """
+      2022-01-01 open Assets:Cash EUR
+      2022-01-02 open open
+      2022-01-03 open Assets:Bank EUR
+      2022-01-04 balance Assets:Cash
+      2022-01-05 open Assets:Food EUR
+      """;
+
+  private static final BeancountParser PARSER =
+      BeancountParser.newParser(
+          BeancountParserOptions.newBeancountParserOptions()
+              .syntaxErrorHandling(BeancountParserOptions.SyntaxErrorHandling.COLLECT_ALL)
+              .build());
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void failFastReportsTheFirstError() {
+    final InvalidSyntaxException e =
+        catchThrowableOfType(
+            InvalidSyntaxException.class,
+            () -> BeancountParser.newParser().parseJournal(new StringReader(JOURNAL)));
+    assertThat(e).isNotInstanceOf(InvalidSyntaxErrorsException.class);
+    assertThat(e.getSourceLocation().line()).isEqualTo(2);
+    assertThat(e.getPreview())
+        .startsWith("1 | 2022-01-01 open Assets:Cash EUR\n2 | 2022-01-02 open open\n")
+        .contains("^ error location");
+  }
+
+  @Test
+  public void collectsEveryError() {
+    assertErrorsOnLines(
+        catchThrowableOfType(
+            InvalidSyntaxErrorsException.class,
+            () -> PARSER.parseJournal(new StringReader(JOURNAL))));
+  }
+
+  @Test
+  public void collectsEveryErrorOfAllChunks() throws IOException {
+    final Path file = tempDir.resolve("errors.beancount");
+    Files.writeString(file, JOURNAL, StandardCharsets.UTF_8);
+    assertThat(JournalChunker.split(Files.readAllBytes(file), 1)).hasSizeGreaterThan(1);
+    assertErrorsOnLines(
+        catchThrowableOfType(
+            InvalidSyntaxErrorsException.class,
+            () -> PARSER.parseJournalParallel(file, ForkJoinPool.commonPool(), 1)));
+  }
+
+  @Test
+  public void collectsEveryErrorWhileStreaming() {
+    try (Stream<JournalDeclaration<?, ?>> stream =
+        PARSER.streamJournal(new StringReader(JOURNAL))) {
+      assertErrorsOnLines(catchThrowableOfType(InvalidSyntaxErrorsException.class, stream::toList));
+    }
+  }
+
+  private static void assertErrorsOnLines(InvalidSyntaxErrorsException e) {
+    assertThat(e).isNotNull();
+    assertThat(e.getSourceLocation().line()).isEqualTo(2);
+    assertThat(e.getErrors().stream().map(error -> error.getSourceLocation().line()).distinct())
+        .containsExactly(2, 4);
+  }
+}
@@ -0,0 +1,49 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static nl.bluetainer.jbeancount.parser.antlr.BeancountAntlrLexer.DATE;
+import static nl.bluetainer.jbeancount.testing.TestUtil.assertToLanguage;
+import static nl.bluetainer.jbeancount.testing.TestUtil.assertToLanguageThrows;
+import static nl.bluetainer.jbeancount.testing.TestUtil.t;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class DateParseTest {
+
+  @ParameterizedTest
+  @CsvSource(
+      textBlock =
+          """
+          '2022-01-01', '2022-01-01'
+          '2022/12/31', '2022-12-31'
+          '0001-02-03', '0001-02-03'
+          '2024-02-29', '2024-02-29'
+          '2023/02/31', '2023-02-28'
+          '2024/04/31', '2024-04-30'
+          """)
+  public void assertToLanguageDateParses(String dateString, String targetValue) {
+    assertToLanguage(antlr -> antlr.parseDateToken(t(DATE, dateString)))
+        .isEqualTo(LocalDate.parse(targetValue));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2023-02-29", "2022-13-01", "2022-00-10", "2022-01-32", "2022/01/32"})
+  public void assertToLanguageDateFails(String dateString) {
+    assertToLanguageThrows(antlr -> antlr.parseDateToken(t(DATE, dateString)))
+        .isInstanceOf(DateTimeException.class);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"2023-02-28", "2023/02/31"})
+  public void cachedDatesAreNotMixedUp(String first) {
+    final TokenValueParser parser = new TokenValueParser();
+    parser.parseDate(first);
+    assertThat(parser.parseDate("2023-02-28")).isEqualTo(LocalDate.of(2023, 2, 28));
+    assertThat(parser.parseDate("2023/02/31")).isEqualTo(LocalDate.of(2023, 2, 28));
+    assertThat(parser.parseDate("2023-03-01")).isEqualTo(LocalDate.of(2023, 3, 1));
+  }
+}
@@ -0,0 +1,121 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.OptionPragma;
+import nl.bluetainer.jbeancount.language.PriceDirective;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+import org.junit.jupiter.api.Test;
+
+public class DeclarationFilterTest {
+
+  private static final String JOURNAL =
+      """
+      ; Prices and spending
+      option "title" "Filtered"
+
+      2022-01-01 open Assets:Cash EUR
+      2022-01-01 open Expenses:Food
+      2022-01-02 price HOOL 100.00 EUR
+      2022-01-02 * "Bakery" "Bread"
+        Assets:Cash  -3.50 EUR
+        Expenses:Food
+
+      2022-02-01 price HOOL 110.00 EUR ; up
+      2022-02-03 txn "Rent"
+        Assets:Bank  -500.00 EUR
+        Expenses:Rent
+      2022-03-01 price HOOL 120.00 EUR
+      2022-03-04 * "Bakery" "Cake" ; "quoted"
+        Expenses:Food  4.00 EUR
+        Assets:Cash
+      """;
+
+  @Test
+  public void keepsDirectivesOfTheGivenTypesAndDates() {
+    final Journal journal =
+        parse(
+            DeclarationFilter.newDeclarationFilter()
+                .directiveTypes(Set.of(PriceDirective.class))
+                .from(LocalDate.of(2022, 2, 1))
+                .until(LocalDate.of(2022, 3, 1))
+                .build());
+
+    assertThat(journal.declarations())
+        .hasExactlyElementsOfTypes(OptionPragma.class, PriceDirective.class);
+    final PriceDirective price = (PriceDirective) journal.declarations().get(1);
+    assertThat(price.date()).isEqualTo(LocalDate.of(2022, 2, 1));
+  }
+
+  @Test
+  public void keepsDirectivesWithAnAccountWithThePrefix() {
+    final Journal journal =
+        parse(DeclarationFilter.newDeclarationFilter().accountPrefix("Assets:Cash").build());
+
+    assertThat(journal.declarations())
+        .filteredOn(TransactionDirective.class::isInstance)
+        .extracting(declaration -> ((TransactionDirective) declaration).date())
+        .containsExactly(LocalDate.of(2022, 1, 2), LocalDate.of(2022, 3, 4));
+    assertThat(journal.declarations()).hasSize(4);
+  }
+
+  @Test
+  public void filteredDeclarationsAreParsedLikeAllDeclarations() {
+    final DeclarationFilter filter =
+        DeclarationFilter.newDeclarationFilter().from(LocalDate.of(2022, 2, 2)).build();
+    final Journal all = BeancountParser.newParser().parseJournal(new StringReader(JOURNAL));
+    final Journal filtered = parse(filter);
+
+    assertThat(describe(filtered.declarations()))
+        .isNotEmpty()
+        .containsExactlyElementsOf(
+            describe(all.declarations().stream().filter(filter::test).toList()));
+  }
+
+  @Test
+  public void skippedDeclarationsAreNotLexed() {
+    final String journal =
+        """
+        2021-12-31 price HOOL 90.00 EUR
+        2021-12-31 custom "broken" {{
+        2022-01-01 price HOOL 100.00 EUR
+        """;
+    final Journal filtered =
+        BeancountParser.newParser(
+                BeancountParserOptions.newBeancountParserOptions()
+                    .declarationFilter(
+                        DeclarationFilter.newDeclarationFilter()
+                            .from(LocalDate.of(2022, 1, 1))
+                            .build())
+                    .build())
+            .parseJournal(new StringReader(journal));
+
+    assertThat(filtered.declarations()).hasExactlyElementsOfTypes(PriceDirective.class);
+  }
+
+  private static Journal parse(DeclarationFilter filter) {
+    return BeancountParser.newParser(
+            BeancountParserOptions.newBeancountParserOptions().declarationFilter(filter).build())
+        .parseJournal(new StringReader(JOURNAL));
+  }
+
+  private static List<String> describe(List<JournalDeclaration<?, ?>> declarations) {
+    return declarations.stream()
+        .map(
+            declaration ->
+                declaration.getClass().getSimpleName()
+                    + " "
+                    + declaration.sourceLocation()
+                    + " "
+                    + declaration.sourceLocation().startOffset()
+                    + "-"
+                    + declaration.sourceLocation().endOffset())
+        .toList();
+  }
+}
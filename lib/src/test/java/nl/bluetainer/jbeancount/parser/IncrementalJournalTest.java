@@ -0,0 +1,157 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Objects;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+import org.junit.jupiter.api.Test;
+
+public class IncrementalJournalTest {
+
+  private static final String JOURNAL =
+      """
+      option "title" "Incremental"
+      2022-01-01 open Assets:Cash EUR ; cash
+        opened-by: "someone"
+
+      ; A comment at the top level
+      2022-01-02 * "Bakery" "Bread"
+        Assets:Cash  -3.50 EUR ; paid
+        Expenses:Food
+      2022-01-03 balance Assets:Cash -3.50 EUR
+      """;
+
+  private static final String SOURCE_NAME = "edited.beancount";
+
+  private final BeancountParser parser = BeancountParser.newParser();
+
+  @Test
+  public void editsParseLikeTheWholeText() {
+    IncrementalJournal journal = IncrementalJournal.parse(parser, JOURNAL, SOURCE_NAME);
+    assertSameAsFullParse(journal);
+
+    journal = edit(journal, "-3.50 EUR ;", "-4.50 EUR ;");
+    journal = edit(journal, "option", "\n\noption");
+    journal = edit(journal, "  Expenses:Food\n", "  Expenses:Food\n  Expenses:Tax  0.10 EUR\n");
+    journal = journal.edit(TextEdit.insert(journal.length(), "2022-01-04 close Assets:Cash\n"));
+    assertSameAsFullParse(journal);
+    // Joins the comment line with the open directive's metadata
+    journal = edit(journal, "\"someone\"\n\n", "\"someone\"\n");
+    journal = edit(journal, "2022-01-03 balance Assets:Cash -3.50 EUR\n", "");
+    journal = journal.edit(TextEdit.remove(0, journal.length()));
+    assertThat(journal.journal().declarations()).isEmpty();
+    assertThat(journal.text()).isEmpty();
+    journal = journal.edit(TextEdit.insert(0, JOURNAL));
+    assertSameAsFullParse(journal);
+  }
+
+  @Test
+  public void untouchedDeclarationsAreReused() {
+    final IncrementalJournal before = IncrementalJournal.parse(parser, JOURNAL, SOURCE_NAME);
+    final IncrementalJournal after = edit(before, "\"Bread\"", "\"Buns\"");
+
+    final List<JournalDeclaration<?, ?>> b = before.journal().declarations();
+    final List<JournalDeclaration<?, ?>> a = after.journal().declarations();
+    assertThat(a).hasSameSizeAs(b);
+    // The option pragma and the balance directive are neither edited nor next to the edit
+    assertThat(a.get(0)).isSameAs(b.get(0));
+    assertThat(a.get(a.size() - 1)).isSameAs(b.get(b.size() - 1));
+    assertThat(a)
+        .filteredOn(TransactionDirective.class::isInstance)
+        .map(declaration -> ((TransactionDirective) declaration).narration())
+        .containsExactly("Buns");
+  }
+
+  @Test
+  public void movedDeclarationsAreReused() {
+    final IncrementalJournal parsed = IncrementalJournal.parse(parser, JOURNAL, SOURCE_NAME);
+    final IncrementalJournal moved = edit(parsed, "option", "\noption");
+    final IncrementalJournal after = edit(moved, "\"Bread\"", "\"Buns\"");
+
+    final List<JournalDeclaration<?, ?>> m = moved.journal().declarations();
+    final List<JournalDeclaration<?, ?>> a = after.journal().declarations();
+    assertThat(m.get(m.size() - 1).sourceLocation().line())
+        .isEqualTo(parsed.journal().declarations().get(m.size() - 1).sourceLocation().line() + 1);
+    // Moved once, by the retrieval from the journal it was moved in
+    assertThat(a.get(a.size() - 1)).isSameAs(m.get(m.size() - 1));
+  }
+
+  @Test
+  public void unterminatedStringReachesIntoLaterDeclarations() {
+    final IncrementalJournal journal = IncrementalJournal.parse(parser, JOURNAL, SOURCE_NAME);
+    final int offset = journal.text().indexOf("\"Bakery\"");
+    assertThatThrownBy(() -> journal.edit(TextEdit.remove(offset + 7, 1)))
+        .isInstanceOf(InvalidSyntaxException.class);
+    // A failed edit leaves the journal as it was
+    assertSameAsFullParse(edit(journal, "Bakery", "Baker"));
+  }
+
+  @Test
+  public void keepsTagPragmasInTheirPlace() {
+    final String text =
+        """
+        2022-01-01 open Assets:Cash EUR
+        pushtag #trip
+        2022-01-02 * "Bakery" "Bread"
+          Assets:Cash  -3.50 EUR
+          Expenses:Food
+        poptag #trip
+        2022-01-03 balance Assets:Cash -3.50 EUR
+        """;
+    IncrementalJournal journal = IncrementalJournal.parse(parser, text, SOURCE_NAME);
+    assertSameAsFullParse(journal);
+
+    // Parses the pushtag pragma again along with the transaction after it
+    journal = edit(journal, "\"Bread\"", "\"Buns\"");
+    journal = edit(journal, "pushtag #trip", "pushtag #holiday");
+    journal = edit(journal, "poptag #trip", "poptag #holiday");
+    journal = edit(journal, "2022-01-03 balance", "2022-01-04 balance");
+    journal = edit(journal, "poptag #holiday\n", "");
+  }
+
+  private IncrementalJournal edit(IncrementalJournal journal, String target, String replacement) {
+    final int offset = journal.text().indexOf(target);
+    assertThat(offset).isNotNegative();
+    final IncrementalJournal edited =
+        journal.edit(new TextEdit(offset, target.length(), replacement));
+    assertSameAsFullParse(edited);
+    return edited;
+  }
+
+  private void assertSameAsFullParse(IncrementalJournal journal) {
+    final Journal expected = parser.parseFragment(journal.text(), SOURCE_NAME, 0, 0);
+    final Journal actual = journal.journal();
+    assertThat(actual.declarations())
+        .map(IncrementalJournalTest::sourceLocation)
+        .containsExactlyElementsOf(
+            expected.declarations().stream().map(IncrementalJournalTest::sourceLocation).toList());
+    assertThat(actual.declarations())
+        .map(IncrementalJournalTest::startOffset)
+        .containsExactlyElementsOf(
+            expected.declarations().stream().map(IncrementalJournalTest::startOffset).toList());
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(withoutTagPragmas(actual)))
+        .isEqualTo(printer.print(withoutTagPragmas(expected)));
+  }
+
+  private static SourceLocation sourceLocation(JournalDeclaration<?, ?> declaration) {
+    return declaration == null ? null : declaration.sourceLocation();
+  }
+
+  private static Integer startOffset(JournalDeclaration<?, ?> declaration) {
+    return declaration == null ? null : declaration.sourceLocation().startOffset();
+  }
+
+  /** Pushtag and poptag pragmas are null declarations, which the printer cannot print. */
+  private static Journal withoutTagPragmas(Journal journal) {
+    final List<JournalDeclaration<?, ?>> declarations =
+        journal.declarations().stream().filter(Objects::nonNull).toList();
+    return journal.transform(builder -> builder.declarations(declarations));
+  }
+}
@@ -0,0 +1,95 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JournalIndexTest {
+
+  private static final String JOURNAL =
+      """
+      ; Café
+      option "title" "Index"
+      include "prices/2022.beancount"
+
+      2022-01-01 open Assets:Café EUR
+      2022-01-02 * "Bäckerei" "Not a declaration:
+      2022-01-03 open Assets:Bank
+      "
+        Assets:Café  -3.50 EUR
+        Expenses:Food
+      ; 2022-01-04 close Assets:Café
+      2022/02/31 note Assets:Café "Leniently dated"
+      2022-03-01 price HOOL 100.00 EUR
+      """;
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void indexesTopLevelDeclarations() {
+    final byte[] bytes = JOURNAL.getBytes(StandardCharsets.UTF_8);
+    final JournalIndex index = JournalIndex.scan(bytes);
+
+    assertThat(index.size()).isEqualTo(6);
+    assertThat(IntStream.range(0, index.size()).mapToObj(index::kind))
+        .containsExactly(
+            JournalIndex.Kind.OPTION,
+            JournalIndex.Kind.INCLUDE,
+            JournalIndex.Kind.OPEN,
+            JournalIndex.Kind.TRANSACTION,
+            JournalIndex.Kind.NOTE,
+            JournalIndex.Kind.PRICE);
+    assertThat(IntStream.range(0, index.size()).map(index::line))
+        .containsExactly(2, 3, 5, 6, 12, 13);
+    assertThat(IntStream.range(0, index.size()).mapToObj(index::date))
+        .containsExactly(
+            null,
+            null,
+            LocalDate.of(2022, 1, 1),
+            LocalDate.of(2022, 1, 2),
+            LocalDate.of(2022, 2, 28),
+            LocalDate.of(2022, 3, 1));
+    assertThat(index.includeFilename(1)).isEqualTo("prices/2022.beancount");
+    assertThat(index.includeFilename(2)).isNull();
+    assertThat(index.includeFilenames()).containsExactly("prices/2022.beancount");
+
+    assertThat(index.startOffset(3)).isEqualTo(JOURNAL.indexOf("2022-01-02 *"));
+    assertThat(index.endOffset(5)).isEqualTo(bytes.length);
+    assertThat(index.startCodePointOffset(3))
+        .isEqualTo(JOURNAL.codePointCount(0, JOURNAL.indexOf("2022-01-02 *")));
+  }
+
+  @Test
+  public void parsesSlicesLikeTheEntireFile() throws IOException {
+    final Path file = tempDir.resolve("index.beancount");
+    Files.writeString(file, JOURNAL, StandardCharsets.UTF_8);
+    final JournalIndex index = JournalIndex.scan(file);
+    final BeancountParser parser = BeancountParser.newParser();
+
+    final Journal all = parser.parseJournal(file);
+    final Journal slice = parser.parseJournal(file, index, 3, 5);
+
+    final JournalDeclaration<?, ?> transaction = slice.declarations().get(0);
+    final JournalDeclaration<?, ?> expected =
+        all.declarations().stream()
+            .filter(declaration -> declaration.sourceLocation().line() == 6)
+            .findFirst()
+            .orElseThrow();
+    assertThat(transaction.getClass()).isEqualTo(expected.getClass());
+    assertThat(transaction.sourceLocation()).isEqualTo(expected.sourceLocation());
+    assertThat(transaction.sourceLocation().startOffset())
+        .isEqualTo(expected.sourceLocation().startOffset());
+    assertThat(transaction.sourceLocation().endOffset())
+        .isEqualTo(expected.sourceLocation().endOffset());
+    assertThat(parser.parseJournal(file, index, 2, 2).declarations()).isEmpty();
+  }
+}
@@ -0,0 +1,119 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedUtf8CharStreamTest {
+
+  private static final String JOURNAL =
+      """
+      2022-01-01 open Assets:Café EUR ; ¡Olé!
+      2022-01-02 * "Bäckerei 😀" "日本"
+        Assets:Café  -3.50 EUR
+        Expenses:Food
+      """;
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void decodesLikeCharStreams() throws IOException {
+    // Large enough to need more than one block of code point offsets
+    final String text = JOURNAL.repeat(200);
+    final Path file = write(text);
+    final CharStream expected = CharStreams.fromString(text);
+    try (Arena arena = Arena.ofConfined()) {
+      final CharStream actual = MappedUtf8CharStream.open(file, arena);
+      assertThat(actual.size()).isEqualTo(expected.size());
+      while (expected.LA(1) != IntStream.EOF) {
+        assertThat(actual.LA(1)).isEqualTo(expected.LA(1));
+        assertThat(actual.LA(3)).isEqualTo(expected.LA(3));
+        assertThat(actual.LA(-1)).isEqualTo(expected.LA(-1));
+        actual.consume();
+        expected.consume();
+      }
+      assertThat(actual.LA(1)).isEqualTo(IntStream.EOF);
+
+      actual.seek(MappedUtf8CharStream.BLOCK + 7);
+      expected.seek(MappedUtf8CharStream.BLOCK + 7);
+      assertThat(actual.LA(1)).isEqualTo(expected.LA(1));
+      assertThat(actual.getText(Interval.of(40, 90)))
+          .isEqualTo(expected.getText(Interval.of(40, 90)));
+      assertThat(actual.getText(Interval.of(0, actual.size()))).isEqualTo(text);
+    }
+  }
+
+  @Test
+  public void replacesMalformedUtf8LikeCharStreams() throws IOException {
+    final int[][] malformed = {
+      // Overlong encodings
+      {0xC0, 0xAF},
+      {0xE0, 0x80, 0xAF},
+      {0xE0, 0x9F, 0xBF},
+      {0xF0, 0x80, 0x80, 0xAF},
+      {0xF0, 0x8F, 0xBF, 0xBF},
+      // UTF-16 surrogates
+      {0xED, 0xA0, 0x80},
+      {0xED, 0xBF, 0xBF},
+      // Above U+10FFFF
+      {0xF4, 0x90, 0x80, 0x80},
+      {0xF5, 0x80, 0x80, 0x80},
+      // Incomplete sequences and stray continuation bytes
+      {0xE2, 0x82, 0x41},
+      {0xF0, 0x9F, 0x98, 0x41},
+      {0xED, 0xA0, 0x41},
+      {0x80, 0xBF, 0x41},
+      {0xF1, 0x80}
+    };
+    for (int[] bytes : malformed) {
+      final byte[] content = new byte[bytes.length + 2];
+      content[0] = '"';
+      for (int i = 0; i < bytes.length; i++) {
+        content[i + 1] = (byte) bytes[i];
+      }
+      content[content.length - 1] = '"';
+      final Path file = tempDir.resolve("malformed.beancount");
+      Files.write(file, content);
+      final CharStream expected = CharStreams.fromPath(file);
+      try (Arena arena = Arena.ofConfined()) {
+        final CharStream actual = MappedUtf8CharStream.open(file, arena);
+        assertThat(actual.size()).isEqualTo(expected.size());
+        assertThat(actual.getText(Interval.of(0, actual.size() - 1)))
+            .isEqualTo(expected.getText(Interval.of(0, expected.size() - 1)));
+      }
+    }
+  }
+
+  @Test
+  public void memoryMappedParseEqualsDecodedParse() throws IOException {
+    final Path file = write(JOURNAL);
+    final Journal decoded = BeancountParser.newParser().parseJournal(file);
+    final Journal mapped =
+        BeancountParser.newParser(
+                BeancountParserOptions.newBeancountParserOptions()
+                    .inputMode(BeancountParserOptions.InputMode.MEMORY_MAPPED)
+                    .build())
+            .parseJournal(file);
+
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(mapped)).isEqualTo(printer.print(decoded));
+  }
+
+  private Path write(String text) throws IOException {
+    final Path file = tempDir.resolve("mapped.beancount");
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+    return file;
+  }
+}
@@ -23,6 +23,12 @@ public class NumberParseTest {
           '123.',      '123'
           '123',       '123'
           '1,2.3',     '12.3'
+          '0.000',     '0.000'
+          '007.50',    '7.50'
+          '999999999999999999', '999999999999999999'
+          '1234567890123456789', '1234567890123456789'
+          '123,456,789,012,345,678.901234', '123456789012345678.901234'
+          '0.0000000000000000000001', '0.0000000000000000000001'
           """)
   public void assertToLanguageNumberParses(String numberString, String targetValue) {
     assertToLanguage(antlr -> antlr.parseNumberToken(t(NUMBER, numberString)))
@@ -0,0 +1,68 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParallelParseTest {
+
+  private static final String JOURNAL_PART =
+      """
+      option "title" "Parallel"
+      ; A comment at the top level
+      2022-01-01 open Assets:Cash EUR
+        opened-by: "someone"
+      2022-01-02 * "Payee" "A multiline narration
+      2022-01-03 is not a directive"
+        Assets:Cash  -10.00 EUR ; "quoted comment
+        Expenses:Food
+      2022-01-04 price EUR 1.10 USD
+
+      ; Trailing comment
+      """;
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void chunkedParseEqualsSequentialParse() throws IOException {
+    final Path file = tempDir.resolve("parallel.beancount");
+    Files.writeString(file, JOURNAL_PART.repeat(50), StandardCharsets.UTF_8);
+
+    final BeancountParser parser = BeancountParser.newParser();
+    final Journal sequential = parser.parseJournal(file);
+    final Journal parallel = parser.parseJournalParallel(file, ForkJoinPool.commonPool(), 100);
+
+    assertThat(JournalChunker.split(Files.readAllBytes(file), 100)).hasSizeGreaterThan(1);
+    assertThat(parallel.declarations())
+        .map(JournalDeclaration::sourceLocation)
+        .containsExactlyElementsOf(
+            sequential.declarations().stream().map(JournalDeclaration::sourceLocation).toList());
+    assertThat(parallel.declarations())
+        .map(declaration -> declaration.sourceLocation().endOffset())
+        .containsExactlyElementsOf(
+            sequential.declarations().stream()
+                .map(declaration -> declaration.sourceLocation().endOffset())
+                .toList());
+    assertThat(parallel.sourceLocation().endOffset())
+        .isEqualTo(sequential.sourceLocation().endOffset());
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(parallel)).isEqualTo(printer.print(sequential));
+  }
+
+  @Test
+  public void chunksNeverStartInsideStrings() {
+    final byte[] bytes = JOURNAL_PART.getBytes(StandardCharsets.UTF_8);
+    assertThat(JournalChunker.split(bytes, 1))
+        .map(chunk -> new String(bytes, chunk.startOffset(), 10, StandardCharsets.UTF_8))
+        .containsExactly("option \"ti", "2022-01-01", "2022-01-02", "2022-01-04");
+  }
+}
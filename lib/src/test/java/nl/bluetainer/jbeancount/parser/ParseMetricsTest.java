@@ -0,0 +1,91 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import nl.bluetainer.jbeancount.Beancount;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParseMetricsTest {
+
+  private static final String JOURNAL =
+      """
+      2022-01-01 open Assets:Cash EUR
+      2022-01-02 * "Bakery"
+        Assets:Cash  -3.50 EUR
+        Expenses:Food
+      """;
+
+  @TempDir Path tempDir;
+
+  private final List<ParseMetrics> parsed = new ArrayList<>();
+  private final List<String> includesResolved = new ArrayList<>();
+
+  private final BeancountParserOptions options =
+      BeancountParserOptions.newBeancountParserOptions()
+          .metricsListener(
+              new ParseMetricsListener() {
+                @Override
+                public synchronized void parsed(ParseMetrics metrics) {
+                  parsed.add(metrics);
+                }
+
+                @Override
+                public synchronized void includesResolved(Path path, int includes, long nanos) {
+                  assertThat(nanos).isNotNegative();
+                  includesResolved.add(path.getFileName() + " " + includes);
+                }
+              })
+          .build();
+
+  @Test
+  public void reportsEveryParse() throws IOException {
+    final Path file = tempDir.resolve("metrics.beancount");
+    Files.writeString(file, JOURNAL, StandardCharsets.UTF_8);
+    final BeancountParser parser = BeancountParser.newParser(options);
+
+    parser.parseJournal(new StringReader(JOURNAL));
+    parser.parseJournal(file);
+    try (Stream<JournalDeclaration<?, ?>> stream = parser.streamJournal(file)) {
+      assertThat(stream.count()).isEqualTo(2);
+    }
+
+    assertThat(parsed).hasSize(3);
+    assertThat(parsed.get(0).sourceName()).isNull();
+    assertThat(parsed.get(0).bytes()).isEqualTo(-1);
+    for (ParseMetrics metrics : parsed.subList(1, 3)) {
+      assertThat(metrics.sourceName()).isEqualTo("metrics.beancount");
+      assertThat(metrics.bytes()).isEqualTo(Files.size(file));
+    }
+    for (ParseMetrics metrics : parsed) {
+      assertThat(metrics.tokens()).isEqualTo(parsed.get(0).tokens()).isGreaterThan(10);
+      assertThat(metrics.lexingNanos()).isPositive();
+      assertThat(metrics.parsingNanos()).isPositive();
+      assertThat(metrics.conversionNanos()).isPositive();
+    }
+  }
+
+  @Test
+  public void reportsIncludedFiles() throws IOException {
+    final Path main = tempDir.resolve("main.beancount");
+    Files.writeString(main, "include \"included.beancount\"\n", StandardCharsets.UTF_8);
+    Files.writeString(tempDir.resolve("included.beancount"), JOURNAL, StandardCharsets.UTF_8);
+
+    Beancount.newBeancount().parserOptions(options).build().createJournalSync(main);
+
+    assertThat(parsed)
+        .extracting(ParseMetrics::sourceName)
+        .containsExactlyInAnyOrder("main.beancount", "included.beancount");
+    assertThat(includesResolved)
+        .containsExactlyInAnyOrder("main.beancount 1", "included.beancount 0");
+  }
+}
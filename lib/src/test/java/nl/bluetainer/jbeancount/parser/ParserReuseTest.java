@@ -0,0 +1,94 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class ParserReuseTest {
+
+  private static final String[] JOURNALS = {
+    """
+    2022-01-01 open Assets:Cash EUR
+      opened-by: "someone"
+    """,
+    """
+    2022-01-02 * "Bakery" "Bread"
+      Assets:Cash  -3.50 EUR
+      Expenses:Food
+    """,
+    """
+    ; Only a comment
+
+    """,
+    """
+    2022-01-03 balance Assets:Cash -3.50 EUR
+    """
+  };
+
+  @ParameterizedTest
+  @EnumSource(BeancountParserOptions.LexerImplementation.class)
+  public void reusedParserParsesLikeNewParsers(
+      BeancountParserOptions.LexerImplementation lexerImplementation) {
+    final BeancountParserOptions options =
+        BeancountParserOptions.newBeancountParserOptions()
+            .lexerImplementation(lexerImplementation)
+            .build();
+    final BeancountParser parser = BeancountParser.newParser(options);
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    for (int i = 0; i < 3; i++) {
+      for (String text : JOURNALS) {
+        final Journal reused = parser.parseJournal(new StringReader(text));
+        final Journal fresh =
+            BeancountParser.newParser(options).parseJournal(new StringReader(text));
+        assertThat(reused.declarations())
+            .hasSameSizeAs(fresh.declarations())
+            .first()
+            .extracting(declaration -> declaration.sourceLocation().line())
+            .isEqualTo(fresh.declarations().get(0).sourceLocation().line());
+        assertThat(printer.print(reused)).isEqualTo(printer.print(fresh));
+      }
+      assertThatThrownBy(() -> parser.parseJournal(new StringReader("2022-01-04 open open\n")))
+          .isInstanceOf(InvalidSyntaxException.class);
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(BeancountParserOptions.LexerImplementation.class)
+  public void pooledParserDoesNotKeepTheInput(
+      BeancountParserOptions.LexerImplementation lexerImplementation) throws InterruptedException {
+    final BeancountParser parser =
+        BeancountParser.newParser(
+            BeancountParserOptions.newBeancountParserOptions()
+                .lexerImplementation(lexerImplementation)
+                .build());
+
+    final WeakReference<CharStream> parsed = parse(parser, JOURNALS[1]);
+    final WeakReference<CharStream> failed = parse(parser, "2022-01-04 open open\n");
+
+    for (int i = 0; i < 20 && (parsed.get() != null || failed.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(parsed.get()).isNull();
+    assertThat(failed.get()).isNull();
+    assertThat(parser.parseJournal(new StringReader(JOURNALS[0])).declarations()).hasSize(1);
+  }
+
+  private static WeakReference<CharStream> parse(BeancountParser parser, String text) {
+    final CharStream charStream = CharStreams.fromString(text, "test.beancount");
+    try {
+      parser.parseCharStream(charStream, "test.beancount", 0, 0, null);
+    } catch (InvalidSyntaxException e) {
+      // The exception does not keep the input either
+    }
+    return new WeakReference<>(charStream);
+  }
+}
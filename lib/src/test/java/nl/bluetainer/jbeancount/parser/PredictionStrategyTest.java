@@ -0,0 +1,139 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import nl.bluetainer.jbeancount.parser.BeancountParserOptions.PredictionStrategy;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Every prediction strategy must parse a journal, and report its first syntax error, exactly like
+ * {@link PredictionStrategy#LL}. For {@link PredictionStrategy#SLL_THEN_LL} that covers the bail
+ * out, the rewind of the tokens and the LL parse that follows.
+ */
+public class PredictionStrategyTest {
+
+  private static final String JOURNAL = warmUpCorpus();
+
+  @ParameterizedTest
+  @EnumSource(PredictionStrategy.class)
+  public void parsesLikeLL(PredictionStrategy strategy) {
+    final Journal expected = parser(PredictionStrategy.LL).parseJournal(new StringReader(JOURNAL));
+
+    final Journal actual = parser(strategy).parseJournal(new StringReader(JOURNAL));
+
+    assertSameDeclarations(actual.declarations(), expected);
+  }
+
+  @ParameterizedTest
+  @EnumSource(PredictionStrategy.class)
+  public void streamsLikeLL(PredictionStrategy strategy) {
+    final Journal expected = parser(PredictionStrategy.LL).parseJournal(new StringReader(JOURNAL));
+
+    final List<JournalDeclaration<?, ?>> actual;
+    try (Stream<JournalDeclaration<?, ?>> stream =
+        parser(strategy).streamJournal(new StringReader(JOURNAL))) {
+      actual = stream.toList();
+    }
+
+    assertSameDeclarations(actual, expected);
+  }
+
+  @ParameterizedTest
+  @MethodSource("strategiesAndErrors")
+  public void reportsTheFirstErrorLikeLL(PredictionStrategy strategy, String journal) {
+    final InvalidSyntaxException expected = parseError(PredictionStrategy.LL, journal);
+
+    final InvalidSyntaxException actual =
+        catchThrowableOfType(
+            InvalidSyntaxException.class,
+            () -> parser(strategy).parseJournal(new StringReader(journal)));
+
+    assertSameError(actual, expected);
+  }
+
+  @ParameterizedTest
+  @MethodSource("strategiesAndErrors")
+  public void streamsTheFirstErrorLikeLL(PredictionStrategy strategy, String journal) {
+    final InvalidSyntaxException expected = parseError(PredictionStrategy.LL, journal);
+
+    final InvalidSyntaxException actual;
+    try (Stream<JournalDeclaration<?, ?>> stream =
+        parser(strategy).streamJournal(new StringReader(journal))) {
+      actual = catchThrowableOfType(InvalidSyntaxException.class, stream::toList);
+    }
+
+    assertSameError(actual, expected);
+  }
+
+  static Stream<Arguments> strategiesAndErrors() {
+    final List<String> journals =
+        List.of(
+            // In the first declaration
+            "2015-01-01 open open\n" + JOURNAL,
+            // In a posting, in the middle of the journal
+            JOURNAL.replace("(20.00 + 10.00) / 2 EUR", "(20.00 + ) 10.00 EUR"),
+            // After the last declaration, and a second error that must not be reported
+            JOURNAL + "2015-01-13 open open\n2015-01-14 close\n");
+    return Stream.of(PredictionStrategy.values())
+        .flatMap(strategy -> journals.stream().map(journal -> Arguments.of(strategy, journal)));
+  }
+
+  private static BeancountParser parser(PredictionStrategy strategy) {
+    return BeancountParser.newParser(
+        BeancountParserOptions.newBeancountParserOptions().predictionStrategy(strategy).build());
+  }
+
+  private static InvalidSyntaxException parseError(PredictionStrategy strategy, String journal) {
+    final InvalidSyntaxException e =
+        catchThrowableOfType(
+            InvalidSyntaxException.class,
+            () -> parser(strategy).parseJournal(new StringReader(journal)));
+    assertThat(e).isNotNull();
+    return e;
+  }
+
+  private static void assertSameError(
+      InvalidSyntaxException actual, InvalidSyntaxException expected) {
+    assertThat(actual).isNotNull().hasMessage(expected.getMessage());
+    assertThat(actual.getSourceLocation()).isEqualTo(expected.getSourceLocation());
+    assertThat(actual.getSourceLocation().startOffset())
+        .isEqualTo(expected.getSourceLocation().startOffset());
+    assertThat(actual.getPreview()).isEqualTo(expected.getPreview());
+  }
+
+  private static void assertSameDeclarations(
+      List<JournalDeclaration<?, ?>> actual, Journal expected) {
+    assertThat(actual).hasSameSizeAs(expected.declarations());
+    for (int i = 0; i < actual.size(); i++) {
+      final JournalDeclaration<?, ?> declaration = actual.get(i);
+      final JournalDeclaration<?, ?> expectedDeclaration = expected.declarations().get(i);
+      assertThat(declaration.sourceLocation()).isEqualTo(expectedDeclaration.sourceLocation());
+    }
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(expected.transform(builder -> builder.declarations(actual))))
+        .isEqualTo(printer.print(expected));
+  }
+
+  private static String warmUpCorpus() {
+    try (InputStream inputStream =
+        BeancountParser.class.getResourceAsStream("warm-up.beancount")) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
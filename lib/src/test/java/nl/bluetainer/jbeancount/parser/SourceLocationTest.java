@@ -0,0 +1,56 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.SourceLocation;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+import org.junit.jupiter.api.Test;
+
+public class SourceLocationTest {
+
+  private static final String JOURNAL =
+      """
+      2022-01-01 open Assets:Cash EUR
+      ; Bought bread
+      2022-01-02 * "Bakery" "Bread"
+        Assets:Cash  -3.50 EUR
+        Expenses:Food
+      2022-01-03 close Assets:Cash
+      """;
+
+  private final Journal journal =
+      BeancountParser.newParser().parseJournal(new StringReader(JOURNAL));
+
+  @Test
+  public void offsetsSliceTheSource() {
+    assertThat(slice(journal.declarations().get(0).sourceLocation()))
+        .isEqualTo("2022-01-01 open Assets:Cash EUR\n");
+    assertThat(slice(journal.declarations().get(1).sourceLocation())).isEqualTo("; Bought bread\n");
+    final TransactionDirective txn = (TransactionDirective) journal.declarations().get(2);
+    assertThat(slice(txn.sourceLocation()))
+        .isEqualTo(
+            """
+            2022-01-02 * "Bakery" "Bread"
+              Assets:Cash  -3.50 EUR
+              Expenses:Food
+            """);
+    assertThat(slice(txn.postings().get(0).sourceLocation()))
+        .startsWith("Assets:Cash  -3.50 EUR\n");
+    assertThat(slice(journal.sourceLocation())).isEqualTo(JOURNAL);
+  }
+
+  @Test
+  public void sourceLocationsAreCreatedOnDemand() {
+    final SourceLocation sourceLocation = journal.declarations().get(2).sourceLocation();
+    assertThat(journal.declarations().get(2).sourceLocation())
+        .isNotSameAs(sourceLocation)
+        .isEqualTo(sourceLocation)
+        .isEqualTo(SourceLocation.of(3, 0, null));
+  }
+
+  private static String slice(SourceLocation sourceLocation) {
+    return JOURNAL.substring(sourceLocation.startOffset(), sourceLocation.endOffset());
+  }
+}
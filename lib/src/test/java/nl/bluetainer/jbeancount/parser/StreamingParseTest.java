@@ -0,0 +1,129 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import nl.bluetainer.jbeancount.io.SimpleBeancountPrinter;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.JournalDeclaration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class StreamingParseTest {
+
+  private static final String JOURNAL =
+      """
+      ; A comment
+      option "operating_currency" "EUR"
+
+      2022-01-01 open Assets:Café EUR ; ¡Olé!
+        note: "multi
+      line"
+      2022-01-02 * "Bäckerei 😀" "日本" #food
+        Assets:Café  -3.50 EUR
+        Expenses:Food
+      2022-01-03 balance Assets:Café -3.50 EUR
+      """;
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void streamedReaderEqualsParsedJournal() {
+    final BeancountParser parser = BeancountParser.newParser();
+    final Journal parsed = parser.parseJournal(new StringReader(JOURNAL));
+    final List<JournalDeclaration<?, ?>> streamed;
+    try (Stream<JournalDeclaration<?, ?>> stream =
+        parser.streamJournal(new StringReader(JOURNAL))) {
+      streamed = stream.toList();
+    }
+    assertSameDeclarations(streamed, parsed);
+  }
+
+  @ParameterizedTest
+  @EnumSource(BeancountParserOptions.InputMode.class)
+  public void streamedFileEqualsParsedJournal(BeancountParserOptions.InputMode inputMode)
+      throws IOException {
+    final Path file = tempDir.resolve("streamed.beancount");
+    Files.writeString(file, JOURNAL.repeat(100), StandardCharsets.UTF_8);
+    final BeancountParser parser =
+        BeancountParser.newParser(
+            BeancountParserOptions.newBeancountParserOptions()
+                .inputMode(inputMode)
+                .lexerImplementation(BeancountParserOptions.LexerImplementation.HAND_WRITTEN)
+                .build());
+    final Journal parsed = parser.parseJournal(file);
+    final List<JournalDeclaration<?, ?>> streamed;
+    try (Stream<JournalDeclaration<?, ?>> stream = parser.streamJournal(file)) {
+      streamed = stream.toList();
+    }
+    assertSameDeclarations(streamed, parsed);
+  }
+
+  @ParameterizedTest
+  @EnumSource(BeancountParserOptions.InputMode.class)
+  public void perDeclarationJournalEqualsParsedJournal(BeancountParserOptions.InputMode inputMode)
+      throws IOException {
+    final Path file = tempDir.resolve("direct.beancount");
+    Files.writeString(file, JOURNAL.repeat(100), StandardCharsets.UTF_8);
+    final BeancountParserOptions options =
+        BeancountParserOptions.newBeancountParserOptions().inputMode(inputMode).build();
+    final Journal parsed = BeancountParser.newParser(options).parseJournal(file);
+    final Journal direct =
+        BeancountParser.newParser(
+                options.transform(
+                    b -> b.treeRetention(BeancountParserOptions.TreeRetention.PER_DECLARATION)))
+            .parseJournal(file);
+
+    assertThat(direct.sourceLocation()).isEqualTo(parsed.sourceLocation());
+    assertThat(direct.sourceLocation().endOffset())
+        .isEqualTo(parsed.sourceLocation().endOffset());
+    assertSameDeclarations(direct.declarations(), parsed);
+  }
+
+  @Test
+  public void perDeclarationJournalReportsSyntaxErrors() {
+    final BeancountParser parser =
+        BeancountParser.newParser(
+            BeancountParserOptions.newBeancountParserOptions()
+                .treeRetention(BeancountParserOptions.TreeRetention.PER_DECLARATION)
+                .build());
+    assertThatThrownBy(
+            () -> parser.parseJournal(new StringReader(JOURNAL + "2022-01-04 open open\n")))
+        .isInstanceOfSatisfying(
+            InvalidSyntaxException.class,
+            e -> assertThat(e.getSourceLocation().line()).isEqualTo(11));
+  }
+
+  @Test
+  public void syntaxErrorIsThrownWhenReached() {
+    final String journal = JOURNAL + "2022-01-04 open open\n";
+    try (Stream<JournalDeclaration<?, ?>> stream =
+        BeancountParser.newParser().streamJournal(new StringReader(journal))) {
+      assertThatThrownBy(stream::toList)
+          .isInstanceOfSatisfying(
+              InvalidSyntaxException.class,
+              e -> assertThat(e.getSourceLocation().line()).isEqualTo(11));
+    }
+  }
+
+  private static void assertSameDeclarations(
+      List<JournalDeclaration<?, ?>> streamed, Journal parsed) {
+    assertThat(streamed).hasSameSizeAs(parsed.declarations());
+    for (int i = 0; i < streamed.size(); i++) {
+      assertThat(streamed.get(i).sourceLocation().line())
+          .isEqualTo(parsed.declarations().get(i).sourceLocation().line());
+    }
+    final SimpleBeancountPrinter printer = SimpleBeancountPrinter.newDefaultPrinter();
+    assertThat(printer.print(Journal.newJournal().declarations(streamed).build()))
+        .isEqualTo(printer.print(parsed));
+  }
+}
@@ -0,0 +1,66 @@
+package nl.bluetainer.jbeancount.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import nl.bluetainer.jbeancount.language.Account;
+import nl.bluetainer.jbeancount.language.Journal;
+import nl.bluetainer.jbeancount.language.OpenDirective;
+import nl.bluetainer.jbeancount.language.SymbolTable;
+import nl.bluetainer.jbeancount.language.TransactionDirective;
+import org.junit.jupiter.api.Test;
+
+public class SymbolTableTest {
+
+  private static final String JOURNAL =
+      """
+      2022-01-01 open Assets:Cash EUR
+      2022-01-01 open Expenses:Food EUR
+      2022-01-02 * "Payee" "Narration" #trip ^receipt
+        Assets:Cash  -10.00 EUR
+        Expenses:Food  10.00 EUR
+      """;
+
+  @Test
+  public void parsedSymbolsAreInterned() {
+    final BeancountParser parser = BeancountParser.newParser();
+    final Journal journal = parser.parseJournal(new StringReader(JOURNAL));
+
+    final OpenDirective openCash = (OpenDirective) journal.declarations().get(0);
+    final OpenDirective openFood = (OpenDirective) journal.declarations().get(1);
+    final TransactionDirective txn = (TransactionDirective) journal.declarations().get(2);
+    assertThat(txn.postings().get(0).account()).isSameAs(openCash.account());
+    assertThat(txn.postings().get(1).account()).isSameAs(openFood.account());
+    assertThat(txn.postings().get(1).commodity()).isSameAs(openCash.commodities().get(0));
+
+    final SymbolTable symbolTable = parser.symbolTable();
+    assertThat(symbolTable.accounts())
+        .containsExactly(openCash.account(), openFood.account())
+        .extracting(Account::symbolId)
+        .containsExactly(0, 1);
+    assertThat(symbolTable.commodities()).hasSize(1);
+    assertThat(symbolTable.tags()).singleElement().isSameAs(symbolTable.tag("trip"));
+    assertThat(symbolTable.links()).singleElement().isSameAs(symbolTable.link("receipt"));
+  }
+
+  @Test
+  public void symbolTableIsSharedThroughOptions() {
+    final SymbolTable symbolTable = SymbolTable.newSymbolTable();
+    final BeancountParserOptions options =
+        BeancountParserOptions.newBeancountParserOptions().symbolTable(symbolTable).build();
+    final Journal first =
+        BeancountParser.newParser(options).parseJournal(new StringReader(JOURNAL));
+    final Journal second =
+        BeancountParser.newParser(options).parseJournal(new StringReader(JOURNAL));
+
+    assertThat(((OpenDirective) second.declarations().get(0)).account())
+        .isSameAs(((OpenDirective) first.declarations().get(0)).account())
+        .isSameAs(symbolTable.account("Assets:Cash"));
+    assertThat(symbolTable.accounts()).hasSize(2);
+  }
+
+  @Test
+  public void builtSymbolsHaveNoId() {
+    assertThat(Account.newAccount().account("Assets:Cash").build().symbolId()).isEqualTo(-1);
+  }
+}
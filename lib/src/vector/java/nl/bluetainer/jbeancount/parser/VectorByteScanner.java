@@ -0,0 +1,47 @@
+package nl.bluetainer.jbeancount.parser;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link ByteScanner} that compares {@link ByteVector#SPECIES_PREFERRED a vector} of bytes at a
+ * time. This is the only class that is compiled against the incubator module, in a source set of
+ * its own. {@link ByteScanner} loads it by name, and only when the module is available, so the
+ * rest of the parser still compiles and loads without it.
+ */
+final class VectorByteScanner extends ByteScanner {
+
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+  private static final int LENGTH = SPECIES.length();
+
+  @Override
+  long indexOfAny(MemorySegment segment, long from, long to, byte a, byte b, byte c) {
+    long i = from;
+    for (; i + LENGTH <= to; i += LENGTH) {
+      final ByteVector bytes =
+          ByteVector.fromMemorySegment(SPECIES, segment, i, ByteOrder.nativeOrder());
+      final VectorMask<Byte> found = bytes.eq(a).or(bytes.eq(b)).or(bytes.eq(c));
+      if (found.anyTrue()) {
+        return i + found.firstTrue();
+      }
+    }
+    return scalarIndexOfAny(segment, i, to, a, b, c);
+  }
+
+  @Override
+  long countCodePoints(MemorySegment segment, long from, long to) {
+    long count = 0;
+    long i = from;
+    for (; i + LENGTH <= to; i += LENGTH) {
+      final ByteVector bytes =
+          ByteVector.fromMemorySegment(SPECIES, segment, i, ByteOrder.nativeOrder());
+      count +=
+          bytes.and((byte) 0xC0).compare(VectorOperators.NE, (byte) 0x80).trueCount();
+    }
+    return count + scalarCountCodePoints(segment, i, to);
+  }
+}